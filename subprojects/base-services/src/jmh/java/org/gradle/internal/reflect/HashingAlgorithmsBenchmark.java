@@ -23,6 +23,7 @@
 import org.bouncycastle.jcajce.provider.digest.Blake2b;
 import org.bouncycastle.jcajce.provider.digest.MD5;
 import org.bouncycastle.jcajce.provider.digest.SHA1;
+import org.gradle.internal.hash.PrimitiveHasher;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
@@ -35,6 +36,7 @@
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
@@ -62,6 +64,8 @@ private static MessageDigest getDigest(String name) {
         .put("sha1.bc", new MessageDigestHashProcessorFactory(new SHA1.Digest()))
         .put("blake2b.bc", new MessageDigestHashProcessorFactory(new Blake2b.Blake2b160()))
         .put("murmur3.guava", new GuavaProcessorFactory(Hashing.murmur3_128()))
+        .put("md5.gradle", new GradleProcessorFactory(org.gradle.internal.hash.Hashing.md5()))
+        .put("murmur3.gradle", new GradleProcessorFactory(org.gradle.internal.hash.Hashing.murmur3()))
         .build();
 
     Random random = new Random(1234L);
@@ -70,16 +74,19 @@ private static MessageDigest getDigest(String name) {
     int hashSize;
 
     // @Param({"md5.java", "md5.bc", "sha1.java", "sha1.bc", "blake2b.bc"})
-    @Param({"md5.java", "murmur3.guava"})
+    @Param({"md5.java", "murmur3.guava", "md5.gradle", "murmur3.gradle"})
     String type;
 
     byte[] input;
+    ByteBuffer directInput;
     HashProcessorFactory processorFactory;
 
     @Setup(Level.Iteration)
     public void setup() throws CloneNotSupportedException {
         input = new byte[hashSize];
         random.nextBytes(input);
+        directInput = ByteBuffer.allocateDirect(hashSize);
+        directInput.put(input);
         processorFactory = HASHERS.get(type);
     }
 
@@ -89,8 +96,23 @@ public void measure(Blackhole blackhole) {
         processor.process(input, blackhole);
     }
 
+    /**
+     * Mirrors how {@link org.gradle.internal.hash.DefaultStreamHasher} hashes files read through a channel.
+     */
+    @Benchmark
+    public void measureDirectBuffer(Blackhole blackhole) {
+        HashProcessor processor = processorFactory.create();
+        processor.process(directInput.duplicate(), blackhole);
+    }
+
     interface HashProcessor {
         void process(byte[] input, Blackhole blackhole);
+
+        default void process(ByteBuffer input, Blackhole blackhole) {
+            byte[] bytes = new byte[input.remaining()];
+            input.get(bytes);
+            process(bytes, blackhole);
+        }
     }
 
     interface HashProcessorFactory {
@@ -129,6 +151,39 @@ public void process(byte[] input, Blackhole blackhole) {
         }
     }
 
+    private static class GradleProcessorFactory implements HashProcessorFactory {
+        private final org.gradle.internal.hash.HashFunction hashFunction;
+
+        public GradleProcessorFactory(org.gradle.internal.hash.HashFunction hashFunction) {
+            this.hashFunction = hashFunction;
+        }
+
+        @Override
+        public HashProcessor create() {
+            return new GradleProcessor(hashFunction.newPrimitiveHasher());
+        }
+    }
+
+    private static class GradleProcessor implements HashProcessor {
+        private final PrimitiveHasher hasher;
+
+        public GradleProcessor(PrimitiveHasher hasher) {
+            this.hasher = hasher;
+        }
+
+        @Override
+        public void process(byte[] input, Blackhole blackhole) {
+            hasher.putBytes(input);
+            blackhole.consume(hasher.hash());
+        }
+
+        @Override
+        public void process(ByteBuffer input, Blackhole blackhole) {
+            hasher.putBytes(input);
+            blackhole.consume(hasher.hash());
+        }
+    }
+
     private static class GuavaProcessorFactory implements HashProcessorFactory {
         private final HashFunction hashFunction;
 
@@ -25,6 +25,7 @@ import org.gradle.caching.BuildCacheException
 import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheServiceFactory
 import org.gradle.caching.http.HttpBuildCache
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.resource.transport.http.DefaultSslContextFactory
 import org.gradle.internal.resource.transport.http.HttpClientHelper
@@ -34,9 +35,12 @@ import org.gradle.test.fixtures.server.http.HttpResourceInteraction
 import org.gradle.test.fixtures.server.http.HttpServer
 import org.junit.Rule
 import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
 
 import javax.servlet.http.HttpServletRequest
 import javax.servlet.http.HttpServletResponse
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 
 class HttpBuildCacheServiceTest extends Specification {
     public static final List<Integer> FATAL_HTTP_ERROR_CODES = [
@@ -88,7 +92,7 @@ class HttpBuildCacheServiceTest extends Specification {
     HttpBuildCacheService getCache() {
         if (cacheRef == null) {
             buildCacheDescriber = new NoopBuildCacheDescriber()
-            cacheRef = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), { it.addHeader("X-Gradle-Version", "3.0") }, httpClientHelperFactory)
+            cacheRef = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), { it.addHeader("X-Gradle-Version", "3.0") }, httpClientHelperFactory, new DefaultExecutorFactory())
                 .createBuildCacheService(this.config, buildCacheDescriber) as HttpBuildCacheService
         }
         cacheRef
@@ -357,6 +361,123 @@ class HttpBuildCacheServiceTest extends Specification {
         server.authenticationAttempts == ['Basic'] as Set
     }
 
+    def "uploads entries in the background when pending stores are enabled"() {
+        System.setProperty(DefaultHttpBuildCacheServiceFactory.MAX_PENDING_STORES_PROPERTY, "4")
+        def destFile = tempDir.file("cached.zip")
+        def content = "Data".bytes
+        def loadChecked = new CountDownLatch(1)
+        server.expect("/cache/${key.hashCode}", false, ['PUT'], new HttpServer.ActionSupport("store after the entry has been loaded") {
+            @Override
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                // Keep the upload pending, so that the entry is loaded from memory
+                loadChecked.await(30, TimeUnit.SECONDS)
+                destFile.bytes = request.inputStream.bytes
+                response.setStatus(HttpStatus.SC_OK)
+            }
+        })
+
+        when:
+        cache.store(key, writer(content))
+        def receivedInput = null
+        def loaded
+        try {
+            loaded = cache.load(key) { input ->
+                receivedInput = input.text
+            }
+        } finally {
+            loadChecked.countDown()
+        }
+        cache.close()
+
+        then:
+        loaded
+        receivedInput == "Data"
+        destFile.bytes == content
+
+        cleanup:
+        System.clearProperty(DefaultHttpBuildCacheServiceFactory.MAX_PENDING_STORES_PROPERTY)
+    }
+
+    def "reports failed background upload on close"() {
+        System.setProperty(DefaultHttpBuildCacheServiceFactory.MAX_PENDING_STORES_PROPERTY, "4")
+        expectError(HttpStatus.SC_INTERNAL_SERVER_ERROR, 'PUT')
+
+        when:
+        cache.store(key, writer("Data".bytes))
+        cache.close()
+
+        then:
+        BuildCacheException exception = thrown()
+        exception.message == "Could not store entry ${key.hashCode} in the build cache: Storing entry at '${server.uri}/cache/${key.hashCode}' response status 500: broken"
+
+        cleanup:
+        System.clearProperty(DefaultHttpBuildCacheServiceFactory.MAX_PENDING_STORES_PROPERTY)
+    }
+
+    def "reports failed background upload from the next store and stores later entries synchronously"() {
+        System.setProperty(DefaultHttpBuildCacheServiceFactory.MAX_PENDING_STORES_PROPERTY, "4")
+        def otherKey = cacheKey("abcdef01234567")
+        def destFile = tempDir.file("cached.zip")
+        def content = "Data".bytes
+        expectError(HttpStatus.SC_INTERNAL_SERVER_ERROR, 'PUT')
+
+        when:
+        cache.store(key, writer(content))
+        new PollingConditions(timeout: 10).eventually {
+            assert cache.pendingStores.hasFailed()
+        }
+        cache.store(otherKey, writer(content))
+
+        then:
+        BuildCacheException exception = thrown()
+        exception.message == "Could not store entry ${key.hashCode} in the build cache: Storing entry at '${server.uri}/cache/${key.hashCode}' response status 500: broken"
+
+        when:
+        server.expectPut("/cache/${otherKey.hashCode}", destFile, HttpStatus.SC_OK, null, content.length)
+        cache.store(otherKey, writer(content))
+        cache.close()
+
+        then:
+        destFile.bytes == content
+
+        cleanup:
+        System.clearProperty(DefaultHttpBuildCacheServiceFactory.MAX_PENDING_STORES_PROPERTY)
+    }
+
+    def "reports failed background upload from the next load"() {
+        System.setProperty(DefaultHttpBuildCacheServiceFactory.MAX_PENDING_STORES_PROPERTY, "4")
+        expectError(HttpStatus.SC_INTERNAL_SERVER_ERROR, 'PUT')
+
+        when:
+        cache.store(key, writer("Data".bytes))
+        new PollingConditions(timeout: 10).eventually {
+            assert cache.pendingStores.hasFailed()
+        }
+        cache.load(key) { input -> }
+
+        then:
+        BuildCacheException exception = thrown()
+        exception.message == "Could not store entry ${key.hashCode} in the build cache: Storing entry at '${server.uri}/cache/${key.hashCode}' response status 500: broken"
+
+        when:
+        cache.close()
+
+        then:
+        noExceptionThrown()
+
+        cleanup:
+        System.clearProperty(DefaultHttpBuildCacheServiceFactory.MAX_PENDING_STORES_PROPERTY)
+    }
+
+    private BuildCacheKey cacheKey(String hash) {
+        def hashCode = HashCode.fromString(hash)
+        Stub(BuildCacheKey) {
+            getHashCode() >> hashCode.toString()
+            getDisplayName() >> hashCode.toString()
+            toByteArray() >> hashCode.toByteArray()
+        }
+    }
+
     private HttpResourceInteraction expectError(int httpCode, String method) {
         server.expect("/cache/${key.hashCode}", false, [method], new HttpServer.ActionSupport("return ${httpCode} broken") {
             @Override
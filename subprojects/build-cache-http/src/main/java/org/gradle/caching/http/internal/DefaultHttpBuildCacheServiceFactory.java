@@ -25,6 +25,7 @@
 import org.gradle.caching.http.HttpBuildCache;
 import org.gradle.caching.http.HttpBuildCacheCredentials;
 import org.gradle.internal.authentication.DefaultBasicAuthentication;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.deprecation.Documentation;
 import org.gradle.internal.resource.transport.http.DefaultHttpSettings;
 import org.gradle.internal.resource.transport.http.HttpClientHelper;
@@ -45,16 +46,21 @@
 public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFactory<HttpBuildCache> {
 
     private static final int MAX_REDIRECTS = Integer.getInteger("org.gradle.cache.http.max-redirects", 10);
+    static final String MAX_PENDING_STORES_PROPERTY = "org.gradle.cache.http.max-pending-stores";
+    private static final int MAX_CONCURRENT_UPLOADS = 4;
+    private static final long MAX_PENDING_ENTRY_SIZE = 8 * 1024 * 1024;
 
     private final SslContextFactory sslContextFactory;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
     private final HttpClientHelper.Factory httpClientHelperFactory;
+    private final ExecutorFactory executorFactory;
 
     @Inject
-    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, HttpBuildCacheRequestCustomizer requestCustomizer, HttpClientHelper.Factory httpClientHelperFactory) {
+    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, HttpBuildCacheRequestCustomizer requestCustomizer, HttpClientHelper.Factory httpClientHelperFactory, ExecutorFactory executorFactory) {
         this.sslContextFactory = sslContextFactory;
         this.requestCustomizer = requestCustomizer;
         this.httpClientHelperFactory = httpClientHelperFactory;
+        this.executorFactory = executorFactory;
     }
 
     @Override
@@ -98,6 +104,12 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
         }
         HttpClientHelper httpClientHelper = httpClientHelperFactory.create(builder.build());
 
+        // Uploading in the background is opt-in, as entries are only visible to other builds once the upload finishes
+        int maxPendingStores = Integer.getInteger(MAX_PENDING_STORES_PROPERTY, 0);
+        PendingStores pendingStores = maxPendingStores > 0
+            ? new PendingStores(executorFactory.create("Build cache uploads", MAX_CONCURRENT_UPLOADS), maxPendingStores)
+            : null;
+
         describer.type("HTTP")
             .config("url", noUserInfoUrl.toASCIIString())
             .config("authenticated", Boolean.toString(authenticated))
@@ -105,7 +117,7 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
             .config("allowInsecureProtocol", Boolean.toString(allowInsecureProtocol))
             .config("useExpectContinue", Boolean.toString(useExpectContinue));
 
-        return new HttpBuildCacheService(httpClientHelper, noUserInfoUrl, requestCustomizer, useExpectContinue);
+        return new HttpBuildCacheService(httpClientHelper, noUserInfoUrl, requestCustomizer, useExpectContinue, pendingStores, MAX_PENDING_ENTRY_SIZE);
     }
 
     private HttpRedirectVerifier createRedirectVerifier(URI url, boolean allowInsecureProtocol) {
@@ -37,6 +37,9 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -66,8 +69,17 @@ public class HttpBuildCacheService implements BuildCacheService {
     private final HttpClientHelper httpClientHelper;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
     private final boolean useExpectContinue;
+    private final PendingStores pendingStores;
+    private final long maxPendingEntrySize;
 
     public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url, HttpBuildCacheRequestCustomizer requestCustomizer, boolean useExpectContinue) {
+        this(httpClientHelper, url, requestCustomizer, useExpectContinue, null, 0);
+    }
+
+    /**
+     * @param pendingStores when present, entries of at most {@code maxPendingEntrySize} bytes are buffered and uploaded in the background.
+     */
+    HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url, HttpBuildCacheRequestCustomizer requestCustomizer, boolean useExpectContinue, @Nullable PendingStores pendingStores, long maxPendingEntrySize) {
         this.requestCustomizer = requestCustomizer;
         this.useExpectContinue = useExpectContinue;
         if (!url.getPath().endsWith("/")) {
@@ -75,10 +87,26 @@ public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url, HttpBui
         }
         this.root = url;
         this.httpClientHelper = httpClientHelper;
+        this.pendingStores = pendingStores;
+        this.maxPendingEntrySize = maxPendingEntrySize;
     }
 
     @Override
     public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        if (pendingStores != null) {
+            pendingStores.rethrowFailures();
+            byte[] pendingContent = pendingStores.get(key.getHashCode());
+            if (pendingContent != null) {
+                // Still being uploaded, no need to wait for it to arrive at the server
+                try {
+                    reader.readFrom(new ByteArrayInputStream(pendingContent));
+                    return true;
+                } catch (IOException e) {
+                    throw wrap(e);
+                }
+            }
+        }
+
         final URI uri = root.resolve("./" + key.getHashCode());
         HttpGet httpGet = new HttpGet(uri);
         httpGet.addHeader(HttpHeaders.ACCEPT, BUILD_CACHE_CONTENT_TYPE + ", */*");
@@ -106,6 +134,29 @@ public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws Buil
 
     @Override
     public void store(BuildCacheKey key, final BuildCacheEntryWriter output) throws BuildCacheException {
+        if (pendingStores != null) {
+            // Report failed background uploads, so that the cache can be disabled after an error like for a synchronous upload
+            pendingStores.rethrowFailures();
+            if (!pendingStores.hasFailed() && output.getSize() >= 0 && output.getSize() <= maxPendingEntrySize) {
+                byte[] content = buffer(output);
+                pendingStores.submit(key.getHashCode(), content, bufferedContent -> doStore(key, new BufferedEntryWriter(bufferedContent)));
+                return;
+            }
+        }
+        doStore(key, output);
+    }
+
+    private static byte[] buffer(BuildCacheEntryWriter output) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) output.getSize());
+        try {
+            output.writeTo(buffer);
+        } catch (IOException e) {
+            throw wrap(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private void doStore(BuildCacheKey key, final BuildCacheEntryWriter output) {
         final URI uri = root.resolve(key.getHashCode());
         HttpPut httpPut = new HttpPut(uri);
         if (useExpectContinue) {
@@ -179,7 +230,31 @@ private boolean throwHttpStatusCodeException(int statusCode, String message) {
 
     @Override
     public void close() throws IOException {
-        httpClientHelper.close();
+        try {
+            if (pendingStores != null) {
+                pendingStores.close();
+            }
+        } finally {
+            httpClientHelper.close();
+        }
+    }
+
+    private static class BufferedEntryWriter implements BuildCacheEntryWriter {
+        private final byte[] content;
+
+        BufferedEntryWriter(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            output.write(content);
+        }
+
+        @Override
+        public long getSize() {
+            return content.length;
+        }
     }
 
     /**
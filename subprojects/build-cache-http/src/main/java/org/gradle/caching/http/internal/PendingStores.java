@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal;
+
+import org.gradle.caching.BuildCacheException;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ManagedExecutor;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Uploads buffered build cache entries in the background, so that the build can continue while the entries are stored.
+ *
+ * At most {@code maxPendingStores} entries are held at a time. Submitting more blocks the caller until a previous upload has finished.
+ * Failed uploads are recorded with the key of their entry and reported by the next call to {@link #rethrowFailures()}, or by {@link #close()}.
+ * Once an upload has failed, uploads which are still queued are skipped, so that a broken cache is not hit again for each of them.
+ */
+class PendingStores implements Closeable {
+    private final ManagedExecutor executor;
+    private final Semaphore permits;
+    private final ConcurrentMap<String, byte[]> pending = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, RuntimeException> failures = new ConcurrentHashMap<>();
+    private volatile boolean failed;
+
+    PendingStores(ManagedExecutor executor, int maxPendingStores) {
+        this.executor = executor;
+        this.permits = new Semaphore(maxPendingStores);
+    }
+
+    /**
+     * Returns the content of an entry with the given key that is still being uploaded, if any.
+     */
+    @Nullable
+    byte[] get(String key) {
+        return pending.get(key);
+    }
+
+    /**
+     * Whether an upload has failed. No more entries should be submitted after that.
+     */
+    boolean hasFailed() {
+        return failed;
+    }
+
+    void submit(String key, byte[] content, Consumer<byte[]> upload) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        pending.put(key, content);
+        try {
+            executor.execute(() -> {
+                try {
+                    if (!failed) {
+                        upload.accept(content);
+                    }
+                } catch (RuntimeException e) {
+                    failures.put(key, e);
+                    failed = true;
+                } finally {
+                    pending.remove(key, content);
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            pending.remove(key, content);
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Throws the failures of the uploads which have failed since the last call, if any.
+     */
+    void rethrowFailures() {
+        BuildCacheException failure = takeFailures();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Waits for all pending uploads to finish, and reports the uploads which failed and have not been reported yet.
+     */
+    @Override
+    public void close() {
+        executor.stop();
+        rethrowFailures();
+    }
+
+    @Nullable
+    private BuildCacheException takeFailures() {
+        Map<String, RuntimeException> taken = new TreeMap<>();
+        for (String key : failures.keySet()) {
+            RuntimeException failure = failures.remove(key);
+            if (failure != null) {
+                taken.put(key, failure);
+            }
+        }
+        if (taken.isEmpty()) {
+            return null;
+        }
+        if (taken.size() == 1) {
+            Map.Entry<String, RuntimeException> failure = taken.entrySet().iterator().next();
+            return new BuildCacheException("Could not store entry " + failure.getKey() + " in the build cache: " + failure.getValue().getMessage(), failure.getValue());
+        }
+        BuildCacheException failure = new BuildCacheException("Could not store entries " + taken.keySet() + " in the build cache.");
+        taken.values().forEach(failure::addSuppressed);
+        return failure;
+    }
+}
@@ -22,23 +22,39 @@
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
-public class GZipBuildCacheEntryPacker implements BuildCacheEntryPacker {
+public class GZipBuildCacheEntryPacker implements BuildCacheEntryPacker, Closeable {
     private final BuildCacheEntryPacker delegate;
+    private final ExecutorService compressionExecutor;
+    private final int maxBlocksInFlight;
 
     public GZipBuildCacheEntryPacker(BuildCacheEntryPacker delegate) {
+        this(delegate, null, 0);
+    }
+
+    /**
+     * Creates a packer which compresses blocks of large entries concurrently using the given executor, when one is provided.
+     * The entries are still written as regular GZIP streams, so they can be unpacked by any version of the packer.
+     * The executor is owned by the packer and shut down when the packer is closed.
+     */
+    public GZipBuildCacheEntryPacker(BuildCacheEntryPacker delegate, @Nullable ExecutorService compressionExecutor, int maxBlocksInFlight) {
         this.delegate = delegate;
+        this.compressionExecutor = compressionExecutor;
+        this.maxBlocksInFlight = maxBlocksInFlight;
     }
 
     @Override
     public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
-        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
+        try (OutputStream gzipOutput = compressionExecutor == null ? new GZIPOutputStream(output) : new ParallelGZipOutputStream(output, compressionExecutor, maxBlocksInFlight)) {
             return delegate.pack(entity, snapshots, gzipOutput, writeOrigin);
         }
     }
@@ -49,4 +65,11 @@ public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginRead
             return delegate.unpack(entity, gzipInput, readOrigin);
         }
     }
+
+    @Override
+    public void close() {
+        if (compressionExecutor != null) {
+            compressionExecutor.shutdown();
+        }
+    }
 }
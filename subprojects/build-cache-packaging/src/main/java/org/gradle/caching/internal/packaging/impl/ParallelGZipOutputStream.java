@@ -0,0 +1,218 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a single member GZIP stream, compressing fixed size blocks of the input concurrently.
+ *
+ * <p>Each block is deflated independently, primed with the last 32KB of the previous block as dictionary,
+ * and ended with a sync flush so that the compressed blocks concatenate into one valid deflate stream.
+ * The result can be read by any GZIP reader, including {@link java.util.zip.GZIPInputStream}.</p>
+ *
+ * <p>When the stream is closed before the first block is full, the data is compressed on the calling thread.</p>
+ */
+public class ParallelGZipOutputStream extends OutputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER = new byte[]{0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final OutputStream output;
+    private final Executor executor;
+    private final int blockSize;
+    private final int maxBlocksInFlight;
+    private final int compressionLevel;
+    private final CRC32 crc = new CRC32();
+    private final Deque<Future<byte[]>> blocksInFlight = new ArrayDeque<>();
+    private byte[] previousBlock;
+    private byte[] block;
+    private int blockLength;
+    private long totalLength;
+    private boolean headerWritten;
+    private boolean closed;
+
+    public ParallelGZipOutputStream(OutputStream output, Executor executor, int maxBlocksInFlight) {
+        this(output, executor, maxBlocksInFlight, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelGZipOutputStream(OutputStream output, Executor executor, int maxBlocksInFlight, int blockSize, int compressionLevel) {
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Block size must be at least " + DICTIONARY_SIZE + " bytes.");
+        }
+        this.output = output;
+        this.executor = executor;
+        this.maxBlocksInFlight = Math.max(1, maxBlocksInFlight);
+        this.blockSize = blockSize;
+        this.compressionLevel = compressionLevel;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (blockLength == blockSize) {
+            submitBlock(false);
+        }
+        block[blockLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+            int count = Math.min(length, blockSize - blockLength);
+            System.arraycopy(bytes, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // Does not end the current block, as that would make compression worse
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (blocksInFlight.isEmpty()) {
+                // Everything fits into a single block, no need to hand off the work
+                crc.update(block, 0, blockLength);
+                totalLength += blockLength;
+                writeHeader();
+                output.write(deflate(block, blockLength, previousBlock, true, compressionLevel));
+            } else {
+                submitBlock(true);
+                while (!blocksInFlight.isEmpty()) {
+                    writeCompletedBlock();
+                }
+            }
+            writeTrailer();
+        } finally {
+            for (Future<byte[]> pending : blocksInFlight) {
+                pending.cancel(false);
+            }
+            blocksInFlight.clear();
+            output.close();
+        }
+    }
+
+    private void submitBlock(boolean last) throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] dictionary = previousBlock;
+        crc.update(data, 0, length);
+        totalLength += length;
+
+        FutureTask<byte[]> task = new FutureTask<>(() -> deflate(data, length, dictionary, last, compressionLevel));
+        blocksInFlight.addLast(task);
+        executor.execute(task);
+
+        previousBlock = data;
+        block = last ? null : new byte[blockSize];
+        blockLength = 0;
+        while (blocksInFlight.size() > maxBlocksInFlight) {
+            writeCompletedBlock();
+        }
+    }
+
+    private void writeCompletedBlock() throws IOException {
+        Future<byte[]> next = blocksInFlight.removeFirst();
+        byte[] compressed;
+        try {
+            compressed = next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing build cache entry.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Could not compress build cache entry.", cause);
+        }
+        writeHeader();
+        output.write(compressed);
+    }
+
+    private void writeHeader() throws IOException {
+        if (!headerWritten) {
+            output.write(HEADER);
+            headerWritten = true;
+        }
+    }
+
+    private void writeTrailer() throws IOException {
+        writeIntLittleEndian((int) crc.getValue());
+        writeIntLittleEndian((int) totalLength);
+    }
+
+    private void writeIntLittleEndian(int value) throws IOException {
+        output.write(value & 0xff);
+        output.write((value >> 8) & 0xff);
+        output.write((value >> 16) & 0xff);
+        output.write((value >> 24) & 0xff);
+    }
+
+    private static byte[] deflate(byte[] data, int length, byte[] dictionary, boolean last, int compressionLevel) {
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            deflater.setInput(data, 0, length);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[16 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, count);
+                }
+            } else {
+                // A sync flush ends the block on a byte boundary without marking it as the final block
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.zip.Deflater
+import java.util.zip.GZIPInputStream
+
+class ParallelGZipOutputStreamTest extends Specification {
+    @AutoCleanup("shutdownNow")
+    ExecutorService executor = Executors.newFixedThreadPool(4)
+
+    def "output of #length bytes can be read as a GZIP stream"() {
+        def input = compressibleBytes(length)
+
+        when:
+        def compressed = compress(input, 2)
+
+        then:
+        decompress(compressed) == input
+
+        where:
+        length << [0, 1, 1000, ParallelGZipOutputStream.DEFAULT_BLOCK_SIZE, ParallelGZipOutputStream.DEFAULT_BLOCK_SIZE + 1, 5 * ParallelGZipOutputStream.DEFAULT_BLOCK_SIZE + 17]
+    }
+
+    def "writes single bytes and arrays interchangeably"() {
+        def input = compressibleBytes(3 * ParallelGZipOutputStream.DEFAULT_BLOCK_SIZE)
+        def bytes = new ByteArrayOutputStream()
+
+        when:
+        new ParallelGZipOutputStream(bytes, executor, 1).withCloseable { output ->
+            int offset = 0
+            while (offset < input.length) {
+                output.write(input[offset++])
+                int count = Math.min(4097, input.length - offset)
+                output.write(input, offset, count)
+                offset += count
+            }
+        }
+
+        then:
+        decompress(bytes.toByteArray()) == input
+    }
+
+    def "compresses as well as serial GZIP when using a dictionary"() {
+        def input = compressibleBytes(8 * ParallelGZipOutputStream.DEFAULT_BLOCK_SIZE)
+
+        when:
+        def parallel = compress(input, 4)
+        def serial = new ByteArrayOutputStream()
+        new java.util.zip.GZIPOutputStream(serial).withCloseable { it.write(input) }
+
+        then:
+        parallel.length < serial.size() * 1.05
+    }
+
+    def "rejects blocks smaller than the dictionary"() {
+        when:
+        new ParallelGZipOutputStream(new ByteArrayOutputStream(), executor, 1, 1024, Deflater.DEFAULT_COMPRESSION)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private byte[] compress(byte[] input, int maxBlocksInFlight) {
+        def bytes = new ByteArrayOutputStream()
+        new ParallelGZipOutputStream(bytes, executor, maxBlocksInFlight).withCloseable { it.write(input) }
+        return bytes.toByteArray()
+    }
+
+    private static byte[] decompress(byte[] compressed) {
+        return new GZIPInputStream(new ByteArrayInputStream(compressed)).bytes
+    }
+
+    private static byte[] compressibleBytes(int length) {
+        def random = new Random(1234L)
+        def words = (0..<200).collect { "word${random.nextInt(10000)} ".getBytes("UTF-8") }
+        def bytes = new ByteArrayOutputStream(length)
+        while (bytes.size() < length) {
+            bytes.write(words[random.nextInt(words.size())])
+        }
+        return Arrays.copyOf(bytes.toByteArray(), length)
+    }
+}
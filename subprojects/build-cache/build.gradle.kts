@@ -19,8 +19,10 @@ dependencies {
     implementation(libs.slf4jApi)
     implementation(libs.guava)
     implementation(libs.inject)
+    implementation(libs.commonsCompress)
 
     jmhImplementation(platform(project(":distributions-dependencies")))
+    jmhImplementation(project(":build-cache-packaging"))
     jmhImplementation(libs.ant)
     jmhImplementation(libs.commonsCompress)
     jmhImplementation(libs.aircompressor)
@@ -35,6 +35,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.zip.Deflater;
 
 @Fork(1)
 @Warmup(iterations = 3)
@@ -55,6 +56,8 @@ public abstract class AbstractTaskOutputPackagingBenchmark {
         .put("tar.small", new AntTarPacker(2))
         .put("tar.large", new AntTarPacker(64))
         .put("tar.gz", new GzipPacker(new AntTarPacker(4)))
+        .put("tar.gz.parallel", new ParallelGzipPacker(new AntTarPacker(4), Deflater.DEFAULT_COMPRESSION))
+        .put("tar.gz.parallel.fast", new ParallelGzipPacker(new AntTarPacker(4), Deflater.BEST_SPEED))
         .put("zip", new ZipPacker(4))
         .build();
 
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.gradle.internal.file.FileAccessTracker;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.HashingOutputStream;
+import org.gradle.internal.resource.local.LocallyAvailableResource;
+import org.gradle.internal.resource.local.PathKeyFileStore;
+import org.gradle.util.internal.GFileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores packed build cache entries as a manifest plus one content file per distinct file contained in the entry,
+ * so that files shared by many entries are only stored once in the cache directory.
+ *
+ * <p>The manifest of an entry is the entry's tar archive with the contents of larger files replaced by a reference to a content file.
+ * Content files are GZIP compressed and named after the hash of their uncompressed content.
+ * Both manifests and content files live directly in the cache directory and are marked accessed whenever an entry referencing them is stored or loaded.
+ * A content file is therefore never less recently used than the manifests referencing it, which keeps {@link org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup} working unchanged.</p>
+ *
+ * <p>Entries are restored into an uncompressed GZIP stream, so that the packer can read them as usual without paying for compressing them again.</p>
+ */
+class DeduplicatingEntryStore {
+    static final String MANIFEST_SUFFIX = ".manifest";
+    static final String CONTENT_SUFFIX = ".content";
+    static final int DEFAULT_MINIMUM_FILE_SIZE = 4 * 1024;
+
+    private static final String ENCODING = "UTF-8";
+    private static final String CONTENT_HASH_HEADER = "GRADLE.content.hash";
+    private static final String CONTENT_SIZE_HEADER = "GRADLE.content.size";
+
+    private final PathKeyFileStore fileStore;
+    private final FileAccessTracker fileAccessTracker;
+    private final int minimumFileSize;
+
+    DeduplicatingEntryStore(PathKeyFileStore fileStore, FileAccessTracker fileAccessTracker, int minimumFileSize) {
+        this.fileStore = fileStore;
+        this.fileAccessTracker = fileAccessTracker;
+        this.minimumFileSize = minimumFileSize;
+    }
+
+    /**
+     * Stores the given packed entry under the given key.
+     *
+     * @return {@code false} if the file is not a GZIP compressed tar archive, and should be stored as is.
+     */
+    boolean store(String key, File entry) throws IOException {
+        if (!isGzip(entry)) {
+            return false;
+        }
+        File manifest = new File(entry.getPath() + MANIFEST_SUFFIX);
+        File content = new File(entry.getPath() + CONTENT_SUFFIX);
+        try {
+            try (
+                TarArchiveInputStream tarInput = new TarArchiveInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(entry))), ENCODING);
+                TarArchiveOutputStream tarOutput = createTarOutput(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(manifest))))
+            ) {
+                TarArchiveEntry tarEntry;
+                while ((tarEntry = tarInput.getNextTarEntry()) != null) {
+                    if (tarEntry.isFile() && tarEntry.getSize() >= minimumFileSize) {
+                        HashCode contentHash = storeContent(tarInput, content);
+                        TarArchiveEntry manifestEntry = copyOf(tarEntry, 0);
+                        manifestEntry.addPaxHeader(CONTENT_HASH_HEADER, contentHash.toString());
+                        manifestEntry.addPaxHeader(CONTENT_SIZE_HEADER, String.valueOf(tarEntry.getSize()));
+                        tarOutput.putArchiveEntry(manifestEntry);
+                    } else {
+                        tarOutput.putArchiveEntry(tarEntry);
+                        ByteStreams.copy(tarInput, tarOutput);
+                    }
+                    tarOutput.closeArchiveEntry();
+                }
+            } catch (IOException e) {
+                // Not a tar archive after all, content files stored so far will be cleaned up eventually
+                return false;
+            }
+            LocallyAvailableResource resource = fileStore.move(key + MANIFEST_SUFFIX, manifest);
+            fileAccessTracker.markAccessed(resource.getFile());
+            return true;
+        } finally {
+            GFileUtils.deleteQuietly(manifest);
+            GFileUtils.deleteQuietly(content);
+        }
+    }
+
+    private HashCode storeContent(InputStream input, File content) throws IOException {
+        HashCode contentHash;
+        try (HashingOutputStream output = new HashingOutputStream(Hashing.defaultFunction(), new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(content))))) {
+            ByteStreams.copy(input, output);
+            contentHash = output.hash();
+        }
+        String path = contentHash + CONTENT_SUFFIX;
+        LocallyAvailableResource resource = fileStore.get(path);
+        if (resource == null) {
+            resource = fileStore.move(path, content);
+        }
+        fileAccessTracker.markAccessed(resource.getFile());
+        return contentHash;
+    }
+
+    /**
+     * Restores the packed entry described by the given manifest into the given file.
+     *
+     * @return {@code false} if some of the content referenced by the manifest has been removed from the cache.
+     */
+    boolean restore(File manifest, File entry) throws IOException {
+        try (
+            TarArchiveInputStream tarInput = new TarArchiveInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(manifest))), ENCODING);
+            TarArchiveOutputStream tarOutput = createTarOutput(new UncompressedGZIPOutputStream(new BufferedOutputStream(new FileOutputStream(entry))))
+        ) {
+            TarArchiveEntry tarEntry;
+            while ((tarEntry = tarInput.getNextTarEntry()) != null) {
+                String contentHash = tarEntry.getExtraPaxHeader(CONTENT_HASH_HEADER);
+                if (contentHash == null) {
+                    tarOutput.putArchiveEntry(tarEntry);
+                    ByteStreams.copy(tarInput, tarOutput);
+                } else {
+                    long size = Long.parseLong(tarEntry.getExtraPaxHeader(CONTENT_SIZE_HEADER));
+                    LocallyAvailableResource resource = fileStore.get(contentHash + CONTENT_SUFFIX);
+                    if (resource == null) {
+                        return false;
+                    }
+                    File content = resource.getFile();
+                    fileAccessTracker.markAccessed(content);
+                    tarOutput.putArchiveEntry(copyOf(tarEntry, size));
+                    try (InputStream contentInput = new GZIPInputStream(new BufferedInputStream(new FileInputStream(content)))) {
+                        if (ByteStreams.copy(contentInput, tarOutput) != size) {
+                            throw new IOException("Unexpected size of content file " + content + ".");
+                        }
+                    }
+                }
+                tarOutput.closeArchiveEntry();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether all content referenced by the given manifest is still in the cache.
+     */
+    boolean hasAllContent(File manifest) throws IOException {
+        try (TarArchiveInputStream tarInput = new TarArchiveInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(manifest))), ENCODING)) {
+            TarArchiveEntry tarEntry;
+            while ((tarEntry = tarInput.getNextTarEntry()) != null) {
+                String contentHash = tarEntry.getExtraPaxHeader(CONTENT_HASH_HEADER);
+                if (contentHash != null && fileStore.get(contentHash + CONTENT_SUFFIX) == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the given entry with a different size, leaving out the headers added for the manifest.
+     * The entry itself is still used by the tar input stream to find the next entry, so it must not be modified.
+     */
+    private static TarArchiveEntry copyOf(TarArchiveEntry tarEntry, long size) {
+        TarArchiveEntry copy = new TarArchiveEntry(tarEntry.getName(), tarEntry.getLinkFlag(), true);
+        copy.setMode(tarEntry.getMode());
+        copy.setModTime(tarEntry.getModTime());
+        copy.setSize(size);
+        for (Map.Entry<String, String> header : tarEntry.getExtraPaxHeaders().entrySet()) {
+            if (!header.getKey().equals(CONTENT_HASH_HEADER) && !header.getKey().equals(CONTENT_SIZE_HEADER)) {
+                copy.addPaxHeader(header.getKey(), header.getValue());
+            }
+        }
+        return copy;
+    }
+
+    private static TarArchiveOutputStream createTarOutput(OutputStream output) {
+        TarArchiveOutputStream tarOutput = new TarArchiveOutputStream(output, ENCODING);
+        tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tarOutput.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        tarOutput.setAddPaxHeadersForNonAsciiNames(true);
+        return tarOutput;
+    }
+
+    private static boolean isGzip(File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            return input.read() == 0x1f && input.read() == 0x8b;
+        }
+    }
+
+    private static class UncompressedGZIPOutputStream extends GZIPOutputStream {
+        UncompressedGZIPOutputStream(OutputStream output) throws IOException {
+            super(output, 64 * 1024);
+            def.setLevel(Deflater.NO_COMPRESSION);
+        }
+    }
+}
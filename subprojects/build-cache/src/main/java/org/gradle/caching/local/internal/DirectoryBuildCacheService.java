@@ -46,14 +46,25 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final BuildCacheTempFileStore tempFileStore;
     private final FileAccessTracker fileAccessTracker;
     private final String failedFileSuffix;
+    private final DeduplicatingEntryStore deduplicatingEntryStore;
+    private final boolean deduplicateEntries;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+        this(fileStore, persistentCache, tempFileStore, fileAccessTracker, failedFileSuffix, false);
+    }
+
+    /**
+     * @param deduplicateEntries whether to store new entries as a manifest plus content files shared between entries. Entries stored this way are always loaded, regardless of this flag.
+     */
+    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix, boolean deduplicateEntries) {
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
         this.fileAccessTracker = fileAccessTracker;
         this.failedFileSuffix = failedFileSuffix;
+        this.deduplicatingEntryStore = new DeduplicatingEntryStore(fileStore, fileAccessTracker, DeduplicatingEntryStore.DEFAULT_MINIMUM_FILE_SIZE);
+        this.deduplicateEntries = deduplicateEntries;
     }
 
     private static class LoadAction implements Action<File> {
@@ -94,20 +105,33 @@ public void loadLocally(final BuildCacheKey key, final Action<? super File> read
         persistentCache.withFileLock(new Runnable() {
             @Override
             public void run() {
+                boolean contentMissing;
                 lock.readLock().lock();
                 try {
-                    loadInsideLock(key, reader);
+                    contentMissing = loadInsideLock(key, reader);
                 } finally {
                     lock.readLock().unlock();
                 }
+                if (contentMissing) {
+                    // Other threads may still be reading the manifest, so it can only be removed while holding the write lock
+                    lock.writeLock().lock();
+                    try {
+                        removeIncompleteManifestInsideLock(key);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
             }
         });
     }
 
-    private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
+    /**
+     * @return {@code true} if the entry is stored as a manifest referencing content which has been cleaned up.
+     */
+    private boolean loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
         LocallyAvailableResource resource = fileStore.get(key.getHashCode());
         if (resource == null) {
-            return;
+            return loadDeduplicatedInsideLock(key, reader);
         }
 
         File file = resource.getFile();
@@ -116,17 +140,67 @@ private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
         try {
             reader.execute(file);
         } catch (Exception e) {
-            // Try to move the file out of the way in case its permanently corrupt
-            // Don't delete, so that it can be potentially used for debugging
-            File failedFile = new File(file.getAbsolutePath() + failedFileSuffix);
-            GFileUtils.deleteQuietly(failedFile);
-            //noinspection ResultOfMethodCallIgnored
-            file.renameTo(failedFile);
-
-            throw UncheckedException.throwAsUncheckedException(e);
+            throw moveAsideAndRethrow(file, e);
+        }
+        return false;
+    }
+
+    private boolean loadDeduplicatedInsideLock(BuildCacheKey key, final Action<? super File> reader) {
+        LocallyAvailableResource resource = fileStore.get(key.getHashCode() + DeduplicatingEntryStore.MANIFEST_SUFFIX);
+        if (resource == null) {
+            return false;
+        }
+
+        final File manifest = resource.getFile();
+        fileAccessTracker.markAccessed(manifest);
+
+        final boolean[] contentMissing = new boolean[1];
+        tempFileStore.withTempFile(key, new Action<File>() {
+            @Override
+            public void execute(@Nonnull File file) {
+                try {
+                    if (!deduplicatingEntryStore.restore(manifest, file)) {
+                        // Some of the content has been cleaned up, treat it as a miss
+                        contentMissing[0] = true;
+                        return;
+                    }
+                    reader.execute(file);
+                } catch (Exception e) {
+                    throw moveAsideAndRethrow(manifest, e);
+                }
+            }
+        });
+        return contentMissing[0];
+    }
+
+    /**
+     * Removes the manifest of the given entry unless it has been stored again with all of its content in the meantime.
+     */
+    private void removeIncompleteManifestInsideLock(BuildCacheKey key) {
+        LocallyAvailableResource resource = fileStore.get(key.getHashCode() + DeduplicatingEntryStore.MANIFEST_SUFFIX);
+        if (resource == null) {
+            return;
+        }
+        try {
+            if (!deduplicatingEntryStore.hasAllContent(resource.getFile())) {
+                GFileUtils.deleteQuietly(resource.getFile());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
+    private RuntimeException moveAsideAndRethrow(File file, Exception e) {
+        // Try to move the file out of the way in case its permanently corrupt
+        // Don't delete, so that it can be potentially used for debugging
+        File failedFile = new File(file.getAbsolutePath() + failedFileSuffix);
+        GFileUtils.deleteQuietly(failedFile);
+        //noinspection ResultOfMethodCallIgnored
+        file.renameTo(failedFile);
+
+        throw UncheckedException.throwAsUncheckedException(e);
+    }
+
     @Override
     public void store(final BuildCacheKey key, final BuildCacheEntryWriter result) throws BuildCacheException {
         tempFileStore.withTempFile(key, new Action<File>() {
@@ -166,10 +240,21 @@ public void run() {
     }
 
     private void storeInsideLock(BuildCacheKey key, File file) {
+        if (deduplicateEntries && storeDeduplicated(key, file)) {
+            return;
+        }
         LocallyAvailableResource resource = fileStore.move(key.getHashCode(), file);
         fileAccessTracker.markAccessed(resource.getFile());
     }
 
+    private boolean storeDeduplicated(BuildCacheKey key, File file) {
+        try {
+            return deduplicatingEntryStore.store(key.getHashCode(), file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Override
     public void withTempFile(final BuildCacheKey key, final Action<? super File> action) {
         persistentCache.withFileLock(new Runnable() {
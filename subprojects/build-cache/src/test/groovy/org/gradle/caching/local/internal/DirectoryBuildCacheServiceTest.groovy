@@ -16,6 +16,9 @@
 
 package org.gradle.caching.local.internal
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
 import org.gradle.api.internal.file.temp.DefaultTemporaryFileProvider
 import org.gradle.cache.PersistentCache
 import org.gradle.caching.BuildCacheEntryReader
@@ -30,6 +33,9 @@ import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
 @UsesNativeServices
 @CleanupTestDirectory
 class DirectoryBuildCacheServiceTest extends Specification {
@@ -134,4 +140,97 @@ class DirectoryBuildCacheServiceTest extends Specification {
         1 * fileAccessTracker.markAccessed(cachedFile)
         loaded
     }
+
+    def "stores files shared between entries only once when deduplicating"() {
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", true)
+        def sharedContent = "shared" * 2000
+        def otherKey = Mock(BuildCacheKey) {
+            getHashCode() >> "5678abcd"
+        }
+
+        when:
+        deduplicatingService.store(key, tarGzWriter(["shared.txt": sharedContent, "small.txt": "first"]))
+        deduplicatingService.store(otherKey, tarGzWriter(["tree/shared.txt": sharedContent, "small.txt": "second"]))
+
+        then:
+        cacheDir.list().findAll { it.endsWith(DeduplicatingEntryStore.MANIFEST_SUFFIX) }.sort() == ["1234abcd.manifest", "5678abcd.manifest"]
+        def contentFiles = cacheDir.listFiles().findAll { it.name.endsWith(DeduplicatingEntryStore.CONTENT_SUFFIX) }
+        contentFiles.size() == 1
+        contentFiles[0].length() < sharedContent.length()
+        new GZIPInputStream(new FileInputStream(contentFiles[0])).getText("UTF-8") == sharedContent
+
+        when:
+        Map<String, String> loaded = null
+        def hit = deduplicatingService.load(otherKey, { input -> loaded = readTarGz(input) } as BuildCacheEntryReader)
+
+        then:
+        hit
+        loaded == ["tree/shared.txt": sharedContent, "small.txt": "second"]
+    }
+
+    def "treats deduplicated entry with missing content as a miss"() {
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", true)
+        deduplicatingService.store(key, tarGzWriter(["shared.txt": "shared" * 2000]))
+
+        when:
+        cacheDir.listFiles().findAll { it.name.endsWith(DeduplicatingEntryStore.CONTENT_SUFFIX) }*.delete()
+        def hit = deduplicatingService.load(key, { input -> throw new IllegalStateException("should not be loaded") } as BuildCacheEntryReader)
+
+        then:
+        !hit
+        !new File(cacheDir, hashCode + DeduplicatingEntryStore.MANIFEST_SUFFIX).exists()
+    }
+
+    def "stores entries that are not tar archives as is when deduplicating"() {
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", true)
+
+        when:
+        deduplicatingService.store(key, new BuildCacheEntryWriter() {
+            @Override
+            void writeTo(OutputStream output) throws IOException {
+                output.write("foo".getBytes())
+            }
+
+            @Override
+            long getSize() {
+                return 3
+            }
+        })
+
+        then:
+        new File(cacheDir, hashCode).text == "foo"
+    }
+
+    private static BuildCacheEntryWriter tarGzWriter(Map<String, String> files) {
+        return new BuildCacheEntryWriter() {
+            @Override
+            void writeTo(OutputStream output) throws IOException {
+                def tarOutput = new TarArchiveOutputStream(new GZIPOutputStream(output), "UTF-8")
+                files.each { path, content ->
+                    def bytes = content.getBytes("UTF-8")
+                    def entry = new TarArchiveEntry(path)
+                    entry.size = bytes.length
+                    tarOutput.putArchiveEntry(entry)
+                    tarOutput.write(bytes)
+                    tarOutput.closeArchiveEntry()
+                }
+                tarOutput.close()
+            }
+
+            @Override
+            long getSize() {
+                return -1
+            }
+        }
+    }
+
+    private static Map<String, String> readTarGz(InputStream input) {
+        def files = [:]
+        def tarInput = new TarArchiveInputStream(new GZIPInputStream(input), "UTF-8")
+        TarArchiveEntry entry
+        while ((entry = tarInput.nextTarEntry) != null) {
+            files[entry.name] = new String(tarInput.bytes, "UTF-8")
+        }
+        return files
+    }
 }
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.initialization.DefaultBuildCancellationToken;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLock;
+import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.work.DefaultWorkerLeaseService;
+import org.gradle.internal.work.WorkerLeaseRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Replays synthetic execution plans through node selection, both directly against the plan and through {@link DefaultPlanExecutor}.
+ *
+ * The plans consist of layers of {@code layerWidth} nodes, where each node depends on a few random nodes of the previous layer.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ExecutionPlanSchedulingBenchmark {
+    private static final int DEPENDENCIES_PER_NODE = 3;
+
+    @Param({"10000", "50000"})
+    int nodeCount;
+
+    @Param({"32", "1024"})
+    int layerWidth;
+
+    @Param({"16"})
+    int workerCount;
+
+    private DefaultExecutorFactory executorFactory;
+    private DefaultResourceLockCoordinationService coordinationService;
+    private DefaultWorkerLeaseService workerLeaseService;
+    private DefaultPlanExecutor planExecutor;
+    private DefaultExecutionPlan plan;
+
+    @Setup(Level.Trial)
+    public void setupServices() {
+        DefaultParallelismConfiguration parallelismConfiguration = new DefaultParallelismConfiguration(true, workerCount);
+        executorFactory = new DefaultExecutorFactory();
+        coordinationService = new DefaultResourceLockCoordinationService();
+        workerLeaseService = new DefaultWorkerLeaseService(coordinationService, parallelismConfiguration);
+        planExecutor = new DefaultPlanExecutor(parallelismConfiguration, executorFactory, workerLeaseService, new DefaultBuildCancellationToken(), coordinationService);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServices() {
+        workerLeaseService.stop();
+        executorFactory.stop();
+    }
+
+    @Setup(Level.Invocation)
+    public void createPlan() {
+        plan = createSyntheticPlan(nodeCount, layerWidth);
+    }
+
+    @Benchmark
+    public void selectNodesSequentially(Blackhole blackhole) {
+        WorkerLeaseRegistry.WorkerLease workerLease = new BenchmarkWorkerLease();
+        ResourceLockState resourceLockState = new BenchmarkResourceLockState();
+        while (plan.hasNodesRemaining()) {
+            Node node = plan.selectNext(workerLease, resourceLockState);
+            if (node == null) {
+                throw new IllegalStateException("No node selected while nodes are remaining.");
+            }
+            blackhole.consume(node);
+            plan.finishedExecuting(node);
+            workerLease.unlock();
+        }
+    }
+
+    @Benchmark
+    public void executeNodesInParallel(Blackhole blackhole) {
+        List<Throwable> failures = new ArrayList<>();
+        workerLeaseService.withLocks(Collections.singletonList(workerLeaseService.getWorkerLease()), () ->
+            planExecutor.process(plan, failures, blackhole::consume)
+        );
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Plan execution failed.", failures.get(0));
+        }
+    }
+
+    private static DefaultExecutionPlan createSyntheticPlan(int nodeCount, int layerWidth) {
+        Random random = new Random(1234L);
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            SyntheticNode node = new SyntheticNode(i);
+            int layerStart = (i / layerWidth) * layerWidth;
+            if (layerStart > 0) {
+                int previousLayerStart = layerStart - layerWidth;
+                for (int j = 0; j < DEPENDENCIES_PER_NODE; j++) {
+                    node.addDependencySuccessor(nodes.get(previousLayerStart + random.nextInt(layerWidth)));
+                }
+            }
+            node.require();
+            node.dependenciesProcessed();
+            nodes.add(node);
+        }
+
+        ExecutionNodeAccessHierarchy outputHierarchy = new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, NoOpStat.INSTANCE);
+        ExecutionNodeAccessHierarchy destroyableHierarchy = new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, NoOpStat.INSTANCE);
+        DefaultExecutionPlan plan = new DefaultExecutionPlan(
+            "synthetic plan",
+            new TaskNodeFactory(null, null, null),
+            new TaskDependencyResolver(Collections.emptyList()),
+            node -> false,
+            outputHierarchy,
+            destroyableHierarchy
+        );
+        plan.addNodes(nodes);
+        plan.determineExecutionPlan();
+        return plan;
+    }
+
+    private static class SyntheticNode extends Node {
+        private final int id;
+
+        SyntheticNode(int id) {
+            this.id = id;
+        }
+
+        @Nullable
+        @Override
+        public Throwable getNodeFailure() {
+            return null;
+        }
+
+        @Override
+        public void rethrowNodeFailure() {
+        }
+
+        @Override
+        public void prepareForExecution() {
+        }
+
+        @Override
+        public void resolveDependencies(TaskDependencyResolver dependencyResolver, Action<Node> processHardSuccessor) {
+        }
+
+        @Override
+        public Set<Node> getFinalizers() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void resolveMutations() {
+            getMutationInfo().resolved = true;
+        }
+
+        @Override
+        public boolean isPublicNode() {
+            return true;
+        }
+
+        @Override
+        public boolean requiresMonitoring() {
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public ResourceLock getProjectToLock() {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public ProjectInternal getOwningProject() {
+            return null;
+        }
+
+        @Override
+        public List<? extends ResourceLock> getResourcesToLock() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            return Integer.compare(id, ((SyntheticNode) other).id);
+        }
+
+        @Override
+        public String toString() {
+            return "synthetic node " + id;
+        }
+    }
+
+    private static class BenchmarkWorkerLease implements WorkerLeaseRegistry.WorkerLease {
+        private boolean locked;
+
+        @Override
+        public WorkerLeaseRegistry.WorkerLease createChild() {
+            return new BenchmarkWorkerLease();
+        }
+
+        @Override
+        public WorkerLeaseRegistry.WorkerLeaseCompletion startChild() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isLocked() {
+            return locked;
+        }
+
+        @Override
+        public boolean isLockedByCurrentThread() {
+            return locked;
+        }
+
+        @Override
+        public boolean tryLock() {
+            locked = true;
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            locked = false;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "benchmark worker lease";
+        }
+    }
+
+    private static class BenchmarkResourceLockState implements ResourceLockState {
+        @Override
+        public void registerLocked(ResourceLock resourceLock) {
+        }
+
+        @Override
+        public void registerUnlocked(ResourceLock resourceLock) {
+        }
+
+        @Override
+        public void releaseLocks() {
+        }
+    }
+
+    private enum NoOpStat implements Stat {
+        INSTANCE;
+
+        @Override
+        public int getUnixMode(File f) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileMetadata stat(File f) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.serialize;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Interners;
+import org.gradle.internal.execution.history.impl.FileCollectionFingerprintSerializer;
+import org.gradle.internal.execution.history.impl.SerializableFileCollectionFingerprint;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
+import org.gradle.internal.fingerprint.impl.DefaultFileSystemLocationFingerprint;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes typical payloads to a file and reads them back, using either the Kryo backed or the channel backed encoder and decoder.
+ *
+ * Run with {@code -prof gc} to compare the allocation rate.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class EncoderDecoderBenchmark {
+    private static final int ENTRIES = 1000;
+
+    @Param({"kryo", "channel"})
+    String codec;
+
+    @Param({"hashes", "map", "fingerprint"})
+    String payload;
+
+    private File file;
+    private Serializer serializer;
+    private Object value;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("encoder-benchmark", ".bin");
+        switch (payload) {
+            case "hashes":
+                List<HashCode> hashes = new ArrayList<>();
+                for (int i = 0; i < ENTRIES; i++) {
+                    hashes.add(Hashing.hashString("entry" + i));
+                }
+                serializer = new ListSerializer<>(new HashCodeSerializer());
+                value = hashes;
+                break;
+            case "map":
+                Map<String, String> map = new LinkedHashMap<>();
+                for (int i = 0; i < ENTRIES; i++) {
+                    map.put("key" + i, "some/relative/path/to/file" + i + ".txt");
+                }
+                serializer = new MapSerializer<>(BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER);
+                value = map;
+                break;
+            case "fingerprint":
+                Map<String, FileSystemLocationFingerprint> fingerprints = new LinkedHashMap<>();
+                for (int i = 0; i < ENTRIES; i++) {
+                    String path = "/home/user/project/src/main/java/org/example/Type" + i + ".java";
+                    fingerprints.put(path, new DefaultFileSystemLocationFingerprint("org/example/Type" + i + ".java", FileType.RegularFile, Hashing.hashString(path)));
+                }
+                serializer = new FileCollectionFingerprintSerializer(Interners.newStrongInterner());
+                value = new SerializableFileCollectionFingerprint(
+                    fingerprints,
+                    ImmutableMultimap.of("/home/user/project/src/main/java", Hashing.hashString("root")),
+                    Hashing.hashString("strategy")
+                );
+                break;
+            default:
+                throw new IllegalArgumentException(payload);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Object roundTrip() throws Exception {
+        if (codec.equals("kryo")) {
+            try (KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(file))) {
+                serializer.write(encoder, value);
+            }
+            try (KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(file))) {
+                return serializer.read(decoder);
+            }
+        } else {
+            try (ChannelBackedEncoder encoder = new ChannelBackedEncoder(FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+                serializer.write(encoder, value);
+            }
+            try (ChannelBackedDecoder decoder = new ChannelBackedDecoder(FileChannel.open(file.toPath()))) {
+                return serializer.read(decoder);
+            }
+        }
+    }
+}
@@ -28,12 +28,18 @@
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class CrossBuildFileHashCache implements Closeable {
+    /**
+     * When set to {@code true}, the caches read their entries from memory mapped regions of the cache files.
+     */
+    public static final String MEMORY_MAPPED_PROPERTY = "org.gradle.internal.file-hash-cache.memory-mapped";
 
     private final PersistentCache cache;
     private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
+    private final boolean memoryMapped;
 
     public CrossBuildFileHashCache(ScopedCache scopedCache, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, Kind cacheKind) {
         this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
+        this.memoryMapped = Boolean.getBoolean(MEMORY_MAPPED_PROPERTY);
         cache = scopedCache.cache(cacheKind.cacheId)
             .withDisplayName(cacheKind.description)
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
@@ -42,6 +48,7 @@ public CrossBuildFileHashCache(ScopedCache scopedCache, InMemoryCacheDecoratorFa
 
     public <K, V> PersistentIndexedCache<K, V> createCache(PersistentIndexedCacheParameters<K, V> parameters, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
         return cache.createCache(parameters
+            .withMemoryMapped(memoryMapped)
             .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses))
         );
     }
@@ -40,7 +40,9 @@
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
+import org.gradle.concurrent.ParallelismConfiguration;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.FileException;
 import org.gradle.internal.hash.ChecksumService;
@@ -110,6 +112,7 @@ public void registerGradleServices(ServiceRegistration registration) {
         // Not build scoped because of dependency on GradleInternal for build path
         registration.addProvider(new Object() {
             private static final String GRADLE_VERSION_KEY = "gradleVersion";
+            private static final String PARALLEL_COMPRESSION_PROPERTY = "org.gradle.internal.caching.parallel-compression";
 
             TarPackerFileSystemSupport createPackerFileSystemSupport(Deleter deleter) {
                 return new DefaultTarPackerFileSystemSupport(deleter);
@@ -119,10 +122,17 @@ BuildCacheEntryPacker createResultPacker(
                 TarPackerFileSystemSupport fileSystemSupport,
                 FileSystem fileSystem,
                 StreamHasher fileHasher,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                ExecutorFactory executorFactory,
+                ParallelismConfiguration parallelismConfiguration
             ) {
-                return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                TarBuildCacheEntryPacker tarPacker = new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner);
+                int maxWorkerCount = parallelismConfiguration.getMaxWorkerCount();
+                if (maxWorkerCount < 2 || !Boolean.getBoolean(PARALLEL_COMPRESSION_PROPERTY)) {
+                    return new GZipBuildCacheEntryPacker(tarPacker);
+                }
+                // Compression is CPU bound, so it uses no more threads than the build may use for workers
+                return new GZipBuildCacheEntryPacker(tarPacker, executorFactory.create("Build cache entry compression", maxWorkerCount), 2 * maxWorkerCount);
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
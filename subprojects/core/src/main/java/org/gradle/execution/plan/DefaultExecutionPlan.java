@@ -50,12 +50,15 @@
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Stream;
 
 import static com.google.common.collect.Lists.newLinkedList;
@@ -70,7 +73,14 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private final Set<Node> entryNodes = new LinkedHashSet<>();
     private final NodeMapping nodeMapping = new NodeMapping();
-    private final List<Node> executionQueue = new LinkedList<>();
+    private final Set<Node> executionQueue = new LinkedHashSet<>();
+    private final Map<Node, Integer> executionQueuePositions = new IdentityHashMap<>();
+    /**
+     * The nodes of the execution queue whose dependencies are complete, keyed by their position in the execution queue.
+     * Every node in the execution queue for which {@link Node#allDependenciesComplete()} is true is contained in this map,
+     * so that selecting the next node only needs to visit these nodes instead of the whole execution queue.
+     */
+    private final NavigableMap<Integer, Node> readyNodes = new TreeMap<>();
     private final Set<ResourceLock> projectLocks = new HashSet<>();
     private final FailureCollector failureCollector = new FailureCollector();
     private final String displayName;
@@ -351,11 +361,18 @@ public NodeInVisitingSegment apply(Node node) {
             }
         }
         executionQueue.clear();
+        executionQueuePositions.clear();
+        readyNodes.clear();
         dependencyResolver.clear();
         nodeMapping.removeIf(Node::requiresMonitoring);
         executionQueue.addAll(nodeMapping);
+        int position = 0;
         for (Node node : executionQueue) {
+            executionQueuePositions.put(node, position++);
             maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
+            if (node.allDependenciesComplete()) {
+                recordAllDependenciesComplete(node);
+            }
         }
         this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
     }
@@ -496,6 +513,8 @@ public void clear() {
         entryNodes.clear();
         nodeMapping.clear();
         executionQueue.clear();
+        executionQueuePositions.clear();
+        readyNodes.clear();
         projectLocks.clear();
         failureCollector.clearFailures();
         producedButNotYetConsumed.clear();
@@ -568,7 +587,7 @@ public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLock
         if (!maybeNodesReady) {
             return null;
         }
-        Iterator<Node> iterator = executionQueue.iterator();
+        Iterator<Node> iterator = readyNodes.values().iterator();
         boolean foundReadyNode = false;
         while (iterator.hasNext()) {
             Node node = iterator.next();
@@ -587,6 +606,10 @@ public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLock
                     break;
                 }
 
+                // Remove the node before it starts or is skipped, as skipping it can add its predecessors to the ready nodes
+                iterator.remove();
+                executionQueue.remove(node);
+                executionQueuePositions.remove(node);
                 if (node.allDependenciesSuccessful()) {
                     node.startExecution(this::recordNodeExecutionStarted);
                     if (mutations.hasValidationProblem) {
@@ -595,7 +618,6 @@ public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLock
                 } else {
                     node.skipExecution(this::recordNodeCompleted);
                 }
-                iterator.remove();
                 return node;
             }
         }
@@ -631,7 +653,17 @@ private boolean tryAcquireWorkerLeaseForNode(Node node, WorkerLeaseRegistry.Work
 
     private void updateAllDependenciesCompleteForPredecessors(Node node) {
         for (Node predecessor : node.getAllPredecessors()) {
-            maybeNodesReady |= predecessor.updateAllDependenciesComplete() && predecessor.isReady();
+            if (predecessor.updateAllDependenciesComplete()) {
+                recordAllDependenciesComplete(predecessor);
+                maybeNodesReady |= predecessor.isReady();
+            }
+        }
+    }
+
+    private void recordAllDependenciesComplete(Node node) {
+        Integer position = executionQueuePositions.get(node);
+        if (position != null) {
+            readyNodes.put(position, node);
         }
     }
 
@@ -808,7 +840,7 @@ public void finishedExecuting(Node node) {
         }
     }
 
-    private static void enforceFinalizers(Node node) {
+    private void enforceFinalizers(Node node) {
         for (Node finalizerNode : node.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
                 enforceWithDependencies(finalizerNode);
@@ -816,7 +848,7 @@ private static void enforceFinalizers(Node node) {
         }
     }
 
-    private static void enforceWithDependencies(Node node) {
+    private void enforceWithDependencies(Node node) {
         Set<Node> enforcedNodes = new HashSet<>();
 
         Deque<Node> candidates = new ArrayDeque<>();
@@ -834,6 +866,9 @@ private static void enforceWithDependencies(Node node) {
                     // Completed changed from true to false - inform all nodes depending on this one.
                     for (Node predecessor : candidate.getAllPredecessors()) {
                         predecessor.forceAllDependenciesCompleteUpdate();
+                        if (predecessor.allDependenciesComplete()) {
+                            recordAllDependenciesComplete(predecessor);
+                        }
                     }
                 }
             }
@@ -22,6 +22,7 @@
 import org.gradle.api.internal.file.FileTreeInternal;
 import org.gradle.api.internal.file.collections.FileSystemMirroringFileTree;
 import org.gradle.api.tasks.util.PatternSet;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.execution.fingerprint.FileCollectionSnapshotter;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.file.Stat;
@@ -30,19 +31,44 @@
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.vfs.FileSystemAccess;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+
+public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshotter, Closeable {
+    /**
+     * When set to {@code true}, the roots of a file collection are snapshotted concurrently by an executor of the build session.
+     */
+    public static final String CONCURRENT_ROOTS_PROPERTY = "org.gradle.internal.snapshot.concurrent-roots";
 
-public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshotter {
     private final FileSystemAccess fileSystemAccess;
     private final GenericFileTreeSnapshotter genericFileTreeSnapshotter;
     private final Stat stat;
+    private final ManagedExecutor rootSnapshotExecutor;
 
     public DefaultFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, GenericFileTreeSnapshotter genericFileTreeSnapshotter, Stat stat) {
+        this(fileSystemAccess, genericFileTreeSnapshotter, stat, null);
+    }
+
+    /**
+     * @param rootSnapshotExecutor the executor snapshotting the roots of a file collection concurrently, which is stopped when this snapshotter is closed.
+     * The roots are snapshotted by the current thread only when it is {@code null}.
+     */
+    public DefaultFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, GenericFileTreeSnapshotter genericFileTreeSnapshotter, Stat stat, @Nullable ManagedExecutor rootSnapshotExecutor) {
         this.fileSystemAccess = fileSystemAccess;
         this.genericFileTreeSnapshotter = genericFileTreeSnapshotter;
         this.stat = stat;
+        this.rootSnapshotExecutor = rootSnapshotExecutor;
+    }
+
+    @Override
+    public void close() {
+        if (rootSnapshotExecutor != null) {
+            rootSnapshotExecutor.stop();
+        }
     }
 
     @Override
@@ -52,41 +78,104 @@ public FileSystemSnapshot snapshot(FileCollection fileCollection) {
         return CompositeFileSystemSnapshot.of(visitor.getRoots());
     }
 
+    /**
+     * Collects the roots of the file collection while it is visited, and only reads them from the virtual file system afterwards.
+     * Visiting the file collection can resolve dependencies and needs the locks held by the current thread, while reading the roots does not.
+     */
     private class SnapshottingVisitor implements FileCollectionStructureVisitor {
-        private final List<FileSystemSnapshot> roots = new ArrayList<>();
+        private final List<RootSnapshot> roots = new ArrayList<>();
 
         @Override
         public void visitCollection(FileCollectionInternal.Source source, Iterable<File> contents) {
             for (File file : contents) {
-                fileSystemAccess.read(file.getAbsolutePath(), roots::add);
+                String absolutePath = file.getAbsolutePath();
+                roots.add(new RootSnapshot(snapshots -> fileSystemAccess.read(absolutePath, snapshots::add)));
             }
         }
 
         @Override
         public void visitGenericFileTree(FileTreeInternal fileTree, FileSystemMirroringFileTree sourceTree) {
-            roots.add(genericFileTreeSnapshotter.snapshotFileTree(fileTree));
+            roots.add(RootSnapshot.of(genericFileTreeSnapshotter.snapshotFileTree(fileTree)));
         }
 
         @Override
         public void visitFileTree(File root, PatternSet patterns, FileTreeInternal fileTree) {
-            fileSystemAccess.read(
-                root.getAbsolutePath(),
-                new PatternSetSnapshottingFilter(patterns, stat),
+            String absolutePath = root.getAbsolutePath();
+            PatternSetSnapshottingFilter filter = new PatternSetSnapshottingFilter(patterns, stat);
+            roots.add(new RootSnapshot(snapshots -> fileSystemAccess.read(
+                absolutePath,
+                filter,
                 snapshot -> {
                     if (snapshot.getType() != FileType.Missing) {
-                        roots.add(snapshot);
+                        snapshots.add(snapshot);
                     }
                 }
-            );
+            )));
         }
 
         @Override
         public void visitFileTreeBackedByFile(File file, FileTreeInternal fileTree, FileSystemMirroringFileTree sourceTree) {
-            fileSystemAccess.read(file.getAbsolutePath(), roots::add);
+            String absolutePath = file.getAbsolutePath();
+            roots.add(new RootSnapshot(snapshots -> fileSystemAccess.read(absolutePath, snapshots::add)));
         }
 
         public List<FileSystemSnapshot> getRoots() {
-            return roots;
+            if (rootSnapshotExecutor != null && roots.size() > 1) {
+                snapshotConcurrently(rootSnapshotExecutor);
+            }
+            List<FileSystemSnapshot> snapshots = new ArrayList<>(roots.size());
+            for (RootSnapshot root : roots) {
+                root.snapshotInto(snapshots);
+            }
+            return snapshots;
+        }
+
+        /**
+         * Hands all roots but the first to the executor. The current thread does not wait for the executor to pick them up,
+         * it snapshots the roots which have not been started yet itself afterwards, so a busy executor cannot stall the current thread.
+         */
+        private void snapshotConcurrently(ManagedExecutor executor) {
+            for (int i = 1; i < roots.size(); i++) {
+                RootSnapshot root = roots.get(i);
+                executor.execute(() -> {
+                    try {
+                        root.snapshot();
+                    } catch (RuntimeException e) {
+                        // The current thread reads the root again and reports the failure
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * The snapshots of a single root of a file collection, which are taken at most once, by whichever thread gets to them first.
+     */
+    private static class RootSnapshot {
+        private final Consumer<List<FileSystemSnapshot>> snapshotter;
+        private List<FileSystemSnapshot> snapshots;
+
+        RootSnapshot(Consumer<List<FileSystemSnapshot>> snapshotter) {
+            this.snapshotter = snapshotter;
+        }
+
+        static RootSnapshot of(FileSystemSnapshot snapshot) {
+            RootSnapshot root = new RootSnapshot(snapshots -> snapshots.add(snapshot));
+            root.snapshot();
+            return root;
+        }
+
+        synchronized void snapshot() {
+            if (snapshots == null) {
+                List<FileSystemSnapshot> result = new ArrayList<>(1);
+                snapshotter.accept(result);
+                snapshots = result;
+            }
+        }
+
+        void snapshotInto(List<FileSystemSnapshot> target) {
+            snapshot();
+            target.addAll(snapshots);
         }
     }
 }
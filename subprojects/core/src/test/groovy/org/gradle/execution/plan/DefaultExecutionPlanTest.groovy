@@ -867,6 +867,110 @@ class DefaultExecutionPlanTest extends AbstractExecutionPlanSpec {
         executesNodes(node1, node2, node3)
     }
 
+    def "dependents become ready when their dependency completes"() {
+        given:
+        Task a = task("a")
+        Task b = task("b", dependsOn: [a])
+        Task c = task("c", dependsOn: [b])
+        addToGraphAndPopulate([c])
+
+        when:
+        def nodeA = selectNextTaskNode()
+
+        then:
+        nodeA.task == a
+        selectNextTaskNode() == null
+
+        when:
+        executionPlan.finishedExecuting(nodeA)
+        def nodeB = selectNextTaskNode()
+
+        then:
+        nodeB.task == b
+        selectNextTaskNode() == null
+
+        when:
+        executionPlan.finishedExecuting(nodeB)
+        def nodeC = selectNextTaskNode()
+
+        then:
+        nodeC.task == c
+
+        when:
+        executionPlan.finishedExecuting(nodeC)
+
+        then:
+        !executionPlan.hasNodesRemaining()
+    }
+
+    def "dependents become ready when their dependency is skipped while selecting the next node"() {
+        given:
+        RuntimeException failure = new RuntimeException()
+        Task a = task("a", failure: failure)
+        Task b = task("b", dependsOn: [a])
+        Task c = task("c", dependsOn: [b])
+        executionPlan.setContinueOnFailure(true)
+        addToGraphAndPopulate([c])
+
+        when:
+        def nodeA = selectNextTaskNode()
+        executionPlan.finishedExecuting(nodeA)
+        def nodeB = selectNextTaskNode()
+
+        then:
+        nodeA.task == a
+        nodeB.task == b
+        nodeB.complete
+
+        when:
+        executionPlan.finishedExecuting(nodeB)
+        def nodeC = selectNextTaskNode()
+
+        then:
+        nodeC.task == c
+        nodeC.complete
+
+        when:
+        executionPlan.finishedExecuting(nodeC)
+
+        then:
+        !executionPlan.hasNodesRemaining()
+    }
+
+    def "selects a later ready node while an earlier ready node cannot run and selects the earlier node once it can run"() {
+        given:
+        def projectA = project(project, "a")
+        def projectB = project(project, "b")
+        Task barA = task("bar", project: projectA)
+        Task fooA = task("foo", project: projectA)
+        Task fooB = task("foo", project: projectB)
+        addToGraphAndPopulate([barA, fooA, fooB])
+
+        when:
+        def first = selectNextTaskNode()
+        def second = selectNextTaskNode()
+
+        then:
+        first.task == barA
+        second.task == fooB
+        selectNextTaskNode() == null
+
+        when:
+        executionPlan.finishedExecuting(first)
+        def third = selectNextTaskNode()
+
+        then:
+        third.task == fooA
+
+        when:
+        executionPlan.finishedExecuting(second)
+        executionPlan.finishedExecuting(third)
+
+        then:
+        selectNextTaskNode() == null
+        !executionPlan.hasNodesRemaining()
+    }
+
 
     private Node requiredNode(Node... dependencies) {
         node(dependencies).tap {
@@ -904,6 +1008,14 @@ class DefaultExecutionPlanTest extends AbstractExecutionPlanSpec {
         assert executionPlan.filteredTasks == expectedTasks as Set
     }
 
+    private TaskNode selectNextTaskNode() {
+        def nextTaskNode
+        recordLocks {
+            nextTaskNode = executionPlan.selectNext(workerLease, resourceLockState)
+        }
+        return nextTaskNode
+    }
+
     List<Task> getExecutedTasks() {
         return executedNodes*.task
     }
@@ -937,7 +1049,7 @@ class DefaultExecutionPlanTest extends AbstractExecutionPlanSpec {
     }
 
     private TaskInternal task(Map options, final String name) {
-        def task = createTask(name)
+        def task = createTask(name, options.project ?: this.project)
         relationships(options, task)
         if (options.failure) {
             failure(task, options.failure)
@@ -28,8 +28,10 @@ import org.gradle.api.resources.ResourceException
 import org.gradle.api.resources.internal.LocalResourceAdapter
 import org.gradle.api.tasks.util.PatternFilterable
 import org.gradle.internal.Factory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.snapshot.FileSystemSnapshot
 import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.SnapshotUtil
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
@@ -188,6 +190,27 @@ class DefaultFileCollectionSnapshotterTest extends Specification {
         assertEmptyTree(tree.matching { exclude file.name })
     }
 
+    def "snapshots roots concurrently in the order of the file collection"() {
+        given:
+        def executor = new DefaultExecutorFactory().create("test", 4)
+        def concurrentSnapshotter = new DefaultFileCollectionSnapshotter(TestFiles.fileSystemAccess(), TestFiles.genericFileTreeSnapshotter(), TestFiles.fileSystem(), executor)
+        def dir = tmpDir.createDir('dir')
+        dir.createFile('nested/file.txt')
+        def files = (1..20).collect { tmpDir.createFile("file${it}.txt") }
+        def missing = tmpDir.file('missing')
+        def fileCollection = TestFiles.fileCollectionFactory().fixed(files + [dir, missing])
+
+        when:
+        def snapshot = concurrentSnapshotter.snapshot(fileCollection)
+
+        then:
+        SnapshotUtil.getRootHashes(snapshot).keySet() as List == (files + [dir, missing])*.absolutePath
+        SnapshotUtil.getRootHashes(snapshot) == SnapshotUtil.getRootHashes(snapshotter.snapshot(fileCollection))
+
+        cleanup:
+        concurrentSnapshotter.close()
+    }
+
     private TemporaryFileProvider testFileProvider() {
         new TemporaryFileProvider() {
             @Override
@@ -1,5 +1,6 @@
 plugins {
     id("gradlebuild.distribution.implementation-java")
+    id("gradlebuild.jmh")
 }
 
 dependencies {
@@ -99,6 +100,10 @@ dependencies {
     crossVersionTestImplementation(libs.jettyWebApp)
 }
 
+jmh {
+    fork.set(1)
+}
+
 classycle {
     excludePatterns.add("org/gradle/**")
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses POM files with the streaming parser used to read POMs, or into a DOM as was done before.
+ *
+ * The POMs are generated to look like a large BOM, or like a library POM that has a build section and a few dependencies.
+ * Run with {@code -prof gc} to compare the allocation rate.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class PomParserBenchmark {
+    private static final String SYSTEM_ID = "file:/repo/org/example/example/1.0/example-1.0.pom";
+
+    @Param({"dom", "stream"})
+    String parser;
+
+    @Param({"bom", "library"})
+    String pom;
+
+    private byte[] content;
+    private byte[] entities;
+    private DocumentBuilderFactory documentBuilderFactory;
+
+    @Setup
+    public void setup() throws Exception {
+        content = (pom.equals("bom") ? bom(500) : library(20)).getBytes(StandardCharsets.UTF_8);
+        entities = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setValidating(false);
+    }
+
+    @Benchmark
+    public Object parse() throws Exception {
+        if (parser.equals("stream")) {
+            return PomDomParser.parse(new ByteArrayInputStream(content), SYSTEM_ID);
+        }
+        DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        documentBuilder.setEntityResolver((publicId, systemId) -> new InputSource(new ByteArrayInputStream(entities)));
+        return documentBuilder.parse(new PomDomParser.AddDTDFilterInputStream(new ByteArrayInputStream(content)), SYSTEM_ID);
+    }
+
+    private static String bom(int managedDependencies) {
+        StringBuilder builder = header();
+        builder.append("  <properties>\n");
+        for (int i = 0; i < managedDependencies / 10; i++) {
+            builder.append("    <module").append(i).append(".version>").append(i).append(".2.3</module").append(i).append(".version>\n");
+        }
+        builder.append("  </properties>\n");
+        builder.append("  <dependencyManagement>\n    <dependencies>\n");
+        for (int i = 0; i < managedDependencies; i++) {
+            dependency(builder, "org.example.group" + (i / 10), "module" + i, "${module" + (i / 10) + ".version}");
+        }
+        builder.append("    </dependencies>\n  </dependencyManagement>\n");
+        return builder.append("</project>\n").toString();
+    }
+
+    private static String library(int dependencies) {
+        StringBuilder builder = header();
+        builder.append("  <description>An example library &copy; Example</description>\n");
+        builder.append("  <licenses><license><name>Apache License, Version 2.0</name><url>https://www.apache.org/licenses/LICENSE-2.0.txt</url></license></licenses>\n");
+        builder.append("  <dependencies>\n");
+        for (int i = 0; i < dependencies; i++) {
+            dependency(builder, "org.example.group" + i, "module" + i, "1." + i);
+        }
+        builder.append("  </dependencies>\n");
+        builder.append("  <build>\n    <plugins>\n");
+        for (int i = 0; i < 10; i++) {
+            builder.append("      <plugin>\n        <groupId>org.apache.maven.plugins</groupId>\n        <artifactId>maven-plugin").append(i).append("</artifactId>\n");
+            builder.append("        <configuration><source>1.8</source><target>1.8</target><excludes><exclude>**/*.txt</exclude></excludes></configuration>\n");
+            builder.append("      </plugin>\n");
+        }
+        builder.append("    </plugins>\n  </build>\n");
+        return builder.append("</project>\n").toString();
+    }
+
+    private static StringBuilder header() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        builder.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n");
+        builder.append("  <modelVersion>4.0.0</modelVersion>\n");
+        builder.append("  <groupId>org.example</groupId>\n  <artifactId>example</artifactId>\n  <version>1.0</version>\n");
+        return builder;
+    }
+
+    private static void dependency(StringBuilder builder, String group, String module, String version) {
+        builder.append("      <dependency>\n");
+        builder.append("        <groupId>").append(group).append("</groupId>\n");
+        builder.append("        <artifactId>").append(module).append("</artifactId>\n");
+        builder.append("        <version>").append(version).append("</version>\n");
+        builder.append("        <exclusions><exclusion><groupId>commons-logging</groupId><artifactId>commons-logging</artifactId></exclusion></exclusions>\n");
+        builder.append("      </dependency>\n");
+    }
+}
@@ -15,11 +15,13 @@
  */
 package org.gradle.api.internal.artifacts;
 
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.CrossBuildModuleDescriptorCache;
 import org.gradle.api.internal.catalog.DependenciesAccessorsWorkspaceProvider;
 import org.gradle.internal.service.ServiceRegistration;
 
 public class DependencyManagementBuildSessionScopeServices {
     void configure(ServiceRegistration registration) {
         registration.add(DependenciesAccessorsWorkspaceProvider.class);
+        registration.add(CrossBuildModuleDescriptorCache.class);
     }
 }
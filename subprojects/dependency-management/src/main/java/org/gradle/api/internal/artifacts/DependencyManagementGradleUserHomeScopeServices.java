@@ -91,7 +91,8 @@ ImmutableTransformationWorkspaceServices createTransformerWorkspaceServices(
         CacheRepository cacheRepository,
         CrossBuildInMemoryCacheFactory crossBuildInMemoryCacheFactory,
         FileAccessTimeJournal fileAccessTimeJournal,
-        ExecutionHistoryStore executionHistoryStore
+        ExecutionHistoryStore executionHistoryStore,
+        ListenerManager listenerManager
     ) {
         return new ImmutableTransformationWorkspaceServices(
             cacheRepository
@@ -100,7 +101,8 @@ ImmutableTransformationWorkspaceServices createTransformerWorkspaceServices(
                 .withDisplayName("Artifact transforms cache"),
             fileAccessTimeJournal,
             executionHistoryStore,
-            crossBuildInMemoryCacheFactory.newCacheRetainingDataFromPreviousBuild(Try::isSuccessful)
+            crossBuildInMemoryCacheFactory.newCacheRetainingDataFromPreviousBuild(Try::isSuccessful),
+            listenerManager
         );
     }
 }
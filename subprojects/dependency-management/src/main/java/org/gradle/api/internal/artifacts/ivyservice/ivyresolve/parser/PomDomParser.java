@@ -16,39 +16,164 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
 
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.ClassLoaderUtils;
 
-import java.io.*;
-import java.util.LinkedList;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Parses a POM file into a tree of {@link PomElement}s, using a streaming parser.
+ *
+ * <p>Only the elements that are used to resolve a module are kept, the others, such as the build section, are skipped while parsing.</p>
+ */
 public final class PomDomParser {
+    private static final Set<String> PROJECT_ELEMENTS = ImmutableSet.of(
+        "groupId", "artifactId", "version", "packaging", "parent", "dependencies", "dependencyManagement", "distributionManagement", "properties", "profiles"
+    );
+    private static final Set<String> PROFILE_ELEMENTS = ImmutableSet.of(
+        "id", "activation", "properties", "dependencies", "dependencyManagement"
+    );
+    private static final byte[] M2_ENTITIES_RESOURCE;
+
+    static {
+        try {
+            M2_ENTITIES_RESOURCE = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static final XMLResolver M2_ENTITY_RESOLVER = (publicId, systemId, baseUri, namespace) -> {
+        if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
+            return new ByteArrayInputStream(M2_ENTITIES_RESOURCE);
+        }
+        return null;
+    };
+
+    // Factories are not thread safe, and are expensive to create
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(PomDomParser::createInputFactory);
+
     private PomDomParser() {}
 
-    public static String getTextContent(Element element) {
-        StringBuilder result = new StringBuilder();
+    private static XMLInputFactory createInputFactory() {
+        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
+        // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
+        try {
+            XMLInputFactory factory = XMLInputFactory.newFactory();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, true);
+            factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+            factory.setXMLResolver(M2_ENTITY_RESOLVER);
+            return factory;
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
 
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node child = childNodes.item(i);
+    /**
+     * Parses the given POM content, returning its root element.
+     */
+    public static PomElement parse(InputStream stream, String systemId) throws IOException, XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(systemId, new AddDTDFilterInputStream(stream));
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return readElement(reader, ElementScope.PROJECT);
+                }
+            }
+            throw new XMLStreamException("Premature end of file.", reader.getLocation());
+        } finally {
+            reader.close();
+        }
+    }
 
-            switch (child.getNodeType()) {
-                case Node.CDATA_SECTION_NODE:
-                case Node.TEXT_NODE:
-                    result.append(child.getNodeValue());
+    private static PomElement readElement(XMLStreamReader reader, ElementScope scope) throws XMLStreamException {
+        PomElement element = new PomElement(elementName(reader));
+        String text = "";
+        StringBuilder textBuilder = null;
+        while (true) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    ElementScope childScope = scope.childScope(elementName(reader));
+                    if (childScope == null) {
+                        skipElement(reader);
+                    } else {
+                        element.addChild(readElement(reader, childScope));
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    // Text is mostly reported as a single event, only use a builder when it is not
+                    if (text.isEmpty()) {
+                        text = reader.getText();
+                    } else {
+                        if (textBuilder == null) {
+                            textBuilder = new StringBuilder(text);
+                        }
+                        textBuilder.append(reader.getText());
+                    }
                     break;
+                case XMLStreamConstants.COMMENT:
+                    if (scope == ElementScope.PROJECT) {
+                        element.addComment(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    element.text = textBuilder == null ? text : textBuilder.toString();
+                    return element;
                 default:
                     break;
             }
         }
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static String elementName(XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        String localName = reader.getLocalName();
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
 
-        return result.toString();
+    public static String getTextContent(PomElement element) {
+        return element.text;
     }
 
-    public static String getFirstChildText(Element parentElem, String name) {
-        Element node = getFirstChildElement(parentElem, name);
+    public static String getFirstChildText(PomElement parentElem, String name) {
+        PomElement node = getFirstChildElement(parentElem, name);
         if (node != null) {
             return getTextContent(node);
         } else {
@@ -56,32 +181,98 @@ public static String getFirstChildText(Element parentElem, String name) {
         }
     }
 
-    public static Element getFirstChildElement(Element parentElem, String name) {
+    public static PomElement getFirstChildElement(PomElement parentElem, String name) {
         if (parentElem == null) {
             return null;
         }
-        NodeList childs = parentElem.getChildNodes();
-        for (int i = 0; i < childs.getLength(); i++) {
-            Node node = childs.item(i);
-            if (node instanceof Element && name.equals(node.getNodeName())) {
-                return (Element) node;
+        for (PomElement child : parentElem.children) {
+            if (name.equals(child.name)) {
+                return child;
             }
         }
         return null;
     }
 
-    public static List<Element> getAllChilds(Element parent) {
-        List<Element> r = new LinkedList<>();
-        if (parent != null) {
-            NodeList childs = parent.getChildNodes();
-            for (int i = 0; i < childs.getLength(); i++) {
-                Node node = childs.item(i);
-                if (node instanceof Element) {
-                    r.add((Element) node);
+    public static List<PomElement> getAllChilds(PomElement parent) {
+        if (parent == null) {
+            return Collections.emptyList();
+        }
+        return parent.children;
+    }
+
+    /**
+     * Which child elements to keep while parsing an element.
+     */
+    private enum ElementScope {
+        PROJECT {
+            @Override
+            ElementScope childScope(String name) {
+                if (!PROJECT_ELEMENTS.contains(name)) {
+                    return null;
                 }
+                return name.equals("profiles") ? PROFILES : ALL;
+            }
+        },
+        PROFILES {
+            @Override
+            ElementScope childScope(String name) {
+                return name.equals("profile") ? PROFILE : ALL;
+            }
+        },
+        PROFILE {
+            @Override
+            ElementScope childScope(String name) {
+                return PROFILE_ELEMENTS.contains(name) ? ALL : null;
+            }
+        },
+        ALL {
+            @Override
+            ElementScope childScope(String name) {
+                return ALL;
+            }
+        };
+
+        /**
+         * Returns the scope to parse the given child element with, or {@code null} when the element should be skipped.
+         */
+        @Nullable
+        abstract ElementScope childScope(String name);
+    }
+
+    /**
+     * An element of a POM file, holding its child elements and the text directly contained by the element.
+     */
+    public static final class PomElement {
+        private final String name;
+        private final List<PomElement> children = new ArrayList<>(0);
+        private List<String> comments = Collections.emptyList();
+        private String text = "";
+
+        PomElement(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the comments directly contained by this element. Only retained for the root element.
+         */
+        public List<String> getComments() {
+            return comments;
+        }
+
+        private void addChild(PomElement child) {
+            children.add(child);
+        }
+
+        private void addComment(String comment) {
+            if (comments.isEmpty()) {
+                comments = new ArrayList<>();
             }
+            comments.add(comment);
         }
-        return r;
     }
 
     public static final class AddDTDFilterInputStream extends FilterInputStream {
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the module metadata loaded from the descriptor files of the module metadata store for the lifetime of the build session,
+ * so that the builds of a composite build and the builds of a continuous build do not deserialize the same descriptor file again.
+ *
+ * <p>Entries are validated against the length and the last modified time of the descriptor file. Only the metadata as stored in
+ * the file is retained, the metadata processed by component metadata rules is not shared between builds.</p>
+ */
+public class CrossBuildModuleDescriptorCache {
+    private final Map<File, LoadedDescriptor> descriptors = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the metadata loaded from the given descriptor file, using the given loader when the file has not been loaded yet or has changed since.
+     */
+    @Nullable
+    public ModuleComponentResolveMetadata load(File descriptorFile, boolean changing, Supplier<ModuleComponentResolveMetadata> loader) {
+        // Query the file before loading it, so that a change made while loading causes the file to be loaded again next time
+        long length = descriptorFile.length();
+        long lastModified = descriptorFile.lastModified();
+        LoadedDescriptor descriptor = descriptors.get(descriptorFile);
+        if (descriptor != null && descriptor.length == length && descriptor.lastModified == lastModified && descriptor.metadata.isChanging() == changing) {
+            return descriptor.metadata;
+        }
+        ModuleComponentResolveMetadata metadata = loader.get();
+        if (metadata == null) {
+            descriptors.remove(descriptorFile);
+        } else if (lastModified != 0) {
+            descriptors.put(descriptorFile, new LoadedDescriptor(length, lastModified, metadata));
+        }
+        return metadata;
+    }
+
+    /**
+     * Discards the metadata loaded from the given descriptor file, for example because it has been written.
+     */
+    public void invalidate(File descriptorFile) {
+        descriptors.remove(descriptorFile);
+    }
+
+    private static class LoadedDescriptor {
+        private final long length;
+        private final long lastModified;
+        private final ModuleComponentResolveMetadata metadata;
+
+        LoadedDescriptor(long length, long lastModified, ModuleComponentResolveMetadata metadata) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.metadata = metadata;
+        }
+    }
+}
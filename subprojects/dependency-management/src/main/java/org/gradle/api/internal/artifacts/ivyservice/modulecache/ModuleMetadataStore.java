@@ -25,11 +25,12 @@
 import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
 import org.gradle.internal.resource.local.LocallyAvailableResource;
 import org.gradle.internal.resource.local.PathKeyFileStore;
-import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
-import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.internal.serialize.ChannelBackedDecoder;
+import org.gradle.internal.serialize.ChannelBackedEncoder;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import javax.annotation.Nullable;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 public class ModuleMetadataStore {
 
@@ -53,22 +54,39 @@ public MutableModuleComponentResolveMetadata getModuleDescriptor(ModuleComponent
         String[] filePath = getFilePath(component);
         LocallyAvailableResource resource = metaDataStore.get(filePath);
         if (resource != null) {
-            try {
-                try (StringDeduplicatingDecoder decoder = new StringDeduplicatingDecoder(new KryoBackedDecoder(new FileInputStream(resource.getFile())), stringInterner)) {
-                    return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory, Maps.newHashMap());
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Could not load module metadata from " + resource.getDisplayName(), e);
-            }
+            return readModuleDescriptor(resource);
         }
         return null;
     }
 
+    /**
+     * Returns the configured metadata for the given entry, reusing the metadata loaded by an earlier build of the build session when the descriptor file has not changed.
+     */
+    @Nullable
+    ModuleComponentResolveMetadata getModuleDescriptor(ModuleComponentAtRepositoryKey component, ModuleMetadataCacheEntry entry, CrossBuildModuleDescriptorCache descriptorCache) {
+        String[] filePath = getFilePath(component);
+        LocallyAvailableResource resource = metaDataStore.get(filePath);
+        if (resource != null) {
+            return descriptorCache.load(resource.getFile(), entry.isChanging, () -> entry.configure(readModuleDescriptor(resource)));
+        }
+        return null;
+    }
+
+    private MutableModuleComponentResolveMetadata readModuleDescriptor(LocallyAvailableResource resource) {
+        try {
+            try (StringDeduplicatingDecoder decoder = new StringDeduplicatingDecoder(new ChannelBackedDecoder(FileChannel.open(resource.getFile().toPath())), stringInterner)) {
+                return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory, Maps.newHashMap());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Could not load module metadata from " + resource.getDisplayName(), e);
+        }
+    }
+
     public LocallyAvailableResource putModuleDescriptor(ModuleComponentAtRepositoryKey component, final ModuleComponentResolveMetadata metadata) {
         String[] filePath = getFilePath(component);
         return metaDataStore.add(PATH_JOINER.join(filePath), moduleDescriptorFile -> {
             try {
-                try (KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(moduleDescriptorFile))) {
+                try (StringDeduplicatingEncoder encoder = new StringDeduplicatingEncoder(new ChannelBackedEncoder(FileChannel.open(moduleDescriptorFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)))) {
                     moduleMetadataSerializer.write(encoder, metadata, Maps.newHashMap());
                 }
             } catch (Exception e) {
@@ -23,10 +23,20 @@
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Reads data written by {@link StringDeduplicatingEncoder}, interning each string once.
+ */
 class StringDeduplicatingDecoder implements Decoder, Closeable {
+    static final int NULL_STRING = 0;
+    static final int NEW_STRING = 1;
+    static final int FIRST_STRING_INDEX = 2;
+
     private final Decoder delegate;
     private final Interner<String> stringInterner;
+    private List<String> strings;
 
     StringDeduplicatingDecoder(Decoder delegate, Interner<String> stringInterner) {
         this.delegate = delegate;
@@ -71,17 +81,29 @@ public boolean readBoolean() throws EOFException, IOException {
 
     @Override
     public String readString() throws EOFException, IOException {
-        return stringInterner.intern(delegate.readString());
+        String str = readNullableString();
+        if (str == null) {
+            throw new IOException("Expected a non-null string.");
+        }
+        return str;
     }
 
     @Override
     @Nullable
     public String readNullableString() throws EOFException, IOException {
-        String str = delegate.readNullableString();
-        if (str != null) {
-            str = stringInterner.intern(str);
+        int index = delegate.readSmallInt();
+        if (index == NULL_STRING) {
+            return null;
         }
-        return str;
+        if (index == NEW_STRING) {
+            if (strings == null) {
+                strings = new ArrayList<>();
+            }
+            String str = stringInterner.intern(delegate.readString());
+            strings.add(str);
+            return str;
+        }
+        return strings.get(index - FIRST_STRING_INDEX);
     }
 
     @Override
@@ -94,7 +94,7 @@ public boolean equals(Object o) {
 
             ExcludePair that = (ExcludePair) o;
 
-            return left.equals(that.left) && right.equals(that.right);
+            return hashCode == that.hashCode && left.equals(that.left) && right.equals(that.right);
         }
 
         @Override
@@ -128,7 +128,7 @@ public boolean equals(Object o) {
             }
 
             ExcludesKey that = (ExcludesKey) o;
-            if (size != that.size) {
+            if (hashCode != that.hashCode || size != that.size) {
                 return false;
             }
             return specs.equals(that.specs);
@@ -25,11 +25,14 @@
 
 abstract class DefaultCompositeExclude implements CompositeExclude {
     private final ImmutableSet<ExcludeSpec> components;
+    // Iterated by excludes() for every module of the graph, without the allocations of a stream or an iterator
+    final ExcludeSpec[] componentArray;
     private final int hashCode;
     private final int size;
 
     DefaultCompositeExclude(ImmutableSet<ExcludeSpec> components) {
         this.components = components;
+        this.componentArray = components.toArray(new ExcludeSpec[0]);
         this.size = components.size();
         this.hashCode = (31 * components.hashCode() + this.size) ^ mask();
     }
@@ -63,6 +66,11 @@ public Set<ExcludeSpec> getComponents() {
         return components;
     }
 
+    @Override
+    public boolean contains(ExcludeSpec spec) {
+        return components.contains(spec);
+    }
+
     @Override
     public int size() {
         return size;
@@ -41,7 +41,7 @@ public boolean equals(Object o) {
 
         DefaultGroupSetExclude that = (DefaultGroupSetExclude) o;
 
-        return groups.equals(that.groups);
+        return hashCode == that.hashCode && groups.equals(that.groups);
 
     }
 
@@ -66,7 +66,7 @@ public boolean equals(Object o) {
 
         DefaultModuleIdSetExclude that = (DefaultModuleIdSetExclude) o;
 
-        return moduleIds.equals(that.moduleIds);
+        return hashCode == that.hashCode && moduleIds.equals(that.moduleIds);
 
     }
 
@@ -41,7 +41,7 @@ public boolean equals(Object o) {
 
         DefaultModuleSetExclude that = (DefaultModuleSetExclude) o;
 
-        return modules.equals(that.modules);
+        return hashCode == that.hashCode && modules.equals(that.modules);
 
     }
 
@@ -26,6 +26,7 @@
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.component.ModuleComponentSelector;
 import org.gradle.api.attributes.Attribute;
 import org.gradle.api.capabilities.Capability;
@@ -52,6 +53,7 @@
 import org.gradle.internal.component.IncompatibleVariantsSelectionException;
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
 import org.gradle.internal.component.local.model.RootLocalComponentMetadata;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
 import org.gradle.internal.component.model.ComponentResolveMetadata;
 import org.gradle.internal.component.model.DefaultCompatibilityCheckResult;
 import org.gradle.internal.component.model.DependencyMetadata;
@@ -77,10 +79,12 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 public class DependencyGraphBuilder {
     private static final Logger LOGGER = LoggerFactory.getLogger(DependencyGraphBuilder.class);
+    private static final boolean PREFETCH_METADATA = Boolean.getBoolean("org.gradle.internal.dm.metadata.prefetch");
     private final ModuleConflictHandler moduleConflictHandler;
     private final Spec<? super DependencyMetadata> edgeFilter;
     private final ResolveContextToComponentResolver moduleResolver;
@@ -143,10 +147,15 @@ public void resolve(final ResolveContext resolveContext, final DependencyGraphVi
 
         List<? extends DependencyMetadata> syntheticDependencies = includeSyntheticDependencies ? syntheticDependenciesOf(rootModule, resolveContext.getName()) : Collections.emptyList();
 
-        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, edgeFilter, attributesSchema, moduleExclusions, componentSelectorConverter, attributesFactory, dependencySubstitutionApplicator, versionSelectorScheme, versionComparator, versionParser, moduleConflictHandler.getResolver(), graphSize, resolveContext.getResolutionStrategy().getConflictResolution(), syntheticDependencies);
+        final PrefetchingComponentMetaDataResolver prefetchingResolver = PREFETCH_METADATA ? new PrefetchingComponentMetaDataResolver(metaDataResolver, versionSelectorScheme) : null;
+        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, prefetchingResolver != null ? prefetchingResolver : metaDataResolver, edgeFilter, attributesSchema, moduleExclusions, componentSelectorConverter, attributesFactory, dependencySubstitutionApplicator, versionSelectorScheme, versionComparator, versionParser, moduleConflictHandler.getResolver(), graphSize, resolveContext.getResolutionStrategy().getConflictResolution(), syntheticDependencies);
 
         Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache = Maps.newHashMapWithExpectedSize(graphSize / 2);
-        traverseGraph(resolveState, componentIdentifierCache);
+        if (prefetchingResolver != null) {
+            traverseGraphPrefetchingMetadata(resolveState, componentIdentifierCache, prefetchingResolver);
+        } else {
+            traverseGraph(resolveState, componentIdentifierCache, null);
+        }
 
         validateGraph(resolveState, resolutionStrategy.isFailingOnDynamicVersions(), resolutionStrategy.isFailingOnChangingVersions());
 
@@ -175,10 +184,32 @@ private static int estimateSize(ResolveContext resolveContext) {
         return Math.max(10, estimate);
     }
 
+    /**
+     * Traverses the dependency graph while a pool of build operations fetches the metadata of the components the graph is likely to need.
+     * Prefetches that have not started by the end of the traversal are discarded, the ones still running are waited for.
+     */
+    private void traverseGraphPrefetchingMetadata(final ResolveState resolveState, final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, final PrefetchingComponentMetaDataResolver prefetchingResolver) {
+        // Failures of the traversal are rethrown as they are, rather than as a failure to populate the queue
+        AtomicReference<RuntimeException> traversalFailure = new AtomicReference<>();
+        buildOperationExecutor.runAll(queue -> {
+            prefetchingResolver.start(queue);
+            try {
+                traverseGraph(resolveState, componentIdentifierCache, prefetchingResolver);
+            } catch (RuntimeException e) {
+                traversalFailure.set(e);
+            } finally {
+                prefetchingResolver.stop();
+            }
+        }, BuildOperationConstraint.UNCONSTRAINED);
+        if (traversalFailure.get() != null) {
+            throw traversalFailure.get();
+        }
+    }
+
     /**
      * Traverses the dependency graph, resolving conflicts and building the paths from the root configuration.
      */
-    private void traverseGraph(final ResolveState resolveState, final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+    private void traverseGraph(final ResolveState resolveState, final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, @Nullable final PrefetchingComponentMetaDataResolver prefetchingResolver) {
         resolveState.onMoreSelected(resolveState.getRoot());
         final List<EdgeState> dependencies = Lists.newArrayList();
 
@@ -193,9 +224,9 @@ private void traverseGraph(final ResolveState resolveState, final Map<ModuleVers
                 // Initialize and collect any new outgoing edges of this node
                 dependencies.clear();
                 node.visitOutgoingDependencies(dependencies);
-                boolean edgeWasProcessed = resolveEdges(node, dependencies, ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, false, resolveState, componentIdentifierCache);
+                boolean edgeWasProcessed = resolveEdges(node, dependencies, ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, false, resolveState, componentIdentifierCache, prefetchingResolver);
                 node.collectEndorsedStrictVersions(dependencies);
-                resolveEdges(node, dependencies, NOT_ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, edgeWasProcessed, resolveState, componentIdentifierCache);
+                resolveEdges(node, dependencies, NOT_ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, edgeWasProcessed, resolveState, componentIdentifierCache, prefetchingResolver);
             } else {
                 // We have some batched up conflicts. Resolve the first, and continue traversing the graph
                 if (moduleConflictHandler.hasConflicts()) {
@@ -252,12 +283,17 @@ private boolean resolveEdges(final NodeState node,
                                  final Spec<EdgeState> dependencyFilter,
                                  final boolean recomputeSelectors,
                                  final ResolveState resolveState,
-                                 final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+                                 final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache,
+                                 @Nullable final PrefetchingComponentMetaDataResolver prefetchingResolver) {
         if (dependencies.isEmpty()) {
             return false;
         }
         if (performSelectionSerially(dependencies, dependencyFilter, resolveState, recomputeSelectors)) {
-            maybeDownloadMetadataInParallel(node, componentIdentifierCache, dependencies, dependencyFilter);
+            if (prefetchingResolver != null) {
+                prefetchMetadata(componentIdentifierCache, dependencies, dependencyFilter, prefetchingResolver);
+            } else {
+                maybeDownloadMetadataInParallel(node, componentIdentifierCache, dependencies, dependencyFilter);
+            }
             attachToTargetRevisionsSerially(dependencies, dependencyFilter);
             return true;
         } else {
@@ -358,6 +394,23 @@ private void maybeDownloadMetadataInParallel(NodeState node, Map<ModuleVersionId
         }
     }
 
+    private void prefetchMetadata(Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, List<EdgeState> dependencies, Spec<EdgeState> dependencyFilter, PrefetchingComponentMetaDataResolver prefetchingResolver) {
+        for (EdgeState dependency : dependencies) {
+            if (!dependencyFilter.isSatisfiedBy(dependency)) {
+                continue;
+            }
+            ComponentState targetComponent = dependency.getTargetComponent();
+            if (targetComponent != null && targetComponent.isSelected() && !targetComponent.alreadyResolved()
+                && targetComponent.getComponentId() instanceof ModuleComponentIdentifier && !targetComponent.getModule().isVirtualPlatform()) {
+                ComponentIdentifier componentId = toComponentId(targetComponent.getId(), componentIdentifierCache);
+                ComponentOverrideMetadata componentOverrideMetadata = targetComponent.getComponentOverrideMetadata();
+                if (componentOverrideMetadata.getClientModule() == null && !metaDataResolver.isFetchingMetadataCheap(componentId)) {
+                    prefetchingResolver.prefetch((ModuleComponentIdentifier) componentId, componentOverrideMetadata);
+                }
+            }
+        }
+    }
+
     private ComponentIdentifier toComponentId(ModuleVersionIdentifier id, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
         ComponentIdentifier identifier = componentIdentifierCache.get(id);
         if (identifier == null) {
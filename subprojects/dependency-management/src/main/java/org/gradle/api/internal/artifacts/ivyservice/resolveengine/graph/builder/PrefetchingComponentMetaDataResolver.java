@@ -0,0 +1,208 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.internal.component.external.descriptor.MavenScope;
+import org.gradle.internal.component.external.model.ComponentVariant;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.ExternalDependencyDescriptor;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.gradle.internal.component.external.model.ivy.IvyModuleResolveMetadata;
+import org.gradle.internal.component.external.model.maven.MavenDependencyDescriptor;
+import org.gradle.internal.component.external.model.maven.MavenModuleResolveMetadata;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link ComponentMetaDataResolver} that fetches the metadata of components ahead of the graph traversal, as operations of a build operation queue.
+ *
+ * <p>Once the metadata of a component has been fetched, the metadata of the modules it declares dependencies on is fetched as well, before
+ * conflict resolution has decided whether these modules end up in the graph. Fetched metadata is kept by the caches of the repositories,
+ * so the traversal still resolves every component itself, but cheaply. This means that the resulting graph does not depend on what has been prefetched.</p>
+ */
+class PrefetchingComponentMetaDataResolver implements ComponentMetaDataResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchingComponentMetaDataResolver.class);
+
+    private final ComponentMetaDataResolver delegate;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final Map<ComponentIdentifier, PrefetchMetadataOperation> prefetches = new ConcurrentHashMap<>();
+    private BuildOperationQueue<RunnableBuildOperation> queue;
+    private volatile boolean stopped;
+
+    PrefetchingComponentMetaDataResolver(ComponentMetaDataResolver delegate, VersionSelectorScheme versionSelectorScheme) {
+        this.delegate = delegate;
+        this.versionSelectorScheme = versionSelectorScheme;
+    }
+
+    @Override
+    public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+        PrefetchMetadataOperation prefetch = prefetches.get(identifier);
+        if (prefetch != null) {
+            prefetch.awaitOrClaim();
+        }
+        delegate.resolve(identifier, componentOverrideMetadata, result);
+    }
+
+    @Override
+    public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+        return delegate.isFetchingMetadataCheap(identifier);
+    }
+
+    /**
+     * Starts prefetching, using the given queue to run the prefetch operations.
+     */
+    void start(BuildOperationQueue<RunnableBuildOperation> queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Discards the prefetch operations that have not started yet. Called once the graph has been traversed.
+     */
+    void stop() {
+        stopped = true;
+        if (queue != null) {
+            queue.cancel();
+        }
+    }
+
+    /**
+     * Starts fetching the metadata of the given component, unless this has already been done.
+     */
+    void prefetch(ModuleComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata) {
+        if (stopped || queue == null || prefetches.containsKey(identifier)) {
+            return;
+        }
+        PrefetchMetadataOperation operation = new PrefetchMetadataOperation(identifier, componentOverrideMetadata);
+        if (prefetches.putIfAbsent(identifier, operation) == null) {
+            queue.add(operation);
+        }
+    }
+
+    /**
+     * Prefetches the modules that the given component declares dependencies on with a fixed version.
+     * Only the dependencies as declared are used, as the variants derived from them are built lazily and are not safe to use from several threads.
+     */
+    private void prefetchDependenciesOf(ComponentResolveMetadata metadata) {
+        if (metadata instanceof MavenModuleResolveMetadata) {
+            for (MavenDependencyDescriptor dependency : ((MavenModuleResolveMetadata) metadata).getDependencies()) {
+                if (dependency.getScope() == MavenScope.Compile || dependency.getScope() == MavenScope.Runtime) {
+                    maybePrefetch(dependency);
+                }
+            }
+        } else if (metadata instanceof IvyModuleResolveMetadata) {
+            for (ExternalDependencyDescriptor dependency : ((IvyModuleResolveMetadata) metadata).getDependencies()) {
+                maybePrefetch(dependency);
+            }
+        }
+        if (metadata instanceof ModuleComponentResolveMetadata) {
+            for (ComponentVariant variant : ((ModuleComponentResolveMetadata) metadata).getVariants()) {
+                for (ComponentVariant.Dependency dependency : variant.getDependencies()) {
+                    maybePrefetch(DefaultModuleIdentifier.newId(dependency.getGroup(), dependency.getModule()), dependency.getVersionConstraint(), false);
+                }
+            }
+        }
+    }
+
+    private void maybePrefetch(ExternalDependencyDescriptor dependency) {
+        if (!dependency.isConstraint() && !dependency.isOptional()) {
+            maybePrefetch(dependency.getSelector().getModuleIdentifier(), dependency.getSelector().getVersionConstraint(), dependency.isChanging());
+        }
+    }
+
+    private void maybePrefetch(ModuleIdentifier module, VersionConstraint versionConstraint, boolean changing) {
+        String version = versionConstraint.getStrictVersion();
+        if (Strings.isNullOrEmpty(version)) {
+            version = versionConstraint.getRequiredVersion();
+        }
+        if (Strings.isNullOrEmpty(version)) {
+            version = versionConstraint.getPreferredVersion();
+        }
+        // Dynamic versions would need the versions of the module to be listed first, leave them to the traversal
+        if (Strings.isNullOrEmpty(version) || versionSelectorScheme.parseSelector(version).isDynamic()) {
+            return;
+        }
+        prefetch(DefaultModuleComponentIdentifier.newId(module, version), DefaultComponentOverrideMetadata.forDependency(changing, null, null));
+    }
+
+    private class PrefetchMetadataOperation implements RunnableBuildOperation {
+        private final ModuleComponentIdentifier identifier;
+        private final ComponentOverrideMetadata componentOverrideMetadata;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        PrefetchMetadataOperation(ModuleComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata) {
+            this.identifier = identifier;
+            this.componentOverrideMetadata = componentOverrideMetadata;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            if (stopped || !started.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+                delegate.resolve(identifier, componentOverrideMetadata, result);
+                if (result.hasResult() && result.getFailure() == null && !stopped) {
+                    prefetchDependenciesOf(result.getMetadata());
+                }
+            } catch (Exception e) {
+                // The traversal resolves the component again if it needs it, and reports the failure then
+                LOGGER.debug("Could not prefetch metadata for {}", identifier, e);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Waits for the operation to complete when it has started, or prevents it from running at all so that the caller can resolve the component straight away.
+         */
+        void awaitOrClaim() {
+            if (started.compareAndSet(false, true)) {
+                return;
+            }
+            Uninterruptibles.awaitUninterruptibly(done);
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Prefetch metadata of " + identifier);
+        }
+    }
+}
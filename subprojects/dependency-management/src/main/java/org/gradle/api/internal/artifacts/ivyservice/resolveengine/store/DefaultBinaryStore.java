@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
 
+import com.google.common.io.ByteStreams;
 import org.gradle.cache.internal.BinaryStore;
 import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.io.RandomAccessFileInputStream;
@@ -31,6 +32,11 @@
 import static org.gradle.internal.UncheckedException.throwAsUncheckedException;
 
 class DefaultBinaryStore implements BinaryStore, Closeable {
+    // Most results are a few KB, the results of large graphs span many MB
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_READ_BUFFER_SIZE = 512;
+    private static final int MAX_READ_BUFFER_SIZE = 64 * 1024;
+
     private File file;
     private StringDeduplicatingKryoBackedEncoder encoder;
     private long offset = -1;
@@ -43,7 +49,7 @@ public DefaultBinaryStore(File file) {
     public void write(WriteAction write) {
         if (encoder == null) {
             try {
-                encoder = new StringDeduplicatingKryoBackedEncoder(new FileOutputStream(file));
+                encoder = new StringDeduplicatingKryoBackedEncoder(new FileOutputStream(file), WRITE_BUFFER_SIZE);
             } catch (FileNotFoundException e) {
                 throw throwAsUncheckedException(e);
             }
@@ -73,11 +79,15 @@ public String toString() {
     @Override
     public BinaryData done() {
         try {
+            long length = 0;
             if (encoder != null) {
                 encoder.done();
                 encoder.flush();
+                if (offset != -1) {
+                    length = encoder.getWritePosition() - offset;
+                }
             }
-            return new SimpleBinaryData(file, offset);
+            return new SimpleBinaryData(file, offset, length);
         } finally {
             offset = -1;
         }
@@ -106,16 +116,22 @@ long getSize() {
         return file.length();
     }
 
+    /**
+     * The data written between two calls to {@link #done()}. Several of these share a store file, so each of them only reads its own range of the file,
+     * with a buffer no larger than that range.
+     */
     private static class SimpleBinaryData implements BinaryStore.BinaryData {
         private final long offset;
+        private final long length;
         private final File inputFile;
 
         private Decoder decoder;
         private CompositeStoppable resources;
 
-        public SimpleBinaryData(File inputFile, long offset) {
+        public SimpleBinaryData(File inputFile, long offset, long length) {
             this.inputFile = inputFile;
             this.offset = offset;
+            this.length = length;
         }
 
         @Override
@@ -124,7 +140,8 @@ public <T> T read(BinaryStore.ReadAction<T> readAction) {
                 if (decoder == null) {
                     RandomAccessFile randomAccess = new RandomAccessFile(inputFile, "r");
                     randomAccess.seek(offset);
-                    decoder = new StringDeduplicatingKryoBackedDecoder(new RandomAccessFileInputStream(randomAccess));
+                    int bufferSize = (int) Math.min(Math.max(length, MIN_READ_BUFFER_SIZE), MAX_READ_BUFFER_SIZE);
+                    decoder = new StringDeduplicatingKryoBackedDecoder(ByteStreams.limit(new RandomAccessFileInputStream(randomAccess), length), bufferSize);
                     resources = new CompositeStoppable().add(randomAccess, decoder);
                 }
                 return readAction.read(decoder);
@@ -148,7 +165,7 @@ public void close() {
         }
 
         public String toString() {
-            return "Binary store in " + inputFile + " offset " + offset + " exists? " + inputFile.exists();
+            return "Binary store in " + inputFile + " offset " + offset + " length " + length + " exists? " + inputFile.exists();
         }
     }
 }
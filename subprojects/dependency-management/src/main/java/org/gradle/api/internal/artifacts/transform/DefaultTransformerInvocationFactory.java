@@ -162,6 +162,14 @@ private Try<ImmutableList<File>> mapResult(Try<TransformationResult> cachedOutpu
             });
     }
 
+    static File getOutputDir(File workspace) {
+        return new File(workspace, "transformed");
+    }
+
+    static File getResultsFile(File workspace) {
+        return new File(workspace, "results.bin");
+    }
+
     private TransformationWorkspaceServices determineWorkspaceServices(@Nullable ProjectInternal producerProject) {
         if (producerProject == null) {
             return immutableWorkspaceProvider;
@@ -335,14 +343,6 @@ public InputFingerprinter getInputFingerprinter() {
             return inputFingerprinter;
         }
 
-        private static File getOutputDir(File workspace) {
-            return new File(workspace, "transformed");
-        }
-
-        private static File getResultsFile(File workspace) {
-            return new File(workspace, "results.bin");
-        }
-
         @Override
         public Optional<Duration> getTimeout() {
             return Optional.empty();
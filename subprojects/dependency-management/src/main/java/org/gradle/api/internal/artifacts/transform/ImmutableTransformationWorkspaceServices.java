@@ -16,9 +16,11 @@
 
 package org.gradle.api.internal.artifacts.transform;
 
+import org.gradle.cache.Cache;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.internal.CrossBuildInMemoryCache;
 import org.gradle.internal.Try;
+import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.UnitOfWork;
 import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.execution.workspace.impl.DefaultImmutableWorkspaceProvider;
@@ -29,17 +31,28 @@
 
 @NotThreadSafe
 public class ImmutableTransformationWorkspaceServices implements TransformationWorkspaceServices, Closeable {
-    private final CrossBuildInMemoryCache<UnitOfWork.Identity, Try<TransformationResult>> identityCache;
+    private static final boolean REUSE_WORKSPACE_RESULTS = Boolean.getBoolean("org.gradle.internal.transform.reuse-workspace-results");
+
+    private final Cache<UnitOfWork.Identity, Try<TransformationResult>> identityCache;
     private final DefaultImmutableWorkspaceProvider workspaceProvider;
+    private final ListenerManager listenerManager;
 
     public ImmutableTransformationWorkspaceServices(
         CacheBuilder cacheBuilder,
         FileAccessTimeJournal fileAccessTimeJournal,
         ExecutionHistoryStore executionHistoryStore,
-        CrossBuildInMemoryCache<UnitOfWork.Identity, Try<TransformationResult>> identityCache
+        CrossBuildInMemoryCache<UnitOfWork.Identity, Try<TransformationResult>> identityCache,
+        ListenerManager listenerManager
     ) {
         this.workspaceProvider = DefaultImmutableWorkspaceProvider.withExternalHistory(cacheBuilder, fileAccessTimeJournal, executionHistoryStore);
-        this.identityCache = identityCache;
+        this.listenerManager = listenerManager;
+        if (REUSE_WORKSPACE_RESULTS) {
+            WorkspaceBackedTransformationResultCache workspaceBackedCache = new WorkspaceBackedTransformationResultCache(identityCache, workspaceProvider);
+            listenerManager.addListener(workspaceBackedCache);
+            this.identityCache = workspaceBackedCache;
+        } else {
+            this.identityCache = identityCache;
+        }
     }
 
     @Override
@@ -48,12 +61,15 @@ public DefaultImmutableWorkspaceProvider getWorkspaceProvider() {
     }
 
     @Override
-    public CrossBuildInMemoryCache<UnitOfWork.Identity, Try<TransformationResult>> getIdentityCache() {
+    public Cache<UnitOfWork.Identity, Try<TransformationResult>> getIdentityCache() {
         return identityCache;
     }
 
     @Override
     public void close() {
+        if (identityCache instanceof WorkspaceBackedTransformationResultCache) {
+            listenerManager.removeListener(identityCache);
+        }
         workspaceProvider.close();
     }
 }
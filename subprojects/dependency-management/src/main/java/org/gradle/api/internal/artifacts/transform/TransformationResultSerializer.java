@@ -20,6 +20,7 @@
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.RelativePath;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -34,15 +35,29 @@ public class TransformationResultSerializer {
     private static final String INPUT_FILE_PATH_PREFIX = "i/";
     private static final String OUTPUT_FILE_PATH_PREFIX = "o/";
 
+    @Nullable
     private final File inputArtifact;
     private final File outputDir;
 
-    public TransformationResultSerializer(File inputArtifact, File outputDir) {
+    /**
+     * @param inputArtifact the location of the input artifact, which is only needed for writing results files.
+     */
+    public TransformationResultSerializer(@Nullable File inputArtifact, File outputDir) {
         this.inputArtifact = inputArtifact;
         this.outputDir = outputDir;
     }
 
+    /**
+     * Creates a serializer which can only read results files, since reading does not depend on the location of the input artifact.
+     */
+    public static TransformationResultSerializer forReading(File outputDir) {
+        return new TransformationResultSerializer(null, outputDir);
+    }
+
     public TransformationResult writeToFile(File target, ImmutableList<File> result) {
+        if (inputArtifact == null) {
+            throw new IllegalStateException("Cannot write results file without the location of the input artifact.");
+        }
         TransformationResult.Builder builder = TransformationResult.builder();
         String outputDirPrefix = outputDir.getPath() + File.separator;
         String inputFilePrefix = inputArtifact.getPath() + File.separator;
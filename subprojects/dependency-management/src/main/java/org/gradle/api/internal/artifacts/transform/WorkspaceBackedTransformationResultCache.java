@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.transform;
+
+import org.gradle.cache.Cache;
+import org.gradle.internal.Try;
+import org.gradle.internal.execution.UnitOfWork;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.execution.workspace.WorkspaceProvider;
+import org.gradle.internal.session.BuildSessionLifecycleListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * An identity cache for immutable transformations which falls back to the results of transformations executed by earlier daemons.
+ *
+ * When a transformation is not in the in-memory cache, the results file of its workspace is read back if the execution history
+ * records a successful execution for the workspace. The transformation is then neither scheduled nor executed again.
+ * The outputs in the workspace are trusted not to have changed since they were produced, as nothing but the transformation writes to an immutable workspace.
+ *
+ * A workspace without a result to restore is only checked once per build session, until the transformation has been executed and its result is in the in-memory cache.
+ * These workspaces are forgotten at the end of each session, so they don't accumulate over the lifetime of the daemon.
+ */
+public class WorkspaceBackedTransformationResultCache implements Cache<UnitOfWork.Identity, Try<TransformationResult>>, BuildSessionLifecycleListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceBackedTransformationResultCache.class);
+
+    private final Cache<UnitOfWork.Identity, Try<TransformationResult>> inMemoryCache;
+    private final WorkspaceProvider workspaceProvider;
+    private final Set<String> workspacesWithoutResult = ConcurrentHashMap.newKeySet();
+
+    public WorkspaceBackedTransformationResultCache(Cache<UnitOfWork.Identity, Try<TransformationResult>> inMemoryCache, WorkspaceProvider workspaceProvider) {
+        this.inMemoryCache = inMemoryCache;
+        this.workspaceProvider = workspaceProvider;
+    }
+
+    @Override
+    public Try<TransformationResult> get(UnitOfWork.Identity key, Function<? super UnitOfWork.Identity, ? extends Try<TransformationResult>> factory) {
+        Try<TransformationResult> result = getIfPresent(key);
+        if (result != null) {
+            return result;
+        }
+        result = inMemoryCache.get(key, factory);
+        workspacesWithoutResult.remove(key.getUniqueId());
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public Try<TransformationResult> getIfPresent(UnitOfWork.Identity key) {
+        Try<TransformationResult> result = inMemoryCache.getIfPresent(key);
+        if (result != null) {
+            return result;
+        }
+        String uniqueId = key.getUniqueId();
+        if (workspacesWithoutResult.contains(uniqueId)) {
+            return null;
+        }
+        TransformationResult restored = restoreFromWorkspace(uniqueId);
+        if (restored == null) {
+            workspacesWithoutResult.add(uniqueId);
+            return null;
+        }
+        Try<TransformationResult> restoredResult = Try.successful(restored);
+        inMemoryCache.put(key, restoredResult);
+        return restoredResult;
+    }
+
+    @Override
+    public void put(UnitOfWork.Identity key, Try<TransformationResult> value) {
+        inMemoryCache.put(key, value);
+        workspacesWithoutResult.remove(key.getUniqueId());
+    }
+
+    @Override
+    public void beforeComplete() {
+        workspacesWithoutResult.clear();
+    }
+
+    @Nullable
+    private TransformationResult restoreFromWorkspace(String uniqueId) {
+        return workspaceProvider.withWorkspace(uniqueId, (workspace, history) -> {
+            File resultsFile = DefaultTransformerInvocationFactory.getResultsFile(workspace);
+            if (history == null || !resultsFile.isFile()) {
+                return null;
+            }
+            boolean successful = history.load(uniqueId)
+                .map(PreviousExecutionState::isSuccessful)
+                .orElse(false);
+            if (!successful) {
+                return null;
+            }
+            LOGGER.debug("Reusing results of transformation in workspace {}", workspace);
+            return TransformationResultSerializer.forReading(DefaultTransformerInvocationFactory.getOutputDir(workspace)).readResultsFile(resultsFile);
+        });
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.gradle.api.internal.artifacts.verification.verifier;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.internal.artifacts.verification.model.IgnoredKey;
@@ -25,6 +27,8 @@
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 public class DependencyVerificationConfiguration {
     private final boolean verifyMetadata;
@@ -85,6 +89,10 @@ public abstract static class TrustCoordinates {
         private final String version;
         private final String fileName;
         private final boolean regex;
+        private final Predicate<String> groupMatcher;
+        private final Predicate<String> nameMatcher;
+        private final Predicate<String> versionMatcher;
+        private final Predicate<String> fileNameMatcher;
 
         TrustCoordinates(@Nullable String group, @Nullable String name, @Nullable String version, @Nullable String fileName, boolean regex) {
             this.group = group;
@@ -92,6 +100,10 @@ public abstract static class TrustCoordinates {
             this.version = version;
             this.fileName = fileName;
             this.regex = regex;
+            this.groupMatcher = matcher(group, regex);
+            this.nameMatcher = matcher(name, regex);
+            this.versionMatcher = matcher(version, regex);
+            this.fileNameMatcher = matcher(fileName, regex);
         }
 
         public String getGroup() {
@@ -116,20 +128,25 @@ public boolean isRegex() {
 
         public boolean matches(ModuleComponentArtifactIdentifier id) {
             ModuleComponentIdentifier moduleComponentIdentifier = id.getComponentIdentifier();
-            return matches(group, moduleComponentIdentifier.getGroup())
-                && matches(name, moduleComponentIdentifier.getModule())
-                && matches(version, moduleComponentIdentifier.getVersion())
-                && matches(fileName, id.getFileName());
+            return groupMatcher.test(moduleComponentIdentifier.getGroup())
+                && nameMatcher.test(moduleComponentIdentifier.getModule())
+                && versionMatcher.test(moduleComponentIdentifier.getVersion())
+                && fileNameMatcher.test(id.getFileName());
         }
 
-        private boolean matches(@Nullable String value, String expr) {
+        /**
+         * Every artifact is matched against every trusted key and artifact, from the verification workers, so regular expressions are compiled once.
+         * They are compiled on first use, so that an invalid expression only fails when it is actually needed, as it did before.
+         */
+        private static Predicate<String> matcher(@Nullable String value, boolean regex) {
             if (value == null) {
-                return true;
+                return expr -> true;
             }
             if (!regex) {
-                return expr.equals(value);
+                return value::equals;
             }
-            return expr.matches(value);
+            Supplier<Pattern> pattern = Suppliers.memoize(() -> Pattern.compile(value));
+            return expr -> pattern.get().matcher(expr).matches();
         }
 
         @Override
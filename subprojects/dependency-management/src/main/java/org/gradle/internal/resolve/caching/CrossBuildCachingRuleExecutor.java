@@ -15,6 +15,7 @@
  */
 package org.gradle.internal.resolve.caching;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
@@ -321,7 +322,8 @@ public <IN, OUT> void register(String serviceName, ImplicitInputRecord<IN, OUT>
         }
     }
 
-    private static class AnySerializer implements Serializer<Object> {
+    @VisibleForTesting
+    static class AnySerializer implements Serializer<Object> {
         private static final BaseSerializerFactory SERIALIZER_FACTORY = new BaseSerializerFactory();
 
         private static final Class<?>[] USUAL_TYPES = new Class<?>[] {
@@ -358,14 +360,17 @@ public void write(Encoder encoder, Object value) throws Exception {
                 return;
             }
             Class<?> anyType = value.getClass();
-            Serializer<Object> serializer = Cast.uncheckedCast(SERIALIZER_FACTORY.getSerializerFor(anyType));
             for (int i = 0; i < USUAL_TYPES.length; i++) {
-                if (USUAL_TYPES[i].equals(anyType)) {
+                // Hash codes and throwables are instances of subclasses, so these are matched by assignability.
+                // They are read back with the serializer of the usual type, so they are written with it as well.
+                if (USUAL_TYPES[i].isAssignableFrom(anyType)) {
                     encoder.writeSmallInt(i);
+                    Serializer<Object> serializer = Cast.uncheckedCast(SERIALIZER_FACTORY.getSerializerFor(USUAL_TYPES[i]));
                     serializer.write(encoder, value);
                     return;
                 }
             }
+            Serializer<Object> serializer = Cast.uncheckedCast(SERIALIZER_FACTORY.getSerializerFor(anyType));
             encoder.writeSmallInt(-2);
             encoder.writeString(anyType.getName());
             serializer.write(encoder, value);
@@ -54,6 +54,7 @@
 public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExternalResourceAccessor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultCacheAwareExternalResourceAccessor.class);
+    private static final String CONDITIONAL_REVALIDATION = "org.gradle.internal.dm.conditional.revalidation";
 
     private final ExternalResourceRepository delegate;
     private final CachedExternalResourceIndex<String> cachedExternalResourceIndex;
@@ -64,6 +65,7 @@ public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExte
     private final ProducerGuard<ExternalResourceName> producerGuard;
     private final FileResourceRepository fileResourceRepository;
     private final ChecksumService checksumService;
+    private final boolean conditionalRevalidation;
 
     public DefaultCacheAwareExternalResourceAccessor(ExternalResourceRepository delegate, CachedExternalResourceIndex<String> cachedExternalResourceIndex, BuildCommencedTimeProvider timeProvider, TemporaryFileProvider temporaryFileProvider, ArtifactCacheLockingManager artifactCacheLockingManager, ExternalResourceCachePolicy externalResourceCachePolicy, ProducerGuard<ExternalResourceName> producerGuard, FileResourceRepository fileResourceRepository, ChecksumService checksumService) {
         this.delegate = delegate;
@@ -75,6 +77,7 @@ public DefaultCacheAwareExternalResourceAccessor(ExternalResourceRepository dele
         this.producerGuard = producerGuard;
         this.fileResourceRepository = fileResourceRepository;
         this.checksumService = checksumService;
+        this.conditionalRevalidation = Boolean.getBoolean(CONDITIONAL_REVALIDATION);
     }
 
     @Nullable
@@ -97,6 +100,11 @@ public LocallyAvailableExternalResource getResource(final ExternalResourceName l
             // We have a cached version, but it might be out of date, so we tell the upstreams to revalidate too
             final boolean revalidate = true;
 
+            // Without local candidates to look for, the remote metadata is only needed to find out whether the cached version is still current
+            if (conditionalRevalidation && cached != null && cached.getExternalResourceMetaData() != null && (additionalCandidates == null || additionalCandidates.isNone())) {
+                return revalidateConditionally(location, cached, cached.getExternalResourceMetaData(), fileStore);
+            }
+
             // Get the metadata first to see if it's there
             final ExternalResourceMetaData remoteMetaData = delegate.resource(location, revalidate).getMetaData();
             if (remoteMetaData == null) {
@@ -151,6 +159,29 @@ public LocallyAvailableExternalResource getResource(final ExternalResourceName l
         });
     }
 
+    /**
+     * Downloads the resource only if it has changed since it was cached. Transports that support it do this with a single conditional request.
+     */
+    @Nullable
+    private LocallyAvailableExternalResource revalidateConditionally(ExternalResourceName location, CachedExternalResource cached, ExternalResourceMetaData cachedMetaData, ResourceFileStore fileStore) {
+        DownloadAction downloadAction = new DownloadAction(location);
+        ExternalResourceReadResult<Object> result = delegate.withProgressLogging().resource(location, true).withContentIfModified(cachedMetaData, null, downloadAction);
+        if (result == null) {
+            return null;
+        }
+        if (downloadAction.metaData == null) {
+            LOGGER.info("Cached resource {} is up-to-date (lastModified: {}).", location, cached.getExternalLastModified());
+            // Update the cache entry in the index: this resets the age of the cached entry to zero
+            cachedExternalResourceIndex.store(location.toString(), cached.getCachedFile(), cachedMetaData);
+            return fileResourceRepository.resource(cached.getCachedFile(), location.getUri(), cachedMetaData);
+        }
+        try {
+            return moveIntoCache(location, downloadAction.destination, fileStore, downloadAction.metaData);
+        } finally {
+            downloadAction.destination.delete();
+        }
+    }
+
     @Nullable
     private HashCode getResourceSha1(ExternalResourceName location, boolean revalidate) {
         try {
@@ -42,7 +42,13 @@ public ProgressLoggingExternalResourceAccessor(ExternalResourceAccessor delegate
     @Nullable
     @Override
     public <T> T withContent(ExternalResourceName location, boolean revalidate, ExternalResource.ContentAndMetadataAction<T> action) throws ResourceException {
-        return buildOperationExecutor.call(new DownloadOperation<>(location, revalidate, action));
+        return buildOperationExecutor.call(new DownloadOperation<>(location, revalidate, null, null, action));
+    }
+
+    @Nullable
+    @Override
+    public <T> T withContentIfModified(ExternalResourceName location, ExternalResourceMetaData cached, T unchanged, ExternalResource.ContentAndMetadataAction<T> action) throws ResourceException {
+        return buildOperationExecutor.call(new DownloadOperation<>(location, true, cached, unchanged, action));
     }
 
     @Override
@@ -107,22 +113,30 @@ public String toString() {
     private class DownloadOperation<T> implements CallableBuildOperation<T> {
         private final ExternalResourceName location;
         private final boolean revalidate;
+        // When present, the resource is only downloaded if it has changed since this metadata was obtained
+        private final ExternalResourceMetaData cached;
+        private final T unchanged;
         private final ExternalResource.ContentAndMetadataAction<T> action;
 
-        public DownloadOperation(ExternalResourceName location, boolean revalidate, ExternalResource.ContentAndMetadataAction<T> action) {
+        public DownloadOperation(ExternalResourceName location, boolean revalidate, @Nullable ExternalResourceMetaData cached, @Nullable T unchanged, ExternalResource.ContentAndMetadataAction<T> action) {
             this.location = location;
             this.revalidate = revalidate;
+            this.cached = cached;
+            this.unchanged = unchanged;
             this.action = action;
         }
 
         @Override
         public T call(BuildOperationContext context) {
             ResourceOperation downloadOperation = createResourceOperation(context, ResourceOperation.Type.download);
-            T result = delegate.withContent(location, revalidate, (inputStream, metaData) -> {
+            ExternalResource.ContentAndMetadataAction<T> loggingAction = (inputStream, metaData) -> {
                 downloadOperation.setContentLength(metaData.getContentLength());
                 ProgressLoggingInputStream stream = new ProgressLoggingInputStream(inputStream, downloadOperation);
                 return action.execute(stream, metaData);
-            });
+            };
+            T result = cached == null
+                ? delegate.withContent(location, revalidate, loggingAction)
+                : delegate.withContentIfModified(location, cached, unchanged, loggingAction);
             context.setResult(new ReadOperationResult(downloadOperation.getTotalProcessedBytes()));
             return result;
         }
@@ -1052,4 +1052,65 @@ class PomReaderTest extends AbstractPomReaderTest {
         then:
         pomReader.hasGradleMetadataMarker()
     }
+
+    def "ignores elements that are not used to resolve the module"() {
+        when:
+        pomFile << """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>version-one</version>
+    <build>
+        <groupId>build-group</groupId>
+        <dependencies>
+            <dependency>
+                <groupId>group-two</groupId>
+                <artifactId>artifact-two</artifactId>
+            </dependency>
+        </dependencies>
+    </build>
+    <profiles>
+        <profile>
+            <id>profile-1</id>
+            <activation>
+                <activeByDefault>true</activeByDefault>
+            </activation>
+            <build>
+                <dependencies>
+                    <dependency>
+                        <groupId>group-three</groupId>
+                        <artifactId>artifact-three</artifactId>
+                    </dependency>
+                </dependencies>
+            </build>
+        </profile>
+    </profiles>
+</project>
+"""
+        pomReader = new PomReader(locallyAvailableExternalResource, moduleIdentifierFactory)
+
+        then:
+        pomReader.groupId == 'group-one'
+        pomReader.dependencies.isEmpty()
+    }
+
+    def "expands entities and CDATA sections in text"() {
+        when:
+        pomFile << """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group&amp;one</groupId>
+    <artifactId><![CDATA[artifact]]>-one</artifactId>
+    <version>version&nbsp;one</version>
+    <description>&copy; Example</description>
+</project>
+"""
+        pomReader = new PomReader(locallyAvailableExternalResource, moduleIdentifierFactory)
+
+        then:
+        pomReader.groupId == 'group&one'
+        pomReader.artifactId == 'artifact-one'
+        pomReader.version == 'version\u00A0one'
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.function.Supplier
+
+class CrossBuildModuleDescriptorCacheTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def loader = Mock(Supplier)
+    def descriptorFile = temporaryFolder.file("descriptor.bin").createFile()
+    @Subject CrossBuildModuleDescriptorCache cache = new CrossBuildModuleDescriptorCache()
+
+    def "reuses loaded metadata while the descriptor file is unchanged"() {
+        def metadata = metadata(false)
+
+        when:
+        def first = cache.load(descriptorFile, false, loader)
+        def second = cache.load(descriptorFile, false, loader)
+
+        then:
+        1 * loader.get() >> metadata
+        first.is(metadata)
+        second.is(metadata)
+    }
+
+    def "loads metadata again when the descriptor file has changed"() {
+        def original = metadata(false)
+        def updated = metadata(false)
+
+        when:
+        cache.load(descriptorFile, false, loader)
+        descriptorFile << "changed"
+        def result = cache.load(descriptorFile, false, loader)
+
+        then:
+        2 * loader.get() >>> [original, updated]
+        result.is(updated)
+    }
+
+    def "loads metadata again when the changing flag differs"() {
+        def original = metadata(false)
+        def changing = metadata(true)
+
+        when:
+        cache.load(descriptorFile, false, loader)
+        def result = cache.load(descriptorFile, true, loader)
+
+        then:
+        2 * loader.get() >>> [original, changing]
+        result.is(changing)
+    }
+
+    def "loads metadata again when the descriptor file has been invalidated"() {
+        def original = metadata(false)
+        def updated = metadata(false)
+
+        when:
+        cache.load(descriptorFile, false, loader)
+        cache.invalidate(descriptorFile)
+        def result = cache.load(descriptorFile, false, loader)
+
+        then:
+        2 * loader.get() >>> [original, updated]
+        result.is(updated)
+    }
+
+    def "does not retain anything when the descriptor file does not exist"() {
+        def missingFile = temporaryFolder.file("missing.bin")
+
+        when:
+        cache.load(missingFile, false, loader)
+        cache.load(missingFile, false, loader)
+
+        then:
+        2 * loader.get() >> metadata(false)
+    }
+
+    private ModuleComponentResolveMetadata metadata(boolean changing) {
+        Stub(ModuleComponentResolveMetadata) {
+            isChanging() >> changing
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.gradle.internal.serialize.InputStreamBackedDecoder
+import org.gradle.internal.serialize.OutputStreamBackedEncoder
+import org.gradle.util.internal.SimpleMapInterner
+import spock.lang.Specification
+
+class StringDeduplicatingEncoderTest extends Specification {
+    def interner = SimpleMapInterner.notThreadSafe()
+
+    def "round trips strings mixed with other values"() {
+        when:
+        def decoder = decoder { encoder ->
+            encoder.writeString("org.test")
+            encoder.writeSmallInt(12)
+            encoder.writeNullableString(null)
+            encoder.writeString("module")
+            encoder.writeString("org.test")
+            encoder.writeNullableString("")
+            encoder.writeBoolean(true)
+            encoder.writeString("module")
+        }
+
+        then:
+        decoder.readString() == "org.test"
+        decoder.readSmallInt() == 12
+        decoder.readNullableString() == null
+        decoder.readString() == "module"
+        decoder.readString() == "org.test"
+        decoder.readNullableString() == ""
+        decoder.readBoolean()
+        decoder.readString() == "module"
+    }
+
+    def "writes each string once"() {
+        when:
+        def once = encode { encoder ->
+            encoder.writeString("org.test.some.group")
+        }
+        def repeated = encode { encoder ->
+            10.times {
+                encoder.writeString("org.test.some.group")
+            }
+        }
+
+        then:
+        repeated.length - once.length < 9 * "org.test.some.group".length()
+    }
+
+    def "returns the same instance for repeated strings"() {
+        when:
+        def decoder = decoder { encoder ->
+            encoder.writeString(new String("org.test"))
+            encoder.writeString(new String("org.test"))
+        }
+
+        then:
+        decoder.readString().is(decoder.readString())
+    }
+
+    def "cannot read a null string as a non-null string"() {
+        when:
+        def decoder = decoder { encoder ->
+            encoder.writeNullableString(null)
+        }
+        decoder.readString()
+
+        then:
+        thrown(IOException)
+    }
+
+    private StringDeduplicatingDecoder decoder(Closure<?> action) {
+        return new StringDeduplicatingDecoder(new InputStreamBackedDecoder(new ByteArrayInputStream(encode(action))), interner)
+    }
+
+    private static byte[] encode(Closure<?> action) {
+        def outputStream = new ByteArrayOutputStream()
+        def delegate = new OutputStreamBackedEncoder(outputStream)
+        action.call(new StringDeduplicatingEncoder(delegate))
+        delegate.flush()
+        return outputStream.toByteArray()
+    }
+}
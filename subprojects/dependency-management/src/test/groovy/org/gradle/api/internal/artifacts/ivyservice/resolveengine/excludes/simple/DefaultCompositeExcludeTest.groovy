@@ -18,6 +18,8 @@ package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simp
 
 import org.gradle.api.artifacts.ModuleIdentifier
 import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.CompositeExclude
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeAnyOf
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeSpec
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.GroupExclude
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.GroupSetExclude
@@ -61,6 +63,29 @@ class DefaultCompositeExcludeTest extends Specification {
         true
     }
 
+    def "composite specs exclude what their components exclude"() {
+        expect:
+        (50_000).times {
+            ExcludeSpec spec = random.nextBoolean() ? nextAny() : nextAll()
+            if (spec instanceof CompositeExclude) {
+                def module = randomModuleId()
+                def artifact = randomArtifactName()
+                def components = spec.components
+                if (spec instanceof ExcludeAnyOf) {
+                    assert spec.excludes(module) == components.any { it.excludes(module) }
+                    assert spec.excludesArtifact(module, artifact) == components.any { it.excludesArtifact(module, artifact) }
+                } else {
+                    assert spec.excludes(module) == components.every { it.excludes(module) }
+                    assert spec.excludesArtifact(module, artifact) == components.every { it.excludesArtifact(module, artifact) }
+                }
+                components.each {
+                    assert spec.contains(it)
+                }
+            }
+        }
+        true
+    }
+
     ExcludeSpec cache(ExcludeSpec spec) {
         if (cached.add(spec)) {
             cachedLinear << spec
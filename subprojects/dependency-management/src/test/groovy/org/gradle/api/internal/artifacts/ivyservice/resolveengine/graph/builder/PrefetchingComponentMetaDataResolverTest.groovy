@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.DependencyManagementTestUtil
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser
+import org.gradle.internal.component.external.descriptor.MavenScope
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.maven.MavenDependencyDescriptor
+import org.gradle.internal.component.external.model.maven.MavenDependencyType
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
+import spock.lang.Specification
+import spock.lang.Subject
+
+import static org.gradle.internal.component.external.model.DefaultModuleComponentSelector.newSelector
+
+class PrefetchingComponentMetaDataResolverTest extends Specification {
+    def delegate = Mock(ComponentMetaDataResolver)
+    def operations = []
+    def queue = Stub(BuildOperationQueue) {
+        add(_) >> { RunnableBuildOperation operation -> operations << operation }
+    }
+    def versionSelectorScheme = new DefaultVersionSelectorScheme(new DefaultVersionComparator(), new VersionParser())
+    def mavenMetadataFactory = DependencyManagementTestUtil.mavenMetadataFactory()
+
+    @Subject
+    def resolver = new PrefetchingComponentMetaDataResolver(delegate, versionSelectorScheme)
+
+    def setup() {
+        resolver.start(queue)
+    }
+
+    def "prefetches the modules that a fetched component depends on with a fixed version"() {
+        def metadata = mavenMetadataFactory.create(id("a", "1.0"), [
+            dependency(MavenScope.Compile, "b", "1.0"),
+            dependency(MavenScope.Runtime, "c", "2.0"),
+            dependency(MavenScope.Test, "d", "1.0"),
+            dependency(MavenScope.Compile, "e", "[1.0,2.0)"),
+            dependency(MavenScope.Compile, "f", "1.0", MavenDependencyType.OPTIONAL_DEPENDENCY)
+        ]).asImmutable()
+
+        when:
+        resolver.prefetch(id("a", "1.0"), DefaultComponentOverrideMetadata.EMPTY)
+        runOperations()
+
+        then:
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(metadata) }
+        1 * delegate.resolve(id("b", "1.0"), _, _)
+        1 * delegate.resolve(id("c", "2.0"), _, _)
+        0 * delegate._
+    }
+
+    def "prefetches each component once"() {
+        when:
+        resolver.prefetch(id("a", "1.0"), DefaultComponentOverrideMetadata.EMPTY)
+        resolver.prefetch(id("a", "1.0"), DefaultComponentOverrideMetadata.EMPTY)
+        runOperations()
+
+        then:
+        operations.size() == 1
+        1 * delegate.resolve(id("a", "1.0"), _, _)
+    }
+
+    def "resolves a component itself when its prefetch has not started yet"() {
+        def result = new DefaultBuildableComponentResolveResult()
+
+        when:
+        resolver.prefetch(id("a", "1.0"), DefaultComponentOverrideMetadata.EMPTY)
+        resolver.resolve(id("a", "1.0"), DefaultComponentOverrideMetadata.EMPTY, result)
+
+        then:
+        1 * delegate.resolve(id("a", "1.0"), _, result)
+
+        when:
+        runOperations()
+
+        then:
+        0 * delegate._
+    }
+
+    def "does not fail when a prefetch fails"() {
+        when:
+        resolver.prefetch(id("a", "1.0"), DefaultComponentOverrideMetadata.EMPTY)
+        runOperations()
+
+        then:
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { throw new RuntimeException("broken") }
+        noExceptionThrown()
+    }
+
+    def "discards prefetches once stopped"() {
+        when:
+        resolver.prefetch(id("a", "1.0"), DefaultComponentOverrideMetadata.EMPTY)
+        resolver.stop()
+        resolver.prefetch(id("b", "1.0"), DefaultComponentOverrideMetadata.EMPTY)
+        runOperations()
+
+        then:
+        operations.size() == 1
+        0 * delegate._
+    }
+
+    private void runOperations() {
+        for (int i = 0; i < operations.size(); i++) {
+            operations[i].run(Stub(BuildOperationContext))
+        }
+    }
+
+    private static DefaultModuleComponentIdentifier id(String name, String version) {
+        DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org.test", name), version) as DefaultModuleComponentIdentifier
+    }
+
+    private static MavenDependencyDescriptor dependency(MavenScope scope, String name, String version, MavenDependencyType type = MavenDependencyType.DEPENDENCY) {
+        new MavenDependencyDescriptor(scope, type, newSelector(DefaultModuleIdentifier.newId("org.test", name), version), null, [])
+    }
+}
@@ -70,6 +70,28 @@ class DefaultBinaryStoreTest extends Specification {
 
     }
 
+    def "data does not extend into the data written after it"() {
+        def store = new DefaultBinaryStore(temp.file("foo.bin"))
+        store.write({ it.writeInt(10) } as BinaryStore.WriteAction)
+        def data1 = store.done()
+        store.write({ it.writeInt(20) } as BinaryStore.WriteAction)
+        def data2 = store.done()
+
+        when:
+        def value = data1.read({ it.readInt() } as BinaryStore.ReadAction)
+        data1.read({ it.readInt() } as BinaryStore.ReadAction)
+
+        then:
+        value == 10
+        thrown(RuntimeException)
+        data2.read({ it.readInt() } as BinaryStore.ReadAction) == 20
+
+        cleanup:
+        data1.close()
+        data2.close()
+        store.close()
+    }
+
     class SomeException extends RuntimeException {}
 
     def "write action exception is propagated to the client"() {
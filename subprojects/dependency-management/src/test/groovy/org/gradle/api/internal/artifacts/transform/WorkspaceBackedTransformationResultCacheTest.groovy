@@ -0,0 +1,179 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.transform
+
+import com.google.common.collect.ImmutableList
+import org.gradle.cache.ManualEvictionInMemoryCache
+import org.gradle.internal.Try
+import org.gradle.internal.execution.UnitOfWork
+import org.gradle.internal.execution.history.ExecutionHistoryStore
+import org.gradle.internal.execution.history.PreviousExecutionState
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.function.Supplier
+
+@CleanupTestDirectory
+class WorkspaceBackedTransformationResultCacheTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = TestNameTestDirectoryProvider.newInstance(getClass())
+
+    def history = Mock(ExecutionHistoryStore)
+    def workspaceServices = new TestTransformationWorkspaceServices(temporaryFolder.file("transforms"), history)
+    def inMemoryCache = new ManualEvictionInMemoryCache<UnitOfWork.Identity, Try<TransformationResult>>()
+    def cache = new WorkspaceBackedTransformationResultCache(inMemoryCache, workspaceServices.workspaceProvider)
+    def identity = Stub(UnitOfWork.Identity) {
+        getUniqueId() >> "1234"
+    }
+    def workspace = temporaryFolder.file("transforms/1234")
+    def inputArtifact = temporaryFolder.file("input.jar")
+
+    def "restores result of successful execution from workspace"() {
+        def outputFile = new TestFile(DefaultTransformerInvocationFactory.getOutputDir(workspace), "output.jar").createFile()
+        writeResults(outputFile)
+
+        when:
+        def result = cache.getIfPresent(identity)
+
+        then:
+        1 * history.load("1234") >> Optional.of(Stub(PreviousExecutionState) {
+            isSuccessful() >> true
+        })
+        result.get().resolveOutputsForInputArtifact(inputArtifact) == [outputFile]
+
+        when:
+        def cachedResult = cache.getIfPresent(identity)
+
+        then:
+        0 * history.load(_)
+        cachedResult.is(result)
+    }
+
+    def "does not restore result when workspace has no results"() {
+        when:
+        def result = cache.getIfPresent(identity)
+
+        then:
+        0 * history.load(_)
+        result == null
+    }
+
+    def "does not restore result of failed execution"() {
+        writeResults(inputArtifact)
+
+        when:
+        def result = cache.getIfPresent(identity)
+
+        then:
+        1 * history.load("1234") >> Optional.of(Stub(PreviousExecutionState) {
+            isSuccessful() >> false
+        })
+        result == null
+    }
+
+    def "does not restore result without execution history"() {
+        writeResults(inputArtifact)
+
+        when:
+        def result = cache.getIfPresent(identity)
+
+        then:
+        1 * history.load("1234") >> Optional.empty()
+        result == null
+
+        when:
+        def secondResult = cache.getIfPresent(identity)
+
+        then:
+        0 * history.load(_)
+        secondResult == null
+    }
+
+    def "executes transformation when there is no result to restore"() {
+        def executed = Try.successful(Stub(TransformationResult))
+
+        when:
+        def result = cache.get(identity, { executed } as Supplier)
+
+        then:
+        result.is(executed)
+        inMemoryCache.getIfPresent(identity).is(executed)
+    }
+
+    def "does not check workspace again when executing transformation after a miss"() {
+        writeResults(inputArtifact)
+        def executed = Try.successful(Stub(TransformationResult))
+
+        when:
+        def missingResult = cache.getIfPresent(identity)
+        def result = cache.get(identity, { executed } as Supplier)
+
+        then:
+        1 * history.load("1234") >> Optional.empty()
+        missingResult == null
+        result.is(executed)
+    }
+
+    def "checks workspace again once the executed result has been evicted from memory"() {
+        writeResults(inputArtifact)
+        def executed = Try.successful(Stub(TransformationResult))
+
+        when:
+        cache.get(identity, { executed } as Supplier)
+
+        then:
+        1 * history.load("1234") >> Optional.empty()
+
+        when:
+        inMemoryCache.clear()
+        def result = cache.getIfPresent(identity)
+
+        then:
+        1 * history.load("1234") >> Optional.empty()
+        result == null
+    }
+
+    def "forgets workspaces without result at the end of the build session"() {
+        writeResults(inputArtifact)
+
+        when:
+        def missingResult = cache.getIfPresent(identity)
+
+        then:
+        1 * history.load("1234") >> Optional.empty()
+        missingResult == null
+
+        when:
+        cache.beforeComplete()
+        def result = cache.getIfPresent(identity)
+
+        then:
+        1 * history.load("1234") >> Optional.of(Stub(PreviousExecutionState) {
+            isSuccessful() >> true
+        })
+        result.get().resolveOutputsForInputArtifact(inputArtifact) == [inputArtifact]
+    }
+
+    private void writeResults(File... results) {
+        workspace.createDir()
+        new TransformationResultSerializer(inputArtifact, DefaultTransformerInvocationFactory.getOutputDir(workspace))
+            .writeToFile(DefaultTransformerInvocationFactory.getResultsFile(workspace), ImmutableList.copyOf(results))
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.verification.verifier
+
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.ModuleComponentArtifactIdentifier
+import org.gradle.internal.component.external.model.ModuleComponentFileArtifactIdentifier
+import spock.lang.Specification
+
+import java.util.regex.PatternSyntaxException
+
+class DependencyVerificationConfigurationTest extends Specification {
+
+    def "trusted artifact #group:#name:#version:#fileName (regex: #regex) matches org:foo:1.0:foo-1.0.jar = #matches"() {
+        def trusted = new DependencyVerificationConfiguration.TrustedArtifact(group, name, version, fileName, regex)
+
+        expect:
+        trusted.matches(artifact("org", "foo", "1.0", "foo-1.0.jar")) == matches
+        trusted.matches(artifact("org", "foo", "1.0", "foo-1.0.jar")) == matches
+
+        where:
+        group  | name  | version | fileName      | regex | matches
+        null   | null  | null    | null          | false | true
+        "org"  | null  | null    | null          | false | true
+        "org"  | "foo" | "1.0"   | "foo-1.0.jar" | false | true
+        "or"   | null  | null    | null          | false | false
+        "org"  | "bar" | null    | null          | false | false
+        "o.*"  | null  | null    | null          | false | false
+        "o.*"  | null  | null    | null          | true  | true
+        "o"    | null  | null    | null          | true  | false
+        "org"  | "f.+" | "1\\.0" | ".*\\.jar"    | true  | true
+        "org"  | "f.+" | "1\\.0" | ".*\\.pom"    | true  | false
+    }
+
+    def "invalid regular expressions only fail when they are used"() {
+        def trusted = new DependencyVerificationConfiguration.TrustedKey("ABCD", "com", "[", null, null, true)
+
+        expect:
+        !trusted.matches(artifact("org", "foo", "1.0", "foo-1.0.jar"))
+
+        when:
+        trusted.matches(artifact("com", "foo", "1.0", "foo-1.0.jar"))
+
+        then:
+        thrown(PatternSyntaxException)
+    }
+
+    private static ModuleComponentArtifactIdentifier artifact(String group, String name, String version, String fileName) {
+        new ModuleComponentFileArtifactIdentifier(DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId(group, name), version), fileName)
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resolve.caching
+
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.serialize.SerializerSpec
+
+class CrossBuildCachingRuleExecutorAnySerializerTest extends SerializerSpec {
+    def serializer = new CrossBuildCachingRuleExecutor.AnySerializer()
+
+    def "serializes #type.simpleName as a usual type"() {
+        when:
+        def bytes = toBytes(value, serializer)
+
+        then:
+        fromBytes(bytes, serializer) == value
+        !new String(bytes, "ISO-8859-1").contains(value.getClass().name)
+
+        where:
+        value                              | type
+        "value"                            | String
+        Boolean.TRUE                       | Boolean
+        12L                                | Long
+        new File("some-file").absoluteFile | File
+        Hashing.md5().hashString("value")  | HashCode
+        HashCode.fromInt(12)               | HashCode
+    }
+
+    def "serializes byte arrays as a usual type"() {
+        expect:
+        serialize([1, 2, 3] as byte[], serializer) == [1, 2, 3] as byte[]
+    }
+
+    def "serializes throwables as a usual type"() {
+        def failure = new IllegalStateException("broken")
+
+        when:
+        def result = serialize(failure, serializer)
+
+        then:
+        result instanceof IllegalStateException
+        result.message == "broken"
+    }
+
+    def "serializes null and other types"() {
+        expect:
+        serialize(null, serializer) == null
+        serialize(12, serializer) == 12
+        serialize(["a", "b"], serializer) == ["a", "b"]
+    }
+}
@@ -35,6 +35,7 @@ import org.gradle.internal.resource.local.LocallyAvailableResource
 import org.gradle.internal.resource.local.LocallyAvailableResourceCandidates
 import org.gradle.internal.resource.metadata.ExternalResourceMetaData
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.SetSystemProperties
 import org.gradle.util.TestUtil
 import org.gradle.util.internal.BuildCommencedTimeProvider
 import org.junit.Rule
@@ -44,6 +45,8 @@ import spock.lang.Specification
 class DefaultCacheAwareExternalResourceAccessorTest extends Specification {
     @Rule
     TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider(getClass())
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties()
     final repository = Mock(ExternalResourceRepository)
     final progressLoggingRepo = Mock(ExternalResourceRepository)
     final index = Mock(CachedExternalResourceIndex)
@@ -437,4 +440,123 @@ class DefaultCacheAwareExternalResourceAccessorTest extends Specification {
         1 * fileRepository.resource(cachedFile, location.uri, remoteMetaData) >> resultResource
         0 * _._
     }
+
+    def "reuses expired cached resource when a conditional request finds it not modified"() {
+        given:
+        def location = new ExternalResourceName("thing")
+        def fileStore = Mock(CacheAwareExternalResourceAccessor.ResourceFileStore)
+        def cachedMetaData = Stub(ExternalResourceMetaData) {
+            getEtag() >> "686897696a7c876b7e"
+        }
+        def remoteResource = Mock(ExternalResource)
+        def resultResource = Stub(LocallyAvailableExternalResource)
+        def revalidatingCache = conditionallyRevalidatingCache()
+
+        when:
+        def result = revalidatingCache.getResource(location, null, fileStore, null)
+
+        then:
+        result == resultResource
+
+        and:
+        1 * index.lookup("thing") >> expiredCachedResource(cachedMetaData)
+        timeProvider.currentTime >> 24000L
+        1 * repository.withProgressLogging() >> progressLoggingRepo
+        1 * progressLoggingRepo.resource(location, true) >> remoteResource
+        1 * remoteResource.withContentIfModified(cachedMetaData, null, _) >> ExternalResourceReadResult.of(0, null)
+        1 * index.store("thing", cachedFile, cachedMetaData)
+        1 * fileRepository.resource(cachedFile, location.uri, cachedMetaData) >> resultResource
+        0 * _._
+    }
+
+    def "downloads expired cached resource when a conditional request finds it modified"() {
+        given:
+        def location = new ExternalResourceName("thing")
+        def fileStore = Mock(CacheAwareExternalResourceAccessor.ResourceFileStore)
+        def cachedMetaData = Stub(ExternalResourceMetaData) {
+            getEtag() >> "686897696a7c876b7e"
+        }
+        def remoteMetaData = Stub(ExternalResourceMetaData)
+        def remoteResource = Mock(ExternalResource)
+        def localResource = new DefaultLocallyAvailableResource(cachedFile, TestUtil.checksumService)
+        def resultResource = Stub(LocallyAvailableExternalResource)
+        def revalidatingCache = conditionallyRevalidatingCache()
+
+        when:
+        def result = revalidatingCache.getResource(location, null, fileStore, null)
+
+        then:
+        result == resultResource
+
+        and:
+        1 * index.lookup("thing") >> expiredCachedResource(cachedMetaData)
+        timeProvider.currentTime >> 24000L
+        1 * repository.withProgressLogging() >> progressLoggingRepo
+        1 * progressLoggingRepo.resource(location, true) >> remoteResource
+        1 * remoteResource.withContentIfModified(cachedMetaData, null, _) >> { ExternalResourceMetaData cached, Object unchanged, ExternalResource.ContentAndMetadataAction action ->
+            action.execute(new ByteArrayInputStream(), remoteMetaData)
+            ExternalResourceReadResult.of(0, null)
+        }
+        1 * fileStore.moveIntoCache(tempFile) >> localResource
+        1 * index.store("thing", cachedFile, remoteMetaData)
+        1 * fileRepository.resource(cachedFile, location.uri, remoteMetaData) >> resultResource
+        0 * _._
+    }
+
+    def "returns null when a conditional request finds that the expired cached resource no longer exists"() {
+        given:
+        def location = new ExternalResourceName("thing")
+        def fileStore = Mock(CacheAwareExternalResourceAccessor.ResourceFileStore)
+        def cachedMetaData = Stub(ExternalResourceMetaData)
+        def remoteResource = Mock(ExternalResource)
+        def revalidatingCache = conditionallyRevalidatingCache()
+
+        when:
+        def result = revalidatingCache.getResource(location, null, fileStore, null)
+
+        then:
+        result == null
+
+        and:
+        1 * index.lookup("thing") >> expiredCachedResource(cachedMetaData)
+        timeProvider.currentTime >> 24000L
+        1 * repository.withProgressLogging() >> progressLoggingRepo
+        1 * progressLoggingRepo.resource(location, true) >> remoteResource
+        1 * remoteResource.withContentIfModified(cachedMetaData, null, _) >> null
+        0 * _._
+    }
+
+    def "revalidates with a meta-data request when the expired cached resource has no meta-data to revalidate against"() {
+        given:
+        def location = new ExternalResourceName("thing")
+        def fileStore = Mock(CacheAwareExternalResourceAccessor.ResourceFileStore)
+        def remoteResource = Mock(ExternalResource)
+        def revalidatingCache = conditionallyRevalidatingCache()
+
+        when:
+        def result = revalidatingCache.getResource(location, null, fileStore, null)
+
+        then:
+        result == null
+
+        and:
+        1 * index.lookup("thing") >> expiredCachedResource(null)
+        timeProvider.currentTime >> 24000L
+        1 * repository.resource(location, true) >> remoteResource
+        1 * remoteResource.metaData >> null
+        0 * _._
+    }
+
+    private DefaultCacheAwareExternalResourceAccessor conditionallyRevalidatingCache() {
+        System.setProperty("org.gradle.internal.dm.conditional.revalidation", "true")
+        return new DefaultCacheAwareExternalResourceAccessor(repository, index, timeProvider, temporaryFileProvider, cacheLockingManager, cachePolicy, producerGuard, fileRepository, TestUtil.checksumService)
+    }
+
+    private CachedExternalResource expiredCachedResource(ExternalResourceMetaData metaData) {
+        Stub(CachedExternalResource) {
+            getCachedAt() >> 23999L
+            getExternalResourceMetaData() >> metaData
+            getCachedFile() >> cachedFile
+        }
+    }
 }
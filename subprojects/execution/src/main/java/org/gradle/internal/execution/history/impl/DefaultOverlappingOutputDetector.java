@@ -30,6 +30,10 @@
 import org.gradle.internal.snapshot.SnapshotVisitResult;
 
 import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Map;
 
 import static org.gradle.internal.snapshot.SnapshotUtil.getRootHashes;
@@ -56,35 +60,51 @@ public OverlappingOutputs detect(ImmutableSortedMap<String, FileSystemSnapshot>
 
     @Nullable
     private static OverlappingOutputs detect(String propertyName, FileSystemSnapshot previous, FileSystemSnapshot before) {
-        Map<String, FileSystemLocationSnapshot> previousIndex = SnapshotUtil.index(previous);
-        OverlappingOutputsDetectingVisitor outputsDetectingVisitor = new OverlappingOutputsDetectingVisitor(previousIndex);
+        Map<String, FileSystemLocationSnapshot> previousRoots = SnapshotUtil.rootIndex(previous);
+        OverlappingOutputsDetectingVisitor outputsDetectingVisitor = new OverlappingOutputsDetectingVisitor(previousRoots);
         before.accept(outputsDetectingVisitor);
         String overlappingPath = outputsDetectingVisitor.getOverlappingPath();
         return overlappingPath == null ? null : new OverlappingOutputs(propertyName, overlappingPath);
     }
 
+    /**
+     * Walks the current snapshot along with the previous one.
+     *
+     * Directories that have the same hash as in the previous snapshot have exactly the same contents, so they are not entered.
+     * The cost of the detection is proportional to the parts of the outputs that changed since the previous execution, not to the size of the outputs.
+     */
     private static class OverlappingOutputsDetectingVisitor extends RootTrackingFileSystemSnapshotHierarchyVisitor {
-        private final Map<String, FileSystemLocationSnapshot> previousSnapshots;
+        private final Map<String, FileSystemLocationSnapshot> previousRoots;
+        private final Deque<Map<String, FileSystemLocationSnapshot>> previousChildren = new ArrayDeque<>();
+        private FileSystemLocationSnapshot previousOfVisitedEntry;
         private String overlappingPath;
 
-        public OverlappingOutputsDetectingVisitor(Map<String, FileSystemLocationSnapshot> previousSnapshots) {
-            this.previousSnapshots = previousSnapshots;
+        public OverlappingOutputsDetectingVisitor(Map<String, FileSystemLocationSnapshot> previousRoots) {
+            this.previousRoots = previousRoots;
+        }
+
+        @Override
+        public void enterDirectory(DirectorySnapshot directorySnapshot, boolean isRoot) {
+            previousChildren.addLast(indexChildren(previousOfVisitedEntry));
         }
 
         @Override
         public SnapshotVisitResult visitEntry(FileSystemLocationSnapshot snapshot, boolean isRoot) {
+            FileSystemLocationSnapshot previousSnapshot = isRoot
+                ? previousRoots.get(snapshot.getAbsolutePath())
+                : previousChildren.getLast().get(snapshot.getName());
             boolean newContent = snapshot.accept(new FileSystemLocationSnapshotTransformer<Boolean>() {
                 @Override
                 public Boolean visitDirectory(DirectorySnapshot directorySnapshot) {
                     // Check if a new directory appeared. For matching directories don't check content
                     // hash as we should detect individual entries that are different instead)
-                    return hasNewContent(directorySnapshot);
+                    return hasNewContent(directorySnapshot, previousSnapshot);
                 }
 
                 @Override
                 public Boolean visitRegularFile(RegularFileSnapshot fileSnapshot) {
                     // Check if a new file has appeared, or if an existing file's content has changed
-                    return hasNewContent(fileSnapshot);
+                    return hasNewContent(fileSnapshot, previousSnapshot);
                 }
 
                 @Override
@@ -94,19 +114,27 @@ public Boolean visitMissing(MissingFileSnapshot missingSnapshot) {
                         return false;
                     }
                     // Otherwise check for newly added broken symlinks and unreadable files
-                    return hasNewContent(missingSnapshot);
+                    return hasNewContent(missingSnapshot, previousSnapshot);
                 }
             });
             if (newContent) {
                 overlappingPath = snapshot.getAbsolutePath();
                 return SnapshotVisitResult.TERMINATE;
-            } else {
-                return SnapshotVisitResult.CONTINUE;
             }
+            if (previousSnapshot != null && previousSnapshot.getHash().equals(snapshot.getHash())) {
+                // Nothing has changed below this entry
+                return SnapshotVisitResult.SKIP_SUBTREE;
+            }
+            previousOfVisitedEntry = previousSnapshot;
+            return SnapshotVisitResult.CONTINUE;
         }
 
-        private boolean hasNewContent(FileSystemLocationSnapshot snapshot) {
-            FileSystemLocationSnapshot previousSnapshot = previousSnapshots.get(snapshot.getAbsolutePath());
+        @Override
+        public void leaveDirectory(DirectorySnapshot directorySnapshot, boolean isRoot) {
+            previousChildren.removeLast();
+        }
+
+        private static boolean hasNewContent(FileSystemLocationSnapshot snapshot, @Nullable FileSystemLocationSnapshot previousSnapshot) {
             // Created since last execution, possibly by another task
             if (previousSnapshot == null) {
                 return true;
@@ -114,6 +142,24 @@ private boolean hasNewContent(FileSystemLocationSnapshot snapshot) {
             return !snapshot.isContentUpToDate(previousSnapshot);
         }
 
+        private static Map<String, FileSystemLocationSnapshot> indexChildren(@Nullable FileSystemLocationSnapshot directory) {
+            if (directory == null) {
+                return Collections.emptyMap();
+            }
+            Map<String, FileSystemLocationSnapshot> children = new HashMap<>();
+            directory.accept(new RootTrackingFileSystemSnapshotHierarchyVisitor() {
+                @Override
+                public SnapshotVisitResult visitEntry(FileSystemLocationSnapshot snapshot, boolean isRoot) {
+                    if (isRoot) {
+                        return SnapshotVisitResult.CONTINUE;
+                    }
+                    children.put(snapshot.getName(), snapshot);
+                    return SnapshotVisitResult.SKIP_SUBTREE;
+                }
+            });
+            return children;
+        }
+
         @Nullable
         public String getOverlappingPath() {
             return overlappingPath;
@@ -51,22 +51,24 @@ public FingerprintMapSerializer(Interner<String> stringInterner) {
     public Map<String, FileSystemLocationFingerprint> read(Decoder decoder) throws IOException {
         int fingerprintCount = decoder.readSmallInt();
         ImmutableMap.Builder<String, FileSystemLocationFingerprint> fingerprints = ImmutableMap.builderWithExpectedSize(fingerprintCount);
+        PrefixDecoder absolutePaths = new PrefixDecoder();
+        PrefixDecoder normalizedPaths = new PrefixDecoder();
         for (int i = 0; i < fingerprintCount; i++) {
-            String absolutePath = stringInterner.intern(decoder.readString());
-            FileSystemLocationFingerprint fingerprint = readFingerprint(decoder);
+            String absolutePath = stringInterner.intern(absolutePaths.read(decoder));
+            FileSystemLocationFingerprint fingerprint = readFingerprint(decoder, normalizedPaths);
             fingerprints.put(absolutePath, fingerprint);
         }
         return fingerprints.build();
     }
 
-    private FileSystemLocationFingerprint readFingerprint(Decoder decoder) throws IOException {
+    private FileSystemLocationFingerprint readFingerprint(Decoder decoder, PrefixDecoder normalizedPaths) throws IOException {
         FileType fileType = readFileType(decoder);
         HashCode contentHash = readContentHash(fileType, decoder);
 
         byte fingerprintKind = decoder.readByte();
         switch (fingerprintKind) {
             case DEFAULT_NORMALIZATION:
-                String normalizedPath = decoder.readString();
+                String normalizedPath = normalizedPaths.read(decoder);
                 return new DefaultFileSystemLocationFingerprint(stringInterner.intern(normalizedPath), fileType, contentHash);
             case IGNORED_PATH_NORMALIZATION:
                 return IgnoredPathFileSystemLocationFingerprint.create(fileType, contentHash);
@@ -105,10 +107,11 @@ private FileType readFileType(Decoder decoder) throws IOException {
     @Override
     public void write(Encoder encoder, Map<String, FileSystemLocationFingerprint> value) throws Exception {
         encoder.writeSmallInt(value.size());
-        for (String key : value.keySet()) {
-            encoder.writeString(key);
-            FileSystemLocationFingerprint fingerprint = value.get(key);
-            writeFingerprint(encoder, fingerprint);
+        PrefixEncoder absolutePaths = new PrefixEncoder();
+        PrefixEncoder normalizedPaths = new PrefixEncoder();
+        for (Map.Entry<String, FileSystemLocationFingerprint> entry : value.entrySet()) {
+            absolutePaths.write(encoder, entry.getKey());
+            writeFingerprint(encoder, entry.getValue(), normalizedPaths);
         }
     }
 
@@ -127,7 +130,7 @@ public int hashCode() {
         return Objects.hashCode(super.hashCode(), hashCodeSerializer);
     }
 
-    private void writeFingerprint(Encoder encoder, FileSystemLocationFingerprint value) throws IOException {
+    private void writeFingerprint(Encoder encoder, FileSystemLocationFingerprint value, PrefixEncoder normalizedPaths) throws IOException {
         switch (value.getType()) {
             case Directory:
                 encoder.writeByte(DIR_FINGERPRINT);
@@ -145,11 +148,53 @@ private void writeFingerprint(Encoder encoder, FileSystemLocationFingerprint val
 
         if (value instanceof DefaultFileSystemLocationFingerprint) {
             encoder.writeByte(DEFAULT_NORMALIZATION);
-            encoder.writeString(value.getNormalizedPath());
+            normalizedPaths.write(encoder, value.getNormalizedPath());
         } else if (value instanceof IgnoredPathFileSystemLocationFingerprint) {
             encoder.writeByte(IGNORED_PATH_NORMALIZATION);
         } else {
             throw new AssertionError();
         }
     }
+
+    /**
+     * Writes each path as the length of the prefix it shares with the previously written path, followed by the rest of the path.
+     * Fingerprints are ordered by file system traversal, so consecutive paths usually share most of their parent directories.
+     */
+    private static class PrefixEncoder {
+        private String previous = "";
+
+        void write(Encoder encoder, String path) throws IOException {
+            int commonPrefixLength = commonPrefixLength(previous, path);
+            encoder.writeSmallInt(commonPrefixLength);
+            encoder.writeString(path.substring(commonPrefixLength));
+            previous = path;
+        }
+
+        private static int commonPrefixLength(String previous, String path) {
+            int maxLength = Math.min(previous.length(), path.length());
+            int length = 0;
+            while (length < maxLength && previous.charAt(length) == path.charAt(length)) {
+                length++;
+            }
+            // Do not split a surrogate pair
+            if (length > 0 && Character.isHighSurrogate(path.charAt(length - 1))) {
+                length--;
+            }
+            return length;
+        }
+    }
+
+    private static class PrefixDecoder {
+        private String previous = "";
+
+        String read(Decoder decoder) throws IOException {
+            int commonPrefixLength = decoder.readSmallInt();
+            String suffix = decoder.readString();
+            String path = commonPrefixLength == 0
+                ? suffix
+                : previous.substring(0, commonPrefixLength).concat(suffix);
+            previous = path;
+            return path;
+        }
+    }
 }
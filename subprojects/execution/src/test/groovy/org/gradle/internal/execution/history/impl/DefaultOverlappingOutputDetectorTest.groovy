@@ -84,4 +84,58 @@ class DefaultOverlappingOutputDetectorTest extends Specification {
         "directory"      | new DirectorySnapshot("/absolute/path", "path", AccessType.DIRECT, HashCode.fromInt(123), [])
         "broken symlink" | new MissingFileSnapshot("/absolute/path", "path", AccessType.VIA_SYMLINK)
     }
+
+    def "detects overlap deep in a changed output directory"() {
+        def previousOutputFiles = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "output", directory("/absolute", 0x1234, [
+                directory("/absolute/sub", 0x2345, [
+                    file("/absolute/sub/produced", 1)
+                ])
+            ])
+        )
+        def outputFilesBeforeExecution = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "output", directory("/absolute", 0x5678, [
+                directory("/absolute/sub", 0x6789, [
+                    file("/absolute/sub/produced", 1),
+                    file("/absolute/sub/stale", 2)
+                ])
+            ])
+        )
+
+        when:
+        def overlaps = detector.detect(previousOutputFiles, outputFilesBeforeExecution)
+
+        then:
+        overlaps.propertyName == "output"
+        overlaps.overlappedFilePath == "/absolute/sub/stale"
+    }
+
+    def "does not look into directories which did not change since the previous execution"() {
+        // The unchanged directory has the same hash as before, so its contents are not compared
+        def previousOutputFiles = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "output", directory("/absolute", 0x1234, [
+                directory("/absolute/unchanged", 0x2345, []),
+                file("/absolute/changed", 1)
+            ])
+        )
+        def outputFilesBeforeExecution = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "output", directory("/absolute", 0x5678, [
+                directory("/absolute/unchanged", 0x2345, [
+                    file("/absolute/unchanged/not-compared", 3)
+                ]),
+                file("/absolute/changed", 1)
+            ])
+        )
+
+        expect:
+        detector.detect(previousOutputFiles, outputFilesBeforeExecution) == null
+    }
+
+    private static DirectorySnapshot directory(String absolutePath, int hash, List<?> children) {
+        new DirectorySnapshot(absolutePath, absolutePath.substring(absolutePath.lastIndexOf('/') + 1), AccessType.DIRECT, HashCode.fromInt(hash), children)
+    }
+
+    private static RegularFileSnapshot file(String absolutePath, int hash) {
+        new RegularFileSnapshot(absolutePath, absolutePath.substring(absolutePath.lastIndexOf('/') + 1), HashCode.fromInt(hash), DefaultFileMetadata.file(0L, 0L, AccessType.DIRECT))
+    }
 }
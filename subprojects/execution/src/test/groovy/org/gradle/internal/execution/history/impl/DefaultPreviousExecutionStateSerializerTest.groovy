@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl
+
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSortedMap
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.caching.internal.origin.OriginMetadata
+import org.gradle.internal.serialize.SerializerSpec
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.FileSystemSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
+
+import java.time.Duration
+
+import static org.gradle.internal.file.FileMetadata.AccessType.DIRECT
+import static org.gradle.internal.file.impl.DefaultFileMetadata.file
+import static org.gradle.internal.hash.HashCode.fromInt
+import static org.gradle.internal.snapshot.SnapshotUtil.index
+
+class DefaultPreviousExecutionStateSerializerTest extends SerializerSpec {
+    def stringInterner = new StringInterner()
+    def serializer = new DefaultPreviousExecutionStateSerializer(new FileCollectionFingerprintSerializer(stringInterner), new FileSystemSnapshotSerializer(stringInterner))
+
+    def "reads and writes execution state with output snapshots"() {
+        def outputFile = new RegularFileSnapshot("/root/build/output.txt", "output.txt", fromInt(1234), file(1, 1, DIRECT))
+        def outputDir = new DirectorySnapshot("/root/build/classes", "classes", DIRECT, fromInt(5678), [
+            new RegularFileSnapshot("/root/build/classes/Foo.class", "Foo.class", fromInt(4321), file(2, 2, DIRECT))
+        ])
+
+        when:
+        def out = serialize(executionState(ImmutableSortedMap.of("outputFile", outputFile, "outputDir", outputDir)), serializer)
+
+        then:
+        out.successful
+        out.implementation.typeName == "Implementation"
+        def outputs = out.outputFilesProducedByWork
+        outputs.keySet() as List == ["outputDir", "outputFile"]
+        index(outputs["outputFile"]).keySet() == ["/root/build/output.txt"] as Set
+        index(outputs["outputDir"]).collectEntries { path, snapshot -> [path, snapshot.hash] } == [
+            "/root/build/classes": fromInt(5678),
+            "/root/build/classes/Foo.class": fromInt(4321)
+        ]
+    }
+
+    def "reads and writes execution state without outputs"() {
+        when:
+        def out = serialize(executionState(ImmutableSortedMap.of()), serializer)
+
+        then:
+        out.outputFilesProducedByWork.isEmpty()
+    }
+
+    private static DefaultPreviousExecutionState executionState(ImmutableSortedMap<String, FileSystemSnapshot> outputs) {
+        new DefaultPreviousExecutionState(
+            new OriginMetadata("build-id", Duration.ofMillis(100)),
+            ImplementationSnapshot.of("Implementation", fromInt(1)),
+            ImmutableList.of(),
+            ImmutableSortedMap.of(),
+            ImmutableSortedMap.of(),
+            outputs,
+            true
+        )
+    }
+}
@@ -93,4 +93,28 @@ class FileCollectionFingerprintSerializerTest extends SerializerSpec {
         out.fingerprints.keySet() as List == ["/3", "/2", "/1"]
         out.rootHashes.keySet() as List == ["/3", "/2", "/1"]
     }
+
+    def "reads and writes paths sharing prefixes"() {
+        def hash = HashCode.fromInt(1234)
+        def fingerprints = [
+            "/root/dir": new DefaultFileSystemLocationFingerprint("dir", FileType.Directory, FileSystemLocationFingerprint.DIR_SIGNATURE),
+            "/root/dir/first.txt": new DefaultFileSystemLocationFingerprint("dir/first.txt", FileType.RegularFile, hash),
+            "/root/dir/firstly.txt": new DefaultFileSystemLocationFingerprint("dir/firstly.txt", FileType.RegularFile, hash),
+            "/root/dir/sub/second.txt": IgnoredPathFileSystemLocationFingerprint.create(FileType.RegularFile, hash),
+            "/root/other/\uD83D\uDE00.txt": new DefaultFileSystemLocationFingerprint("other/\uD83D\uDE00.txt", FileType.RegularFile, hash),
+            "/root/other/\uD83D\uDE01.txt": new DefaultFileSystemLocationFingerprint("other/\uD83D\uDE01.txt", FileType.RegularFile, hash),
+            "/elsewhere": new DefaultFileSystemLocationFingerprint("elsewhere", FileType.Missing, FileSystemLocationFingerprint.MISSING_FILE_SIGNATURE)
+        ]
+
+        when:
+        def out = serialize(new SerializableFileCollectionFingerprint(
+            fingerprints,
+            ImmutableMultimap.of("/root", HashCode.fromInt(5678)),
+            HashCode.fromInt(5432)
+        ), serializer)
+
+        then:
+        out.fingerprints.keySet() as List == fingerprints.keySet() as List
+        out.fingerprints.collect { path, fingerprint -> fingerprint.normalizedPath } == fingerprints.collect { path, fingerprint -> fingerprint.normalizedPath }
+    }
 }
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.PathUtil;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Persists the snapshots of a watchable hierarchy retained by the virtual file system, so that a new daemon can reuse them instead of snapshotting the hierarchy again.
+ *
+ * <p>There is one state file per watchable hierarchy, which is replaced atomically at the end of each build.
+ * Since the file system is not watched while no daemon is running, every snapshot is verified when the state is loaded:</p>
+ * <ul>
+ *     <li>a regular file is reused when its modification time, length and access type did not change,</li>
+ *     <li>a directory is reused as a whole when its modification time did not change and all of its children can be reused,</li>
+ *     <li>a missing file is reused when there still is nothing at its location.</li>
+ * </ul>
+ * <p>Timestamps too close to the time the state was written are not trusted, as a later change could have left them unchanged on file systems with a coarse timestamp resolution.
+ * Parts of a directory which can be reused are kept even when the directory itself can't be reused.</p>
+ *
+ * <p>The state is discarded when the snapshots would be taken differently now, for example since the default excludes changed.
+ * State files which have been neither read nor written within the retention period are deleted.</p>
+ */
+public class VirtualFileSystemStateStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualFileSystemStateStore.class);
+
+    private static final int FORMAT_VERSION = 2;
+    private static final long RETENTION_PERIOD = TimeUnit.DAYS.toMillis(7);
+    private static final long TIMESTAMP_RESOLUTION = 2000;
+    private static final long UNKNOWN_TIMESTAMP = Long.MIN_VALUE;
+    private static final String STATE_FILE_SUFFIX = ".bin";
+
+    private static final byte DIRECTORY = 0;
+    private static final byte REGULAR_FILE = 1;
+    private static final byte MISSING = 2;
+
+    private final File stateDir;
+    private final String contentHashAlgorithm;
+    private final Supplier<String[]> defaultExcludes;
+
+    public VirtualFileSystemStateStore(File stateDir, String contentHashAlgorithm, Supplier<String[]> defaultExcludes) {
+        this.stateDir = stateDir;
+        this.contentHashAlgorithm = contentHashAlgorithm;
+        this.defaultExcludes = defaultExcludes;
+    }
+
+    /**
+     * Returns the persisted snapshots inside the given hierarchy which are still up-to-date.
+     */
+    public List<FileSystemLocationSnapshot> load(File watchableHierarchy) {
+        File stateFile = stateFile(watchableHierarchy);
+        if (!stateFile.isFile()) {
+            return Collections.emptyList();
+        }
+        try {
+            List<FileSystemLocationSnapshot> snapshots = readState(stateFile, watchableHierarchy);
+            if (snapshots == null) {
+                LOGGER.info("Discarding the persisted virtual file system state for {} as it has been written with different settings", watchableHierarchy);
+                Files.deleteIfExists(stateFile.toPath());
+                return Collections.emptyList();
+            }
+            LOGGER.info("Reusing {} persisted snapshots in {}", snapshots.size(), watchableHierarchy);
+            markUsed(stateFile);
+            return snapshots;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not load the persisted virtual file system state for {}", watchableHierarchy, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Returns the up-to-date snapshots from the state file, or {@code null} if the state has been written with different settings.
+     */
+    @Nullable
+    private List<FileSystemLocationSnapshot> readState(File stateFile, File watchableHierarchy) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile.toPath())))) {
+            if (input.readInt() != FORMAT_VERSION
+                || !input.readUTF().equals(contentHashAlgorithm)
+                || !input.readUTF().equals(watchableHierarchy.getAbsolutePath())
+                || !readDefaultExcludes(input).equals(currentDefaultExcludes())) {
+                return null;
+            }
+            long trustedTimestampLimit = input.readLong() - TIMESTAMP_RESOLUTION;
+            int count = input.readInt();
+            List<FileSystemLocationSnapshot> snapshots = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String absolutePath = input.readUTF();
+                FileSystemLocationSnapshot snapshot = readSnapshot(input, absolutePath, PathUtil.getFileName(absolutePath), trustedTimestampLimit, snapshots);
+                if (snapshot != null) {
+                    snapshots.add(snapshot);
+                }
+            }
+            return snapshots;
+        }
+    }
+
+    /**
+     * Returns the snapshot read from the input if it is still up-to-date. Otherwise, adds the parts of it which are still up-to-date to {@code upToDateSnapshots} and returns {@code null}.
+     */
+    @Nullable
+    private static FileSystemLocationSnapshot readSnapshot(DataInputStream input, String absolutePath, String name, long trustedTimestampLimit, List<FileSystemLocationSnapshot> upToDateSnapshots) throws IOException {
+        byte type = input.readByte();
+        AccessType accessType = AccessType.values()[input.readByte()];
+        Path path = Paths.get(absolutePath);
+        switch (type) {
+            case REGULAR_FILE:
+                HashCode contentHash = readHashCode(input);
+                long lastModified = input.readLong();
+                long length = input.readLong();
+                BasicFileAttributes fileAttributes = readAttributes(path, accessType);
+                if (fileAttributes == null
+                    || !fileAttributes.isRegularFile()
+                    || lastModified >= trustedTimestampLimit
+                    || fileAttributes.lastModifiedTime().toMillis() != lastModified
+                    || fileAttributes.size() != length) {
+                    return null;
+                }
+                return new RegularFileSnapshot(absolutePath, name, contentHash, DefaultFileMetadata.file(lastModified, length, accessType));
+            case MISSING:
+                return isMissing(path, accessType)
+                    ? new MissingFileSnapshot(absolutePath, name, accessType)
+                    : null;
+            case DIRECTORY:
+                long directoryLastModified = input.readLong();
+                HashCode merkleHash = readHashCode(input);
+                int childCount = input.readInt();
+                BasicFileAttributes directoryAttributes = readAttributes(path, accessType);
+                boolean upToDate = directoryAttributes != null
+                    && directoryAttributes.isDirectory()
+                    && directoryLastModified < trustedTimestampLimit
+                    && directoryAttributes.lastModifiedTime().toMillis() == directoryLastModified;
+                List<FileSystemLocationSnapshot> children = new ArrayList<>(childCount);
+                List<FileSystemLocationSnapshot> upToDateDescendants = new ArrayList<>();
+                for (int i = 0; i < childCount; i++) {
+                    String childName = input.readUTF();
+                    FileSystemLocationSnapshot child = readSnapshot(input, absolutePath + File.separatorChar + childName, childName, trustedTimestampLimit, upToDateDescendants);
+                    if (child == null) {
+                        upToDate = false;
+                    } else {
+                        children.add(child);
+                    }
+                }
+                if (upToDate) {
+                    return new DirectorySnapshot(absolutePath, name, accessType, merkleHash, children);
+                }
+                upToDateSnapshots.addAll(children);
+                upToDateSnapshots.addAll(upToDateDescendants);
+                return null;
+            default:
+                throw new IOException("Unknown snapshot type " + type);
+        }
+    }
+
+    /**
+     * Returns the attributes of the file at the given location, or {@code null} if the location is not accessed the same way anymore.
+     */
+    @Nullable
+    private static BasicFileAttributes readAttributes(Path path, AccessType accessType) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attributes.isSymbolicLink() != (accessType == AccessType.VIA_SYMLINK)) {
+                return null;
+            }
+            return attributes.isSymbolicLink()
+                ? Files.readAttributes(path, BasicFileAttributes.class)
+                : attributes;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isMissing(Path path, AccessType accessType) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            // A broken symlink is snapshot as missing
+            return accessType == AccessType.VIA_SYMLINK && attributes.isSymbolicLink() && !Files.exists(path);
+        } catch (NoSuchFileException e) {
+            return accessType == AccessType.DIRECT;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the persisted state of the given hierarchy with the snapshots inside it retained by the given root.
+     */
+    public void store(File watchableHierarchy, SnapshotHierarchy root) {
+        File stateFile = stateFile(watchableHierarchy);
+        List<FileSystemLocationSnapshot> snapshots = new ArrayList<>();
+        root.visitSnapshotRoots(watchableHierarchy.getAbsolutePath(), snapshots::add);
+        try {
+            if (snapshots.isEmpty()) {
+                Files.deleteIfExists(stateFile.toPath());
+                return;
+            }
+            Files.createDirectories(stateDir.toPath());
+            File tempFile = File.createTempFile(stateFile.getName(), ".tmp", stateDir);
+            try {
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                    output.writeInt(FORMAT_VERSION);
+                    output.writeUTF(contentHashAlgorithm);
+                    output.writeUTF(watchableHierarchy.getAbsolutePath());
+                    writeDefaultExcludes(output, currentDefaultExcludes());
+                    output.writeLong(System.currentTimeMillis());
+                    output.writeInt(snapshots.size());
+                    for (FileSystemLocationSnapshot snapshot : snapshots) {
+                        output.writeUTF(snapshot.getAbsolutePath());
+                        writeSnapshot(output, snapshot);
+                    }
+                }
+                Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+            deleteUnusedStateFiles();
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.debug("Could not persist the virtual file system state for {}", watchableHierarchy, e);
+        }
+    }
+
+    /**
+     * The default excludes shape the snapshots of directories, so snapshots taken with other default excludes can't be reused.
+     */
+    private List<String> currentDefaultExcludes() {
+        List<String> excludes = new ArrayList<>(Arrays.asList(defaultExcludes.get()));
+        Collections.sort(excludes);
+        return excludes;
+    }
+
+    private static List<String> readDefaultExcludes(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        List<String> excludes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            excludes.add(input.readUTF());
+        }
+        return excludes;
+    }
+
+    private static void writeDefaultExcludes(DataOutputStream output, List<String> excludes) throws IOException {
+        output.writeInt(excludes.size());
+        for (String exclude : excludes) {
+            output.writeUTF(exclude);
+        }
+    }
+
+    private static void markUsed(File stateFile) {
+        if (!stateFile.setLastModified(System.currentTimeMillis())) {
+            LOGGER.debug("Could not mark {} as used", stateFile);
+        }
+    }
+
+    /**
+     * Deletes the state files of hierarchies which have not been used by any daemon within the retention period, as well as temporary files left behind by crashed daemons.
+     */
+    private void deleteUnusedStateFiles() {
+        File[] files = stateDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long oldestRetained = System.currentTimeMillis() - RETENTION_PERIOD;
+        for (File file : files) {
+            if (file.isFile() && file.lastModified() < oldestRetained) {
+                try {
+                    Files.deleteIfExists(file.toPath());
+                } catch (IOException e) {
+                    LOGGER.debug("Could not delete unused virtual file system state {}", file, e);
+                }
+            }
+        }
+    }
+
+    private static void writeSnapshot(DataOutputStream output, FileSystemLocationSnapshot snapshot) {
+        snapshot.accept(new FileSystemLocationSnapshot.FileSystemLocationSnapshotVisitor() {
+            @Override
+            public void visitDirectory(DirectorySnapshot directorySnapshot) {
+                try {
+                    writeHeader(output, DIRECTORY, directorySnapshot);
+                    output.writeLong(directoryLastModified(directorySnapshot.getAbsolutePath()));
+                    writeHashCode(output, directorySnapshot.getHash());
+                    List<FileSystemLocationSnapshot> children = directorySnapshot.getChildren();
+                    output.writeInt(children.size());
+                    for (FileSystemLocationSnapshot child : children) {
+                        output.writeUTF(child.getName());
+                        writeSnapshot(output, child);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void visitRegularFile(RegularFileSnapshot fileSnapshot) {
+                try {
+                    writeHeader(output, REGULAR_FILE, fileSnapshot);
+                    writeHashCode(output, fileSnapshot.getHash());
+                    output.writeLong(fileSnapshot.getMetadata().getLastModified());
+                    output.writeLong(fileSnapshot.getMetadata().getLength());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void visitMissing(MissingFileSnapshot missingSnapshot) {
+                try {
+                    writeHeader(output, MISSING, missingSnapshot);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    private static void writeHeader(DataOutputStream output, byte type, FileSystemLocationSnapshot snapshot) throws IOException {
+        output.writeByte(type);
+        output.writeByte(snapshot.getAccessType().ordinal());
+    }
+
+    /**
+     * Directory snapshots don't carry a timestamp, so the current one is recorded.
+     * Changes to the directory since it has been snapshot have been picked up by the file watchers.
+     */
+    private static long directoryLastModified(String absolutePath) {
+        try {
+            return Files.getLastModifiedTime(Paths.get(absolutePath)).toMillis();
+        } catch (IOException e) {
+            return UNKNOWN_TIMESTAMP;
+        }
+    }
+
+    private static HashCode readHashCode(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readUnsignedByte()];
+        input.readFully(bytes);
+        return HashCode.fromBytes(bytes);
+    }
+
+    private static void writeHashCode(DataOutputStream output, HashCode hashCode) throws IOException {
+        byte[] bytes = hashCode.toByteArray();
+        output.writeByte(bytes.length);
+        output.write(bytes);
+    }
+
+    private File stateFile(File watchableHierarchy) {
+        return new File(stateDir, Hashing.hashString(watchableHierarchy.getAbsolutePath()).toString() + STATE_FILE_SUFFIX);
+    }
+}
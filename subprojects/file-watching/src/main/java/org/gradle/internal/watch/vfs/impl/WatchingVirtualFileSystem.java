@@ -22,6 +22,7 @@
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationRunner;
 import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemNode;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.vfs.impl.AbstractVirtualFileSystem;
@@ -42,11 +43,13 @@
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Supplier;
 
@@ -59,6 +62,8 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private final DaemonDocumentationIndex daemonDocumentationIndex;
     private final LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild;
     private final Set<File> watchableHierarchies = new LinkedHashSet<>();
+    private final VirtualFileSystemStateStore stateStore;
+    private final Set<File> hierarchiesToPersist = new LinkedHashSet<>();
 
     private FileWatcherRegistry watchRegistry;
     private Exception reasonForNotWatchingFiles;
@@ -68,11 +73,22 @@ public WatchingVirtualFileSystem(
         VfsRootReference rootReference,
         DaemonDocumentationIndex daemonDocumentationIndex,
         LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild
+    ) {
+        this(watcherRegistryFactory, rootReference, daemonDocumentationIndex, locationsWrittenByCurrentBuild, null);
+    }
+
+    public WatchingVirtualFileSystem(
+        FileWatcherRegistryFactory watcherRegistryFactory,
+        VfsRootReference rootReference,
+        DaemonDocumentationIndex daemonDocumentationIndex,
+        LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
+        @Nullable VirtualFileSystemStateStore stateStore
     ) {
         super(rootReference);
         this.watcherRegistryFactory = watcherRegistryFactory;
         this.daemonDocumentationIndex = daemonDocumentationIndex;
         this.locationsWrittenByCurrentBuild = locationsWrittenByCurrentBuild;
+        this.stateStore = stateStore;
     }
 
     @Override
@@ -165,7 +181,10 @@ public void registerWatchableHierarchy(File watchableHierarchy) {
             }
             return withWatcherChangeErrorHandling(
                 currentRoot,
-                () -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot)
+                () -> {
+                    watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot);
+                    return restorePersistedState(watchableHierarchy, currentRoot);
+                }
             );
         });
     }
@@ -176,6 +195,10 @@ public void beforeBuildFinished(WatchMode watchMode, VfsLogging vfsLogging, Watc
             @Override
             public SnapshotHierarchy call(BuildOperationContext context) {
                 watchableHierarchies.clear();
+                return updateVfsOnBuildFinished(context);
+            }
+
+            private SnapshotHierarchy updateVfsOnBuildFinished(BuildOperationContext context) {
                 if (watchMode.isEnabled()) {
                     if (reasonForNotWatchingFiles != null) {
                         // Log exception again so it doesn't get lost.
@@ -266,7 +289,10 @@ public void stopWatchingAfterError() {
                 }
             });
             SnapshotHierarchy newRoot = watchRegistry.updateVfsOnBuildStarted(currentRoot.empty(), watchMode);
-            watchableHierarchies.forEach(watchableHierarchy -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, newRoot));
+            for (File watchableHierarchy : watchableHierarchies) {
+                watchRegistry.registerWatchableHierarchy(watchableHierarchy, newRoot);
+                newRoot = restorePersistedState(watchableHierarchy, newRoot);
+            }
             watchableHierarchies.clear();
             return newRoot;
         } catch (Exception ex) {
@@ -276,6 +302,46 @@ public void stopWatchingAfterError() {
         }
     }
 
+    /**
+     * Adds the persisted snapshots of a newly registered hierarchy which are still up-to-date, when the virtual file system doesn't know anything about the hierarchy.
+     * This happens for the first build in a new daemon.
+     */
+    @CheckReturnValue
+    private SnapshotHierarchy restorePersistedState(File watchableHierarchy, SnapshotHierarchy currentRoot) {
+        if (stateStore == null) {
+            return currentRoot;
+        }
+        hierarchiesToPersist.add(watchableHierarchy);
+        if (currentRoot.hasDescendantsUnder(watchableHierarchy.getAbsolutePath())) {
+            return currentRoot;
+        }
+        List<FileSystemLocationSnapshot> snapshots = stateStore.load(watchableHierarchy);
+        if (snapshots.isEmpty()) {
+            return currentRoot;
+        }
+        SnapshotCollectingDiffListener diffListener = new SnapshotCollectingDiffListener();
+        SnapshotHierarchy newRoot = currentRoot;
+        for (FileSystemLocationSnapshot snapshot : snapshots) {
+            newRoot = newRoot.store(snapshot.getAbsolutePath(), snapshot, diffListener);
+        }
+        SnapshotHierarchy restoredRoot = newRoot;
+        diffListener.publishSnapshotDiff((removedSnapshots, addedSnapshots) ->
+            watchRegistry.virtualFileSystemContentsChanged(removedSnapshots, addedSnapshots, restoredRoot)
+        );
+        return restoredRoot;
+    }
+
+    /**
+     * Persists what the virtual file system retains about the hierarchies registered since watching started, so that the next daemon can pick it up.
+     * This only happens when the daemon stops, since the file watchers keep the retained state up-to-date in between builds.
+     */
+    private void persistState(SnapshotHierarchy root) {
+        if (stateStore == null || watchRegistry == null) {
+            return;
+        }
+        hierarchiesToPersist.forEach(watchableHierarchy -> stateStore.store(watchableHierarchy, root));
+    }
+
     private static class VfsChangeLoggingNodeDiffListener implements SnapshotHierarchy.NodeDiffListener {
         private final FileWatcherRegistry.Type type;
         private final Path path;
@@ -364,6 +430,7 @@ private SnapshotHierarchy stopWatchingAndInvalidateHierarchy(SnapshotHierarchy c
                 LOGGER.error("Unable to close file watcher registry", ex);
             }
         }
+        hierarchiesToPersist.clear();
         return currentRoot.empty();
     }
 
@@ -383,6 +450,7 @@ private boolean hasDroppedStateBecauseOfErrorsReceivedWhileWatching(FileWatcherR
     public void close() {
         LOGGER.debug("Closing VFS, dropping state");
         rootReference.update(currentRoot -> {
+            persistState(currentRoot);
             closeUnderLock();
             return currentRoot.empty();
         });
@@ -398,5 +466,6 @@ private void closeUnderLock() {
                 watchRegistry = null;
             }
         }
+        hierarchiesToPersist.clear();
     }
 }
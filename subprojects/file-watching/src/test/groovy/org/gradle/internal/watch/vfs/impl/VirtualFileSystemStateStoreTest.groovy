@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+@CleanupTestDirectory
+class VirtualFileSystemStateStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def directorySnapshotter = new DirectorySnapshotter(TestFiles.fileHasher(), new StringInterner(), [], Stub(DirectorySnapshotterStatistics.Collector))
+    def defaultExcludes = ["**/.git"] as String[]
+    def stateStore = new VirtualFileSystemStateStore(temporaryFolder.file("state"), "MD5", { defaultExcludes })
+    def project = temporaryFolder.createDir("project")
+
+    def "reuses unchanged snapshots"() {
+        def firstFile = project.file("src/first/file.txt").createFile()
+        def secondFile = project.file("src/second/file.txt").createFile()
+        def snapshot = snapshotWithOldTimestamps(project, firstFile, secondFile)
+
+        when:
+        stateStore.store(project, root(snapshot))
+        def loaded = stateStore.load(project)
+
+        then:
+        loaded.size() == 1
+        loaded[0] instanceof DirectorySnapshot
+        loaded[0].absolutePath == project.absolutePath
+        loaded[0].hash == snapshot.hash
+    }
+
+    def "reuses unchanged parts of changed directories"() {
+        def changedFile = project.file("src/changed/file.txt").createFile()
+        def unchangedFile = project.file("src/unchanged/file.txt").createFile()
+        def siblingFile = project.file("src/unchanged/sibling.txt").createFile()
+        def snapshot = snapshotWithOldTimestamps(project, changedFile, unchangedFile, siblingFile)
+        stateStore.store(project, root(snapshot))
+
+        when:
+        changedFile.text = "changed"
+        project.file("src/unchanged/added.txt").createFile()
+        def loaded = stateStore.load(project)
+
+        then:
+        loaded*.absolutePath as Set == [unchangedFile.absolutePath, siblingFile.absolutePath] as Set
+    }
+
+    def "does not reuse recently modified files"() {
+        def file = project.file("file.txt").createFile()
+        def snapshot = directorySnapshotter.snapshot(project.absolutePath, null, new AtomicBoolean())
+
+        when:
+        stateStore.store(project, root(snapshot))
+
+        then:
+        stateStore.load(project).empty
+    }
+
+    def "discards state written with another content hash function"() {
+        def file = project.file("file.txt").createFile()
+        def snapshot = snapshotWithOldTimestamps(project, file)
+        stateStore.store(project, root(snapshot))
+
+        expect:
+        new VirtualFileSystemStateStore(temporaryFolder.file("state"), "Murmur3-128", { defaultExcludes }).load(project).empty
+        stateStore.load(project).empty
+        temporaryFolder.file("state").list().length == 0
+    }
+
+    def "discards state written with other default excludes"() {
+        def file = project.file("file.txt").createFile()
+        def snapshot = snapshotWithOldTimestamps(project, file)
+        stateStore.store(project, root(snapshot))
+
+        when:
+        defaultExcludes = ["**/.git", "**/.hg"] as String[]
+
+        then:
+        stateStore.load(project).empty
+        temporaryFolder.file("state").list().length == 0
+    }
+
+    def "deletes state files which have not been used within the retention period"() {
+        def otherProject = temporaryFolder.createDir("other")
+        def file = project.file("file.txt").createFile()
+        def otherFile = otherProject.file("file.txt").createFile()
+        stateStore.store(otherProject, root(snapshotWithOldTimestamps(otherProject, otherFile)))
+        def otherStateFile = temporaryFolder.file("state").listFiles().first()
+        assert otherStateFile.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(8))
+
+        when:
+        stateStore.store(project, root(snapshotWithOldTimestamps(project, file)))
+
+        then:
+        !otherStateFile.exists()
+        stateStore.load(otherProject).empty
+        stateStore.load(project).size() == 1
+    }
+
+    def "removes the state when nothing is retained in the hierarchy"() {
+        def file = project.file("file.txt").createFile()
+        stateStore.store(project, root(snapshotWithOldTimestamps(project, file)))
+
+        when:
+        stateStore.store(project, DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE))
+
+        then:
+        stateStore.load(project).empty
+        temporaryFolder.file("state").list().length == 0
+    }
+
+    private def snapshotWithOldTimestamps(TestFile rootDir, TestFile... files) {
+        def timestamp = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)
+        files.each { file ->
+            assert file.setLastModified(timestamp)
+            def dir = file.parentFile
+            while (dir != rootDir.parentFile) {
+                assert dir.setLastModified(timestamp)
+                dir = dir.parentFile
+            }
+        }
+        return directorySnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean())
+    }
+
+    private static SnapshotHierarchy root(snapshot) {
+        DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE).store(snapshot.absolutePath, snapshot, SnapshotHierarchy.NodeDiffListener.NOOP)
+    }
+}
@@ -155,4 +155,72 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.registerWatchableHierarchy(newWatchableHierarchy, _)
     }
+
+    def "persists the state of registered hierarchies when closed instead of after each build"() {
+        def stateStore = Mock(VirtualFileSystemStateStore)
+        def persistingVirtualFileSystem = new WatchingVirtualFileSystem(
+            watcherRegistryFactory,
+            rootReference,
+            daemonDocumentationIndex,
+            locationsUpdatedByCurrentBuild,
+            stateStore
+        )
+        def watchableHierarchy = new File("watchable")
+
+        when:
+        persistingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        persistingVirtualFileSystem.registerWatchableHierarchy(watchableHierarchy)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.updateVfsOnBuildStarted(_, _) >> rootReference.getRoot()
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        1 * watcherRegistry.registerWatchableHierarchy(watchableHierarchy, _)
+        1 * stateStore.load(watchableHierarchy) >> []
+        0 * _
+
+        when:
+        persistingVirtualFileSystem.beforeBuildFinished(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner, Integer.MAX_VALUE)
+        then:
+        1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
+        1 * watcherRegistry.updateVfsOnBuildFinished(_, WatchMode.ENABLED, Integer.MAX_VALUE) >> rootReference.getRoot()
+        0 * stateStore._
+        0 * _
+
+        when:
+        persistingVirtualFileSystem.close()
+        then:
+        1 * stateStore.store(watchableHierarchy, nonEmptySnapshotHierarchy)
+        then:
+        1 * watcherRegistry.close()
+        0 * _
+
+        rootReference.getRoot() == emptySnapshotHierarchy
+    }
+
+    def "does not persist the state when watching has been stopped"() {
+        def stateStore = Mock(VirtualFileSystemStateStore)
+        def persistingVirtualFileSystem = new WatchingVirtualFileSystem(
+            watcherRegistryFactory,
+            rootReference,
+            daemonDocumentationIndex,
+            locationsUpdatedByCurrentBuild,
+            stateStore
+        )
+        def watchableHierarchy = new File("watchable")
+
+        when:
+        persistingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        persistingVirtualFileSystem.registerWatchableHierarchy(watchableHierarchy)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.updateVfsOnBuildStarted(_, _) >> rootReference.getRoot()
+        1 * stateStore.load(watchableHierarchy) >> []
+
+        when:
+        persistingVirtualFileSystem.afterBuildStarted(WatchMode.DISABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        persistingVirtualFileSystem.close()
+        then:
+        1 * watcherRegistry.close()
+        0 * stateStore._
+    }
 }
@@ -17,21 +17,65 @@
 
 import com.google.common.io.ByteStreams;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 
 public class DefaultStreamHasher implements StreamHasher {
+    /**
+     * Selects the hash function used for file contents. Supported values are {@code md5}, the default, and {@code murmur3}.
+     * As the hashes end up in build cache keys, all builds sharing a build cache need to use the same function.
+     */
+    public static final String CONTENT_HASH_FUNCTION_PROPERTY = "org.gradle.internal.content-hash-function";
+
     private static final HashCode SIGNATURE = Hashing.signature(DefaultStreamHasher.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
 
+    private final HashFunction hashFunction;
+    private final HashCode signature;
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
+    private final Queue<ByteBuffer> directBuffers = new ArrayBlockingQueue<ByteBuffer>(16);
+
+    public DefaultStreamHasher() {
+        this(Hashing.defaultFunction());
+    }
+
+    public DefaultStreamHasher(HashFunction hashFunction) {
+        this.hashFunction = hashFunction;
+        // Keep the hashes created with the default function the same as before other functions were supported
+        this.signature = hashFunction == Hashing.defaultFunction()
+            ? SIGNATURE
+            : Hashing.signature(DefaultStreamHasher.class.getName() + ":" + hashFunction.getAlgorithm());
+    }
+
+    /**
+     * Returns the hash function for file contents configured for this process via {@link #CONTENT_HASH_FUNCTION_PROPERTY}.
+     */
+    public static HashFunction contentHashFunction() {
+        String name = System.getProperty(CONTENT_HASH_FUNCTION_PROPERTY, "md5");
+        switch (name) {
+            case "md5":
+                return Hashing.md5();
+            case "murmur3":
+                return Hashing.murmur3();
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported content hash function '%s' set via %s.", name, CONTENT_HASH_FUNCTION_PROPERTY));
+        }
+    }
 
     @Override
     public HashCode hash(InputStream inputStream) {
         try {
+            if (inputStream.getClass() == FileInputStream.class) {
+                return doHash(((FileInputStream) inputStream).getChannel());
+            }
             return doHash(inputStream, ByteStreams.nullOutputStream());
         } catch (IOException e) {
             throw new UncheckedIOException("Failed to create MD5 hash for file content.", e);
@@ -46,8 +90,8 @@ public HashCode hashCopy(InputStream inputStream, OutputStream outputStream) thr
     private HashCode doHash(InputStream inputStream, OutputStream outputStream) throws IOException {
         byte[] buffer = takeBuffer();
         try {
-            PrimitiveHasher hasher = Hashing.newPrimitiveHasher();
-            hasher.putHash(SIGNATURE);
+            PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
+            hasher.putHash(signature);
             while (true) {
                 int nread = inputStream.read(buffer);
                 if (nread < 0) {
@@ -62,6 +106,35 @@ private HashCode doHash(InputStream inputStream, OutputStream outputStream) thro
         }
     }
 
+    /**
+     * Reads files through the channel into a direct buffer, which saves copying the contents to the heap for hash functions that can read from the buffer.
+     */
+    private HashCode doHash(FileChannel channel) throws IOException {
+        ByteBuffer buffer = takeDirectBuffer();
+        try {
+            PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
+            hasher.putHash(signature);
+            while (channel.read(buffer) >= 0) {
+                castBuffer(buffer).flip();
+                hasher.putBytes(buffer);
+                castBuffer(buffer).clear();
+            }
+            return hasher.hash();
+        } finally {
+            castBuffer(buffer).clear();
+            directBuffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Without this cast, when the code compiled by Java 9+ is executed on Java 8, it will throw
+     * java.lang.NoSuchMethodError: Method flip()Ljava/nio/ByteBuffer; does not exist in class java.nio.ByteBuffer
+     */
+    @SuppressWarnings("RedundantCast")
+    private static <T extends Buffer> Buffer castBuffer(T byteBuffer) {
+        return (Buffer) byteBuffer;
+    }
+
     private void returnBuffer(byte[] buffer) {
         // Retain buffer if there is capacity in the queue, otherwise discard
         buffers.offer(buffer);
@@ -70,7 +143,15 @@ private void returnBuffer(byte[] buffer) {
     private byte[] takeBuffer() {
         byte[] buffer = buffers.poll();
         if (buffer == null) {
-            buffer = new byte[8192];
+            buffer = new byte[BUFFER_SIZE];
+        }
+        return buffer;
+    }
+
+    private ByteBuffer takeDirectBuffer() {
+        ByteBuffer buffer = directBuffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
         }
         return buffer;
     }
@@ -23,26 +23,29 @@
 import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.Arrays;
 
 /**
  * An immutable hash code. Must be 4-255 bytes long.
  * Inspired by the Google Guava project – https://github.com/google/guava.
+ *
+ * <p>128-bit hash codes, as produced by the default hash function, are the vast majority of hash codes retained in memory,
+ * for example in the virtual file system. They are stored as two longs, instead of in a separate byte array.</p>
  */
-public class HashCode implements Serializable, Comparable<HashCode> {
+public abstract class HashCode implements Serializable, Comparable<HashCode> {
     private static final int MIN_NUMBER_OF_BYTES = 4;
     private static final int MAX_NUMBER_OF_BYTES = 255;
     private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
-    private final byte[] bytes;
-
-    private long hashCode;
-
-    private HashCode(byte[] bytes) {
-        this.bytes = bytes;
+    HashCode() {
     }
 
     static HashCode fromBytesNoCopy(byte[] bytes) {
-        return new HashCode(bytes);
+        if (bytes.length == Hash128.LENGTH) {
+            return new Hash128(Longs.fromBytes(bytes[0], bytes[1], bytes[2], bytes[3], bytes[4], bytes[5], bytes[6], bytes[7]),
+                Longs.fromBytes(bytes[8], bytes[9], bytes[10], bytes[11], bytes[12], bytes[13], bytes[14], bytes[15]));
+        }
+        return new ByteArrayBackedHashCode(bytes);
     }
 
     public static HashCode fromBytes(byte[] bytes) {
@@ -95,63 +98,35 @@ private static int decode(char ch) {
         throw new IllegalArgumentException("Illegal hexadecimal character: " + ch);
     }
 
-    public int length() {
-        return bytes.length;
-    }
-
-    public byte[] toByteArray() {
-        return bytes.clone();
-    }
-
-    @Override
-    public int hashCode() {
-        if (hashCode == 0) {
-            hashCode = (bytes[0] & 0xFF)
-                | ((bytes[1] & 0xFF) << 8)
-                | ((bytes[2] & 0xFF) << 16)
-                | ((bytes[3] & 0xFF) << 24)
-                // Make sure it's always > 0 but without affecting the lower 32 bits
-                | (1L << 32);
-        }
-        return (int) hashCode;
-    }
-
-    @Override
-    public boolean equals(@Nullable Object obj) {
-        if (obj == this) {
-            return true;
-        }
+    public abstract int length();
 
-        if (obj == null || obj.getClass() != HashCode.class) {
-            return false;
-        }
+    public abstract byte[] toByteArray();
 
-        byte[] a = bytes;
-        byte[] b = ((HashCode) obj).bytes;
-        int length = a.length;
+    abstract byte byteAt(int index);
 
-        if (b.length != length) {
-            return false;
-        }
+    // Package private accessor used by toCompactString() for performance reasons
+    abstract byte[] getBytes();
 
-        for (int i = 0; i < length; i++) {
-            if (a[i] != b[i]) {
-                return false;
-            }
-        }
+    // Package private accessor used by the hashers' putHash for performance reasons, feeds the same bytes as toByteArray() without copying them
+    abstract void appendToHasher(PrimitiveHasher hasher);
 
-        return true;
+    @Override
+    public int hashCode() {
+        // Built from the first four bytes, so that it doesn't depend on how the bytes are stored
+        return (byteAt(0) & 0xFF)
+            | ((byteAt(1) & 0xFF) << 8)
+            | ((byteAt(2) & 0xFF) << 16)
+            | ((byteAt(3) & 0xFF) << 24);
     }
 
     @Override
     public int compareTo(@Nonnull HashCode o) {
-        byte[] bytes2 = o.bytes;
         int result;
-        int len1 = bytes.length;
-        int len2 = bytes2.length;
+        int len1 = length();
+        int len2 = o.length();
         int length = Math.min(len1, len2);
         for (int idx = 0; idx < length; idx++) {
-            result = bytes[idx] - bytes2[idx];
+            result = byteAt(idx) - o.byteAt(idx);
             if (result != 0) {
                 return result;
             }
@@ -161,7 +136,7 @@ public int compareTo(@Nonnull HashCode o) {
 
     @Override
     public String toString() {
-        StringBuilder sb = toStringBuilder(2 * bytes.length);
+        StringBuilder sb = toStringBuilder(2 * length());
         return sb.toString();
     }
 
@@ -175,18 +150,125 @@ public String toZeroPaddedString(int length) {
 
     private StringBuilder toStringBuilder(int capacity) {
         StringBuilder sb = new StringBuilder(capacity);
-        for (byte b : bytes) {
+        for (int idx = 0, length = length(); idx < length; idx++) {
+            byte b = byteAt(idx);
             sb.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
         }
         return sb;
     }
 
     public String toCompactString() {
-        return new BigInteger(1, bytes).toString(36);
+        return new BigInteger(1, getBytes()).toString(36);
     }
 
-    // Package private accessor used by MessageDigestHasher.putHash for performance reasons
-    byte[] getBytes() {
-        return bytes;
+    private static class ByteArrayBackedHashCode extends HashCode {
+        private final byte[] bytes;
+
+        ByteArrayBackedHashCode(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return bytes.clone();
+        }
+
+        @Override
+        byte byteAt(int index) {
+            return bytes[index];
+        }
+
+        @Override
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        @Override
+        void appendToHasher(PrimitiveHasher hasher) {
+            hasher.putBytes(bytes);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof ByteArrayBackedHashCode)) {
+                return false;
+            }
+            return Arrays.equals(bytes, ((ByteArrayBackedHashCode) obj).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode();
+        }
+    }
+
+    private static class Hash128 extends HashCode {
+        static final int LENGTH = 16;
+
+        private final long bits1;
+        private final long bits2;
+
+        Hash128(long bits1, long bits2) {
+            this.bits1 = bits1;
+            this.bits2 = bits2;
+        }
+
+        @Override
+        public int length() {
+            return LENGTH;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            byte[] bytes = new byte[LENGTH];
+            for (int idx = 0; idx < LENGTH; idx++) {
+                bytes[idx] = byteAt(idx);
+            }
+            return bytes;
+        }
+
+        @Override
+        byte byteAt(int index) {
+            // Big-endian, like the bytes the hash code was created from
+            long bits = index < 8 ? bits1 : bits2;
+            return (byte) (bits >>> (56 - 8 * (index & 7)));
+        }
+
+        @Override
+        byte[] getBytes() {
+            return toByteArray();
+        }
+
+        @Override
+        void appendToHasher(PrimitiveHasher hasher) {
+            // The hashers put longs in little-endian order, while the bytes of the hash code are big-endian
+            hasher.putLong(Long.reverseBytes(bits1));
+            hasher.putLong(Long.reverseBytes(bits2));
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Hash128)) {
+                return false;
+            }
+            Hash128 other = (Hash128) obj;
+            return bits1 == other.bits1 && bits2 == other.bits2;
+        }
+
+        @Override
+        public int hashCode() {
+            return Integer.reverseBytes((int) (bits1 >>> 32));
+        }
     }
 }
@@ -36,4 +36,25 @@ class DefaultStreamHasherTest extends Specification {
         hash.toString() == "af67a92e9f73b51572e9b94e343d2840"
         output.toByteArray() == "hello".bytes
     }
+
+    def "hashes files read through the channel the same as other streams"() {
+        def file = File.createTempFile("hash", ".bin")
+        def bytes = new byte[200000]
+        new Random(1).nextBytes(bytes)
+        file.bytes = bytes
+
+        expect:
+        new FileInputStream(file).withCloseable { hasher.hash(it) } == hasher.hash(new ByteArrayInputStream(bytes))
+
+        cleanup:
+        file.delete()
+
+        where:
+        hasher << [new DefaultStreamHasher(), new DefaultStreamHasher(Hashing.murmur3())]
+    }
+
+    def "different hash functions produce different hashes"() {
+        expect:
+        new DefaultStreamHasher(Hashing.murmur3()).hash(new ByteArrayInputStream("hello".bytes)) != new DefaultStreamHasher().hash(new ByteArrayInputStream("hello".bytes))
+    }
 }
@@ -81,10 +81,14 @@ class HashCodeTest extends Specification {
         (hashB == hashA) == equals
 
         where:
-        a            | b            | equals
-        "abcdef12"   | "abcdef12"   | true
-        "abcdef12"   | "abcdef1234" | false
-        "abcdef1234" | "abcdef12"   | false
+        a                                    | b                                    | equals
+        "abcdef12"                           | "abcdef12"                           | true
+        "abcdef12"                           | "abcdef1234"                         | false
+        "abcdef1234"                         | "abcdef12"                           | false
+        "0123456789abcdef0123456789abcdef"   | "0123456789abcdef0123456789abcdef"   | true
+        "0123456789abcdef0123456789abcdef"   | "0123456789abcdef0123456789abcdee"   | false
+        "0123456789abcdef0123456789abcdef"   | "0123456789abcdef0123456789abcdef00" | false
+        "0123456789abcdef0123456789abcdef00" | "0123456789abcdef0123456789abcdef"   | false
     }
 
     def "#a <=> #b: #expected"() {
@@ -98,12 +102,15 @@ class HashCodeTest extends Specification {
         Math.signum(compareBA) == -expected
 
         where:
-        a            | b            | expected
-        "abcdef12"   | "abcdef12"   | 0
-        "abcdef12"   | "abcdef1234" | -1
-        "abcdef1234" | "abcdef12"   | 1
-        "abcdef1234" | "bcdef123"   | -1
-        "bcdef123"   | "abcdef12"   | 1
+        a                                  | b                                    | expected
+        "abcdef12"                         | "abcdef12"                           | 0
+        "abcdef12"                         | "abcdef1234"                         | -1
+        "abcdef1234"                       | "abcdef12"                           | 1
+        "abcdef1234"                       | "bcdef123"                           | -1
+        "bcdef123"                         | "abcdef12"                           | 1
+        "0123456789abcdef0123456789abcdef" | "0123456789abcdef0123456789abcdef"   | 0
+        "0123456789abcdef0123456789abcdee" | "0123456789abcdef0123456789abcdef"   | -1
+        "0123456789abcdef0123456789abcdef" | "0123456789abcdef0123456789abcdef00" | -1
     }
 
     def "not equals with null"() {
@@ -169,6 +176,20 @@ class HashCodeTest extends Specification {
         thrown Exception
     }
 
+    def "128-bit hash codes behave like other hash codes"() {
+        def bytes = toBytes((0..15).collect { it * 17 })
+        def hash = HashCode.fromBytes(bytes)
+
+        expect:
+        hash.length() == 16
+        hash.toByteArray() == bytes
+        hash.toString() == "00112233445566778899aabbccddeeff"
+        hash == HashCode.fromString("00112233445566778899aabbccddeeff")
+        hash.hashCode() == HashCode.fromString("00112233445566778899aabbccddeeff").hashCode()
+        hash.hashCode() == 0x33221100
+        hash.toZeroPaddedString(34) == "0000112233445566778899aabbccddeeff"
+    }
+
     def "can create compact string representation"() {
         expect:
         Hashing.md5().hashString("").toCompactString() == "ck2u8j60r58fu0sgyxrigm3cu"
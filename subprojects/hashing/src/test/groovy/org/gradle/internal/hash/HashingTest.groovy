@@ -18,6 +18,8 @@ package org.gradle.internal.hash
 
 import spock.lang.Specification
 
+import java.nio.ByteBuffer
+
 import static java.lang.Thread.currentThread
 import static java.util.concurrent.CompletableFuture.supplyAsync
 import static java.util.concurrent.Executors.newFixedThreadPool
@@ -126,4 +128,35 @@ class HashingTest extends Specification {
         }
         hasher.hash()
     }
+
+    def 'murmur3 hashes bytes and buffers the same'() {
+        def bytes = "hello".bytes
+
+        when:
+        def fromArray = Hashing.murmur3().newPrimitiveHasher()
+        fromArray.putBytes(bytes)
+        def fromBuffer = Hashing.murmur3().newPrimitiveHasher()
+        fromBuffer.putBytes(ByteBuffer.wrap(bytes))
+
+        then:
+        fromArray.hash().toString() == "029bbd41b3a7d8cb191dae486a901e5b"
+        fromBuffer.hash().toString() == "029bbd41b3a7d8cb191dae486a901e5b"
+        Hashing.murmur3().hexDigits == 32
+    }
+
+    def '#hashFunction.algorithm hashes 128-bit hash codes the same as their bytes'() {
+        def hashCode = HashCode.fromString("00112233445566778899aabbccddeeff")
+
+        when:
+        def fromHash = hashFunction.newPrimitiveHasher()
+        fromHash.putHash(hashCode)
+        def fromBytes = hashFunction.newPrimitiveHasher()
+        fromBytes.putBytes(hashCode.toByteArray())
+
+        then:
+        fromHash.hash() == fromBytes.hash()
+
+        where:
+        hashFunction << [Hashing.md5(), Hashing.sha1(), Hashing.murmur3()]
+    }
 }
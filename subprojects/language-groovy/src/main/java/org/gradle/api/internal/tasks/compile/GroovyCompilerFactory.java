@@ -22,6 +22,7 @@
 import org.gradle.api.internal.tasks.compile.processing.AnnotationProcessorDetector;
 import org.gradle.api.tasks.WorkResult;
 import org.gradle.initialization.ClassLoaderRegistry;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.jvm.inspection.JvmVersionDetector;
 import org.gradle.language.base.internal.compile.Compiler;
 import org.gradle.language.base.internal.compile.CompilerFactory;
@@ -77,12 +78,14 @@ public static class DaemonSideCompiler implements Compiler<GroovyJavaJointCompil
         private final ExecHandleFactory execHandleFactory;
         private final ProjectLayout projectLayout;
         private final List<File> javaCompilerPlugins;
+        private final ExecutorFactory executorFactory;
 
         @Inject
-        public DaemonSideCompiler(ExecHandleFactory execHandleFactory, ProjectLayout projectLayout, List<File> javaCompilerPlugins) {
+        public DaemonSideCompiler(ExecHandleFactory execHandleFactory, ProjectLayout projectLayout, List<File> javaCompilerPlugins, ExecutorFactory executorFactory) {
             this.execHandleFactory = execHandleFactory;
             this.projectLayout = projectLayout;
             this.javaCompilerPlugins = javaCompilerPlugins;
+            this.executorFactory = executorFactory;
         }
 
         @Override
@@ -91,7 +94,7 @@ public WorkResult execute(GroovyJavaJointCompileSpec spec) {
             if (CommandLineJavaCompileSpec.class.isAssignableFrom(spec.getClass())) {
                 javaCompiler = new CommandLineJavaCompiler(execHandleFactory);
             } else {
-                javaCompiler = new JdkJavaCompiler(new JavaHomeBasedJavaCompilerFactory(javaCompilerPlugins));
+                javaCompiler = new JdkJavaCompiler(new JavaHomeBasedJavaCompilerFactory(javaCompilerPlugins), executorFactory);
             }
             Compiler<GroovyJavaJointCompileSpec> groovyCompiler = new ApiGroovyCompiler(javaCompiler, projectLayout);
             return groovyCompiler.execute(spec);
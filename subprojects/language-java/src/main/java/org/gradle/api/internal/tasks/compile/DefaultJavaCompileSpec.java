@@ -21,6 +21,7 @@
 import org.gradle.api.internal.tasks.compile.processing.AnnotationProcessorDeclaration;
 import org.gradle.api.tasks.compile.CompileOptions;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
 import java.util.Set;
@@ -32,6 +33,7 @@ public class DefaultJavaCompileSpec extends DefaultJvmLanguageCompileSpec implem
     private Set<String> classes;
     private List<File> modulePath;
     private List<File> sourceRoots;
+    private SourcePartitions sourcePartitions;
 
     @Override
     public MinimalJavaCompileOptions getCompileOptions() {
@@ -104,4 +106,15 @@ public List<File> getSourceRoots() {
     public void setSourcesRoots(List<File> sourcesRoots) {
         this.sourceRoots = sourcesRoots;
     }
+
+    @Nullable
+    @Override
+    public SourcePartitions getSourcePartitions() {
+        return sourcePartitions;
+    }
+
+    @Override
+    public void setSourcePartitions(@Nullable SourcePartitions sourcePartitions) {
+        this.sourcePartitions = sourcePartitions;
+    }
 }
@@ -18,6 +18,7 @@
 
 import org.gradle.api.internal.tasks.compile.processing.AnnotationProcessorDeclaration;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
 import java.util.Set;
@@ -47,6 +48,14 @@ public interface JavaCompileSpec extends JvmLanguageCompileSpec {
 
     void setModulePath(List<File> modulePath);
 
+    /**
+     * The partitions to compile the source files in, or {@code null} if all source files should be compiled at once.
+     */
+    @Nullable
+    SourcePartitions getSourcePartitions();
+
+    void setSourcePartitions(@Nullable SourcePartitions sourcePartitions);
+
     default boolean annotationProcessingConfigured() {
         return !getAnnotationProcessorPath().isEmpty() && !getCompileOptions().getCompilerArgs().contains("-proc:none");
     }
@@ -15,42 +15,81 @@
  */
 package org.gradle.api.internal.tasks.compile;
 
+import com.google.common.io.Files;
 import org.gradle.api.JavaVersion;
 import org.gradle.api.internal.tasks.compile.processing.AnnotationProcessorDeclaration;
 import org.gradle.api.internal.tasks.compile.reflect.GradleStandardJavaFileManager;
 import org.gradle.api.tasks.WorkResult;
 import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.classpath.DefaultClassPath;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.language.base.internal.compile.Compiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class JdkJavaCompiler implements Compiler<JavaCompileSpec>, Serializable {
     private static final Logger LOGGER = LoggerFactory.getLogger(JdkJavaCompiler.class);
     private final Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory;
+    private final ExecutorFactory executorFactory;
+    @Nullable
+    private final Writer compilerOutput;
 
     @Inject
-    public JdkJavaCompiler(Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory) {
+    public JdkJavaCompiler(Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory, ExecutorFactory executorFactory) {
+        this(javaHomeBasedJavaCompilerFactory, executorFactory, null);
+    }
+
+    /**
+     * @param compilerOutput where the compiler writes its output, or {@code null} for the standard error stream like {@link JavaCompiler#getTask}.
+     */
+    JdkJavaCompiler(Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory, ExecutorFactory executorFactory, @Nullable Writer compilerOutput) {
         this.javaHomeBasedJavaCompilerFactory = javaHomeBasedJavaCompilerFactory;
+        this.executorFactory = executorFactory;
+        this.compilerOutput = compilerOutput;
     }
 
     @Override
     public WorkResult execute(JavaCompileSpec spec) {
         LOGGER.info("Compiling with JDK Java compiler API.");
 
+        SourcePartitions sourcePartitions = spec.getSourcePartitions();
+        if (sourcePartitions != null) {
+            ApiCompilerResult result = compilePartitions(spec, sourcePartitions);
+            if (result != null) {
+                return result;
+            }
+            LOGGER.info("A source partition refers to classes of another partition, compiling all source files at once.");
+        }
+
         ApiCompilerResult result = new ApiCompilerResult();
-        JavaCompiler.CompilationTask task = createCompileTask(spec, result);
+        List<String> options = new JavaCompilerArgumentsBuilder(spec).build();
+        JavaCompiler.CompilationTask task = createCompileTask(spec, options, spec.getSourceFiles(), compilerOutput, null, result);
         boolean success = task.call();
         if (!success) {
             throw new CompilationFailedException();
@@ -58,16 +97,160 @@ public WorkResult execute(JavaCompileSpec spec) {
         return result;
     }
 
-    private JavaCompiler.CompilationTask createCompileTask(JavaCompileSpec spec, ApiCompilerResult result) {
-        List<String> options = new JavaCompilerArgumentsBuilder(spec).build();
+    /**
+     * Compiles the partitions of each stage in parallel, with the output of the earlier stages on the classpath.
+     * The partitions are compiled by the current thread and an executor with a thread for each further partition of the widest stage.
+     * The build reserves a worker lease for each partition of the widest stage before the sources are partitioned.
+     * The output of the compiler is written once all partitions have been compiled, or once a partition has failed.
+     *
+     * @return the merged result, or {@code null} if a partition could not be compiled because it refers to a class of another partition.
+     * @throws CompilationFailedException if a partition failed to compile for any other reason.
+     */
+    @Nullable
+    private ApiCompilerResult compilePartitions(JavaCompileSpec spec, SourcePartitions sourcePartitions) {
+        List<String> options = withDestinationDirOnClasspath(new JavaCompilerArgumentsBuilder(spec).build(), spec.getDestinationDir());
+        // The threads of the executor use the context classloader of the current thread, like the compiler invoked by it
+        ManagedExecutor executor = executorFactory.create("Java source partition compiler", Math.max(1, sourcePartitions.getMaxPartitionsPerStage() - 1));
+        try {
+            return compilePartitions(spec, sourcePartitions, options, executor);
+        } finally {
+            executor.stop();
+        }
+    }
+
+    @Nullable
+    private ApiCompilerResult compilePartitions(JavaCompileSpec spec, SourcePartitions sourcePartitions, List<String> options, ExecutorService executor) {
+        ApiCompilerResult result = new ApiCompilerResult();
+        StringBuilder output = new StringBuilder();
+        List<List<List<File>>> stages = sourcePartitions.getStages();
+        for (int stageIndex = 0; stageIndex < stages.size(); stageIndex++) {
+            List<List<File>> stage = stages.get(stageIndex);
+            List<Future<PartitionResult>> submittedPartitions = new ArrayList<>(stage.size() - 1);
+            for (List<File> partition : stage.subList(1, stage.size())) {
+                submittedPartitions.add(executor.submit(() -> compilePartition(spec, options, partition)));
+            }
+            List<PartitionResult> partitionResults = new ArrayList<>(stage.size());
+            partitionResults.add(compilePartition(spec, options, stage.get(0)));
+            for (Future<PartitionResult> submittedPartition : submittedPartitions) {
+                try {
+                    partitionResults.add(submittedPartition.get());
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                } catch (ExecutionException e) {
+                    throw UncheckedException.throwAsUncheckedException(e.getCause());
+                }
+            }
+            boolean refersToOtherPartitions = false;
+            for (int partitionIndex = 0; partitionIndex < partitionResults.size(); partitionIndex++) {
+                PartitionResult partitionResult = partitionResults.get(partitionIndex);
+                output.append(partitionResult.output);
+                if (!partitionResult.successful) {
+                    if (!partitionResult.onlyMissesClassesOf(classesOfOtherPartitions(stages, stageIndex, partitionIndex, partitionResults))) {
+                        writeCompilerOutput(output);
+                        throw new CompilationFailedException();
+                    }
+                    refersToOtherPartitions = true;
+                }
+                result.getSourceClassesMapping().putAll(partitionResult.result.getSourceClassesMapping());
+                result.getConstantsAnalysisResult().addAll(partitionResult.result.getConstantsAnalysisResult());
+            }
+            if (refersToOtherPartitions) {
+                return null;
+            }
+        }
+        writeCompilerOutput(output);
+        return result;
+    }
+
+    private PartitionResult compilePartition(JavaCompileSpec spec, List<String> options, List<File> sourceFiles) {
+        ApiCompilerResult result = new ApiCompilerResult();
+        StringWriter output = new StringWriter();
+        List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<>();
+        DiagnosticListener<JavaFileObject> diagnosticListener = diagnostic -> {
+            // The compiler does not write diagnostics to the output when there is a listener, so they are written like the compiler would
+            output.write(diagnostic.toString());
+            output.write(System.lineSeparator());
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic);
+            }
+        };
+        boolean successful = createCompileTask(spec, options, sourceFiles, output, diagnosticListener, result).call();
+        return new PartitionResult(result, output.toString(), successful, errors);
+    }
+
+    /**
+     * Collects the simple names of the classes in the other partitions of the stage and in the later stages, which a partition cannot see.
+     * The classes of a partition are known from its result when it has been compiled, and are derived from its source file names otherwise.
+     */
+    private static Set<String> classesOfOtherPartitions(List<List<List<File>>> stages, int stageIndex, int partitionIndex, List<PartitionResult> partitionResults) {
+        Set<String> classes = new HashSet<>();
+        for (int otherStageIndex = stageIndex; otherStageIndex < stages.size(); otherStageIndex++) {
+            List<List<File>> otherStage = stages.get(otherStageIndex);
+            for (int otherPartitionIndex = 0; otherPartitionIndex < otherStage.size(); otherPartitionIndex++) {
+                if (otherStageIndex == stageIndex && otherPartitionIndex == partitionIndex) {
+                    continue;
+                }
+                for (File sourceFile : otherStage.get(otherPartitionIndex)) {
+                    classes.add(Files.getNameWithoutExtension(sourceFile.getName()));
+                }
+                if (otherStageIndex == stageIndex) {
+                    for (Set<String> classNames : partitionResults.get(otherPartitionIndex).result.getSourceClassesMapping().values()) {
+                        for (String className : classNames) {
+                            classes.add(simpleName(className));
+                        }
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    private static String simpleName(String name) {
+        return name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1);
+    }
+
+    private void writeCompilerOutput(CharSequence output) {
+        if (output.length() == 0) {
+            return;
+        }
+        // Without an output, the compiler writes to the standard error stream, so the output of the partitions goes there as well
+        Writer writer = compilerOutput != null ? compilerOutput : new PrintWriter(System.err);
+        try {
+            writer.append(output);
+            writer.flush();
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static List<String> withDestinationDirOnClasspath(List<String> options, File destinationDir) {
+        List<String> result = new ArrayList<>(options);
+        int classpathIndex = result.indexOf("-classpath");
+        if (classpathIndex >= 0) {
+            result.set(classpathIndex + 1, destinationDir.getPath() + File.pathSeparator + result.get(classpathIndex + 1));
+        } else {
+            result.add("-classpath");
+            result.add(destinationDir.getPath());
+        }
+        return result;
+    }
+
+    private JavaCompiler.CompilationTask createCompileTask(
+        JavaCompileSpec spec,
+        List<String> options,
+        Iterable<File> sourceFiles,
+        @Nullable Writer output,
+        @Nullable DiagnosticListener<JavaFileObject> diagnosticListener,
+        ApiCompilerResult result
+    ) {
         JavaCompiler compiler = javaHomeBasedJavaCompilerFactory.create();
         MinimalJavaCompileOptions compileOptions = spec.getCompileOptions();
         Charset charset = compileOptions.getEncoding() != null ? Charset.forName(compileOptions.getEncoding()) : null;
         StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, charset);
-        Iterable<? extends JavaFileObject> compilationUnits = standardFileManager.getJavaFileObjectsFromFiles(spec.getSourceFiles());
+        Iterable<? extends JavaFileObject> compilationUnits = standardFileManager.getJavaFileObjectsFromFiles(sourceFiles);
         boolean hasEmptySourcepaths = JavaVersion.current().isJava9Compatible() && emptySourcepathIn(options);
         JavaFileManager fileManager = GradleStandardJavaFileManager.wrap(standardFileManager, DefaultClassPath.of(spec.getAnnotationProcessorPath()), hasEmptySourcepaths);
-        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, spec.getClasses(), compilationUnits);
+        JavaCompiler.CompilationTask task = compiler.getTask(output, fileManager, diagnosticListener, options, spec.getClasses(), compilationUnits);
         if (compiler instanceof IncrementalCompilationAwareJavaCompiler) {
             task = ((IncrementalCompilationAwareJavaCompiler) compiler).makeIncremental(task, result.getSourceClassesMapping(), result.getConstantsAnalysisResult(), new CompilationSourceDirs(spec));
         }
@@ -87,4 +270,62 @@ private static boolean emptySourcepathIn(List<String> options) {
         }
         return false;
     }
+
+    private static class PartitionResult {
+        private static final String MISSING_SYMBOL_CODE_PREFIX = "compiler.err.cant.resolve";
+        private static final String MISSING_PACKAGE_CODE = "compiler.err.doesnt.exist";
+
+        private final ApiCompilerResult result;
+        private final String output;
+        private final boolean successful;
+        private final List<Diagnostic<? extends JavaFileObject>> errors;
+
+        PartitionResult(ApiCompilerResult result, String output, boolean successful, List<Diagnostic<? extends JavaFileObject>> errors) {
+            this.result = result;
+            this.output = output;
+            this.successful = successful;
+            this.errors = errors;
+        }
+
+        /**
+         * Whether the partition only failed because it refers to the given classes, which the previous compilation did not record as its dependencies.
+         */
+        boolean onlyMissesClassesOf(Set<String> otherClasses) {
+            if (errors.isEmpty()) {
+                return false;
+            }
+            for (Diagnostic<? extends JavaFileObject> error : errors) {
+                String code = error.getCode();
+                if (code == null || !(code.startsWith(MISSING_SYMBOL_CODE_PREFIX) || code.equals(MISSING_PACKAGE_CODE))) {
+                    return false;
+                }
+                String missingName = missingName(error);
+                if (missingName == null || !otherClasses.contains(missingName)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Reads the simple name of the missing symbol from the source the error points at.
+         */
+        @Nullable
+        private static String missingName(Diagnostic<? extends JavaFileObject> error) {
+            long start = error.getStartPosition();
+            long end = error.getEndPosition();
+            if (error.getSource() == null || start == Diagnostic.NOPOS || end <= start) {
+                return null;
+            }
+            try {
+                CharSequence content = error.getSource().getCharContent(true);
+                if (end > content.length()) {
+                    return null;
+                }
+                return simpleName(content.subSequence((int) start, (int) end).toString().trim());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
 }
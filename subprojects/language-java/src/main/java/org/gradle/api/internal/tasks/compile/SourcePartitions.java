@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The source files of a compilation, split into partitions which can be compiled separately.
+ *
+ * The partitions are grouped into stages which have to be compiled in order.
+ * The partitions of a stage only depend on sources of earlier stages, so they can be compiled in parallel.
+ */
+public class SourcePartitions implements Serializable {
+    private final List<List<List<File>>> stages;
+
+    public SourcePartitions(List<List<List<File>>> stages) {
+        this.stages = stages;
+    }
+
+    public List<List<List<File>>> getStages() {
+        return stages;
+    }
+
+    public int getPartitionCount() {
+        return stages.stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * The number of partitions of the widest stage, which is the number of partitions compiled at the same time.
+     */
+    public int getMaxPartitionsPerStage() {
+        return stages.stream().mapToInt(List::size).max().orElse(0);
+    }
+}
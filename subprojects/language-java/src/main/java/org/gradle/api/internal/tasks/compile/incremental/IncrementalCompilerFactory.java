@@ -24,32 +24,101 @@
 import org.gradle.api.internal.tasks.compile.incremental.recomp.CurrentCompilationAccess;
 import org.gradle.api.internal.tasks.compile.incremental.recomp.PreviousCompilationAccess;
 import org.gradle.api.internal.tasks.compile.incremental.recomp.RecompilationSpecProvider;
+import org.gradle.api.internal.tasks.compile.SourcePartitions;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLock;
+import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.work.WorkerLeaseRegistry;
+import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.language.base.internal.compile.Compiler;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class IncrementalCompilerFactory {
+    /**
+     * Compiles independent partitions of the sources in parallel when all sources need to be recompiled.
+     */
+    public static final String PARALLEL_PARTITIONS_PROPERTY = "org.gradle.internal.java.compile.parallel-partitions";
+    private static final int MIN_SOURCES_PER_PARTITION = 50;
+
     private final BuildOperationExecutor buildOperationExecutor;
     private final StringInterner interner;
     private final ClassSetAnalyzer classSetAnalyzer;
+    private final WorkerLeaseService workerLeaseService;
+    private final ResourceLockCoordinationService coordinationService;
 
-    public IncrementalCompilerFactory(BuildOperationExecutor buildOperationExecutor, StringInterner interner, ClassSetAnalyzer classSetAnalyzer) {
+    public IncrementalCompilerFactory(
+        BuildOperationExecutor buildOperationExecutor,
+        StringInterner interner,
+        ClassSetAnalyzer classSetAnalyzer,
+        WorkerLeaseService workerLeaseService,
+        ResourceLockCoordinationService coordinationService
+    ) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.interner = interner;
         this.classSetAnalyzer = classSetAnalyzer;
+        this.workerLeaseService = workerLeaseService;
+        this.coordinationService = coordinationService;
     }
 
     public <T extends JavaCompileSpec> Compiler<T> makeIncremental(CleaningJavaCompiler<T> cleaningJavaCompiler, FileTree sources, RecompilationSpecProvider recompilationSpecProvider) {
-        Compiler<T> rebuildAllCompiler = createRebuildAllCompiler(cleaningJavaCompiler, sources);
         CurrentCompilationAccess currentCompilationAccess = new CurrentCompilationAccess(classSetAnalyzer, buildOperationExecutor);
         PreviousCompilationAccess previousCompilationAccess = new PreviousCompilationAccess(interner);
+        Compiler<T> rebuildAllCompiler = createRebuildAllCompiler(cleaningJavaCompiler, sources, previousCompilationAccess);
         Compiler<T> compiler = new SelectiveCompiler<>(cleaningJavaCompiler, rebuildAllCompiler, recompilationSpecProvider, currentCompilationAccess, previousCompilationAccess);
         return new IncrementalResultStoringCompiler<>(compiler, currentCompilationAccess, previousCompilationAccess);
     }
 
-    private <T extends JavaCompileSpec> Compiler<T> createRebuildAllCompiler(CleaningJavaCompiler<T> cleaningJavaCompiler, FileTree sourceFiles) {
+    private <T extends JavaCompileSpec> Compiler<T> createRebuildAllCompiler(CleaningJavaCompiler<T> cleaningJavaCompiler, FileTree sourceFiles, PreviousCompilationAccess previousCompilationAccess) {
+        SourcePartitioner sourcePartitioner = Boolean.getBoolean(PARALLEL_PARTITIONS_PROPERTY)
+            ? new SourcePartitioner(previousCompilationAccess, MIN_SOURCES_PER_PARTITION)
+            : null;
         return spec -> {
             spec.setSourceFiles(sourceFiles);
-            return cleaningJavaCompiler.execute(spec);
+            if (sourcePartitioner == null) {
+                return cleaningJavaCompiler.execute(spec);
+            }
+            List<ResourceLock> workerLeases = reserveWorkerLeases(workerLeaseService.getMaxWorkerCount());
+            try {
+                SourcePartitions sourcePartitions = sourcePartitioner.partition(spec, workerLeases.size());
+                int maxPartitionsPerStage = sourcePartitions == null ? 0 : sourcePartitions.getMaxPartitionsPerStage();
+                releaseWorkerLeases(workerLeases.subList(maxPartitionsPerStage, workerLeases.size()));
+                spec.setSourcePartitions(sourcePartitions);
+                return cleaningJavaCompiler.execute(spec);
+            } finally {
+                releaseWorkerLeases(workerLeases);
+            }
         };
     }
+
+    /**
+     * Reserves the worker leases which are available right now, so that the compilations running in parallel together use no more threads than the max worker count.
+     * The first lease borrows the lease of the current thread, which compiles one of the partitions itself.
+     * A busy build compiles the sources in fewer partitions instead of waiting for leases.
+     */
+    private List<ResourceLock> reserveWorkerLeases(int maxLeases) {
+        WorkerLeaseRegistry.WorkerLease currentLease = workerLeaseService.getCurrentWorkerLease();
+        List<ResourceLock> leases = new ArrayList<>(maxLeases);
+        coordinationService.withStateLock(resourceLockState -> {
+            while (leases.size() < maxLeases) {
+                WorkerLeaseRegistry.WorkerLease lease = currentLease.createChild();
+                if (!lease.tryLock()) {
+                    break;
+                }
+                leases.add(lease);
+            }
+            return ResourceLockState.Disposition.FINISHED;
+        });
+        return leases;
+    }
+
+    private void releaseWorkerLeases(List<ResourceLock> leases) {
+        if (!leases.isEmpty()) {
+            coordinationService.withStateLock(DefaultResourceLockCoordinationService.unlock(new ArrayList<>(leases)));
+            leases.clear();
+        }
+    }
 }
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.internal.tasks.compile.CompilationSourceDirs;
+import org.gradle.api.internal.tasks.compile.JavaCompileSpec;
+import org.gradle.api.internal.tasks.compile.SourcePartitions;
+import org.gradle.api.internal.tasks.compile.incremental.compilerapi.CompilerApiData;
+import org.gradle.api.internal.tasks.compile.incremental.compilerapi.deps.DependentsSet;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import org.gradle.api.internal.tasks.compile.incremental.recomp.PreviousCompilationAccess;
+import org.gradle.api.internal.tasks.compile.incremental.recomp.PreviousCompilationData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits the sources of a full recompilation into partitions which can be compiled in parallel, based on the class dependencies recorded by the previous compilation.
+ *
+ * The source files are grouped into strongly connected components of their dependency graph. Components which only depend on components of earlier stages
+ * are distributed over the partitions of a stage. When the previous compilation does not tell how a source file relates to the others,
+ * all sources are compiled at once.
+ */
+class SourcePartitioner {
+    private static final Logger LOG = LoggerFactory.getLogger(SourcePartitioner.class);
+
+    /**
+     * Each stage is compiled by separate invocations of the compiler, which each have to load the classpath again.
+     */
+    private static final int MAX_STAGES = 16;
+
+    private final PreviousCompilationAccess previousCompilationAccess;
+    private final int minSourcesPerPartition;
+
+    SourcePartitioner(PreviousCompilationAccess previousCompilationAccess, int minSourcesPerPartition) {
+        this.previousCompilationAccess = previousCompilationAccess;
+        this.minSourcesPerPartition = minSourcesPerPartition;
+    }
+
+    /**
+     * @param maxPartitionsPerStage the number of partitions which may be compiled at the same time, usually the number of worker leases reserved for the compilation.
+     */
+    @Nullable
+    public SourcePartitions partition(JavaCompileSpec spec, int maxPartitionsPerStage) {
+        if (maxPartitionsPerStage < 2) {
+            return compileAtOnce("no further workers are available");
+        }
+        File previousCompilationDataFile = spec.getCompileOptions().getPreviousCompilationDataFile();
+        if (!spec.getCompileOptions().supportsConstantAnalysis() || previousCompilationDataFile == null || !previousCompilationDataFile.exists()) {
+            return compileAtOnce("no previous compilation result is available");
+        }
+        if (spec.annotationProcessingConfigured()) {
+            return compileAtOnce("annotation processors are configured");
+        }
+        if (!spec.getModulePath().isEmpty()) {
+            return compileAtOnce("a module path is configured");
+        }
+        List<File> sourcepath = spec.getCompileOptions().getSourcepath();
+        if (sourcepath != null && !sourcepath.isEmpty()) {
+            return compileAtOnce("a source path is configured");
+        }
+
+        PreviousCompilationData previousCompilationData = previousCompilationAccess.readPreviousCompilationData(previousCompilationDataFile);
+        CompilerApiData compilerApiData = previousCompilationData.getCompilerApiData();
+        if (!compilerApiData.isAvailable() || !compilerApiData.isSupportsConstantsMapping()) {
+            return compileAtOnce("the previous compilation did not record the dependencies between the sources");
+        }
+
+        CompilationSourceDirs sourceDirs = new CompilationSourceDirs(spec);
+        List<File> sourceFiles = ImmutableList.copyOf(spec.getSourceFiles());
+        List<Set<String>> classesBySource = new ArrayList<>(sourceFiles.size());
+        Map<String, Integer> sourceByClass = new HashMap<>();
+        for (File sourceFile : sourceFiles) {
+            Set<String> classes = sourceDirs.relativize(sourceFile)
+                .map(compilerApiData.getSourceToClassMapping()::get)
+                .orElse(null);
+            if (classes == null || classes.isEmpty()) {
+                return compileAtOnce(sourceFile + " was not part of the previous compilation");
+            }
+            for (String className : classes) {
+                sourceByClass.put(className, classesBySource.size());
+            }
+            classesBySource.add(classes);
+        }
+
+        ClassSetAnalysisData outputAnalysis = previousCompilationData.getOutputSnapshot();
+        List<Set<Integer>> dependencies = new ArrayList<>(sourceFiles.size());
+        for (int i = 0; i < sourceFiles.size(); i++) {
+            dependencies.add(new HashSet<>());
+        }
+        for (int source = 0; source < sourceFiles.size(); source++) {
+            for (String className : classesBySource.get(source)) {
+                for (DependentsSet dependents : Arrays.asList(outputAnalysis.getDependents(className), compilerApiData.getConstantDependentsForClass(className))) {
+                    if (dependents.isDependencyToAll()) {
+                        return compileAtOnce(className + " has to be compiled together with all other sources");
+                    }
+                    for (String dependentClass : dependents.getAllDependentClasses()) {
+                        Integer dependentSource = sourceByClass.get(dependentClass);
+                        if (dependentSource != null && dependentSource != source) {
+                            dependencies.get(dependentSource).add(source);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<List<List<File>>> stages = new ArrayList<>();
+        for (List<List<Integer>> componentsOfStage : groupIntoStages(dependencies)) {
+            List<List<File>> partitions = distribute(componentsOfStage, sourceFiles, maxPartitionsPerStage);
+            int lastStage = stages.size() - 1;
+            if (partitions.size() == 1 && lastStage >= 0 && stages.get(lastStage).size() == 1) {
+                // Consecutive stages with a single partition are compiled together
+                stages.get(lastStage).get(0).addAll(partitions.get(0));
+            } else {
+                stages.add(partitions);
+            }
+        }
+        if (stages.stream().allMatch(partitions -> partitions.size() == 1)) {
+            return compileAtOnce("the sources cannot be split into independent partitions");
+        }
+        if (stages.size() > MAX_STAGES) {
+            return compileAtOnce("the dependencies between the sources are too deep to split them into partitions");
+        }
+
+        SourcePartitions sourcePartitions = new SourcePartitions(stages);
+        LOG.info("Compiling {} source files in {} partitions over {} stages.", sourceFiles.size(), sourcePartitions.getPartitionCount(), stages.size());
+        return sourcePartitions;
+    }
+
+    @Nullable
+    private static SourcePartitions compileAtOnce(String reason) {
+        LOG.info("Compiling all source files at once because {}.", reason);
+        return null;
+    }
+
+    /**
+     * Groups the strongly connected components of the dependency graph into stages.
+     * A component is placed in the stage after the latest stage of the components it depends on.
+     */
+    private static List<List<List<Integer>>> groupIntoStages(List<Set<Integer>> dependencies) {
+        int[] componentOfSource = new int[dependencies.size()];
+        List<Integer> stageOfComponent = new ArrayList<>();
+        List<List<List<Integer>>> stages = new ArrayList<>();
+        // Components are found after the components they depend on
+        for (List<Integer> component : stronglyConnectedComponents(dependencies)) {
+            int componentIndex = stageOfComponent.size();
+            int stage = 0;
+            for (int source : component) {
+                componentOfSource[source] = componentIndex;
+            }
+            for (int source : component) {
+                for (int dependency : dependencies.get(source)) {
+                    int dependencyComponent = componentOfSource[dependency];
+                    if (dependencyComponent != componentIndex) {
+                        stage = Math.max(stage, stageOfComponent.get(dependencyComponent) + 1);
+                    }
+                }
+            }
+            stageOfComponent.add(stage);
+            while (stages.size() <= stage) {
+                stages.add(new ArrayList<>());
+            }
+            stages.get(stage).add(component);
+        }
+        return stages;
+    }
+
+    /**
+     * Finds the strongly connected components using Tarjan's algorithm, without recursion to cope with long dependency chains.
+     */
+    private static List<List<Integer>> stronglyConnectedComponents(List<Set<Integer>> dependencies) {
+        int sourceCount = dependencies.size();
+        int[] index = new int[sourceCount];
+        int[] lowLink = new int[sourceCount];
+        boolean[] onStack = new boolean[sourceCount];
+        Arrays.fill(index, -1);
+        List<Iterator<Integer>> remainingDependencies = new ArrayList<>(sourceCount);
+        for (Set<Integer> sourceDependencies : dependencies) {
+            remainingDependencies.add(sourceDependencies.iterator());
+        }
+        Deque<Integer> stack = new ArrayDeque<>();
+        Deque<Integer> path = new ArrayDeque<>();
+        List<List<Integer>> components = new ArrayList<>();
+        int nextIndex = 0;
+
+        for (int root = 0; root < sourceCount; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            index[root] = lowLink[root] = nextIndex++;
+            stack.push(root);
+            onStack[root] = true;
+            path.push(root);
+            while (!path.isEmpty()) {
+                int source = path.peek();
+                Iterator<Integer> iterator = remainingDependencies.get(source);
+                if (iterator.hasNext()) {
+                    int dependency = iterator.next();
+                    if (index[dependency] < 0) {
+                        index[dependency] = lowLink[dependency] = nextIndex++;
+                        stack.push(dependency);
+                        onStack[dependency] = true;
+                        path.push(dependency);
+                    } else if (onStack[dependency]) {
+                        lowLink[source] = Math.min(lowLink[source], index[dependency]);
+                    }
+                    continue;
+                }
+                path.pop();
+                if (!path.isEmpty()) {
+                    int parent = path.peek();
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[source]);
+                }
+                if (lowLink[source] == index[source]) {
+                    List<Integer> component = new ArrayList<>();
+                    int member;
+                    do {
+                        member = stack.pop();
+                        onStack[member] = false;
+                        component.add(member);
+                    } while (member != source);
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Distributes the components of a stage over partitions of similar size, largest components first.
+     */
+    private List<List<File>> distribute(List<List<Integer>> components, List<File> sourceFiles, int maxPartitionsPerStage) {
+        int sourceCount = components.stream().mapToInt(List::size).sum();
+        int partitionCount = Math.max(1, Math.min(Math.min(maxPartitionsPerStage, components.size()), sourceCount / minSourcesPerPartition));
+        List<List<File>> partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        components.sort(Comparator.comparingInt((List<Integer> component) -> component.size()).reversed());
+        for (List<Integer> component : components) {
+            List<File> smallestPartition = partitions.stream().min(Comparator.comparingInt(List::size)).get();
+            for (int source : component) {
+                smallestPartition.add(sourceFiles.get(source));
+            }
+        }
+        return partitions;
+    }
+}
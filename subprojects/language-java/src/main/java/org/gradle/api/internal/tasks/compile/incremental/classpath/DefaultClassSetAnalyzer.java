@@ -16,17 +16,29 @@
 package org.gradle.api.internal.tasks.compile.incremental.classpath;
 
 import com.google.common.collect.ImmutableSet;
+import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.file.DefaultFileTreeElement;
 import org.gradle.api.internal.file.FileOperations;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
 import org.gradle.internal.IoActions;
+import org.gradle.internal.RelativePathSupplier;
+import org.gradle.internal.file.Chmod;
+import org.gradle.internal.file.Stat;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.StreamHasher;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.RelativePathTracker;
+import org.gradle.internal.snapshot.RelativePathTrackingFileSystemSnapshotHierarchyVisitor;
+import org.gradle.internal.snapshot.SnapshotVisitResult;
+import org.gradle.internal.vfs.FileSystemAccess;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,27 +54,36 @@ public class DefaultClassSetAnalyzer implements ClassSetAnalyzer {
     private final StreamHasher hasher;
     private final ClassDependenciesAnalyzer analyzer;
     private final FileOperations fileOperations;
+    private final FileSystemAccess fileSystemAccess;
+    private final Chmod chmod;
+    private final Stat stat;
 
-    public DefaultClassSetAnalyzer(FileHasher fileHasher, StreamHasher streamHasher, ClassDependenciesAnalyzer analyzer, FileOperations fileOperations) {
+    public DefaultClassSetAnalyzer(FileHasher fileHasher, StreamHasher streamHasher, ClassDependenciesAnalyzer analyzer, FileOperations fileOperations, FileSystemAccess fileSystemAccess, Chmod chmod, Stat stat) {
         this.fileHasher = fileHasher;
         this.hasher = streamHasher;
         this.analyzer = analyzer;
         this.fileOperations = fileOperations;
+        this.fileSystemAccess = fileSystemAccess;
+        this.chmod = chmod;
+        this.stat = stat;
     }
 
     public ClassSetAnalysisData analyzeClasspathEntry(File classpathEntry) {
-        return analyze(classpathEntry, true);
+        return analyze(classpathEntry, true, true);
     }
 
+    /**
+     * The output folder is not read from the virtual file system, as it is still being written to by the compile task.
+     */
     @Override
     public ClassSetAnalysisData analyzeOutputFolder(File outputFolder) {
-        return analyze(outputFolder, false);
+        return analyze(outputFolder, false, false);
     }
 
-    private ClassSetAnalysisData analyze(File classSet, boolean abiOnly) {
+    private ClassSetAnalysisData analyze(File classSet, boolean abiOnly, boolean useSnapshot) {
         final ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator();
         try {
-            visit(classSet, accumulator, abiOnly);
+            visit(classSet, accumulator, abiOnly, useSnapshot);
         } catch (Exception e) {
             accumulator.fullRebuildNeeded(classSet + " could not be analyzed for incremental compilation. See the debug log for more details");
             if (LOGGER.isDebugEnabled()) {
@@ -73,12 +94,39 @@ private ClassSetAnalysisData analyze(File classSet, boolean abiOnly) {
         return accumulator.getAnalysis();
     }
 
-    private void visit(File classpathEntry, ClassDependentsAccumulator accumulator, boolean abiOnly) {
+    private void visit(File classpathEntry, ClassDependentsAccumulator accumulator, boolean abiOnly, boolean useSnapshot) {
         if (hasExtension(classpathEntry, ".jar")) {
             fileOperations.zipTree(classpathEntry).visit(new JarEntryVisitor(accumulator, abiOnly));
         }
         if (classpathEntry.isDirectory()) {
-            fileOperations.fileTree(classpathEntry).visit(new DirectoryEntryVisitor(accumulator, abiOnly));
+            if (useSnapshot) {
+                // The snapshot already knows the content hash of every class file, so only classes
+                // without a cached analysis are read again.
+                fileSystemAccess.read(classpathEntry.getAbsolutePath(), snapshot ->
+                    snapshot.accept(new RelativePathTracker(), new DirectorySnapshotVisitor(accumulator, abiOnly)));
+            } else {
+                fileOperations.fileTree(classpathEntry).visit(new DirectoryEntryVisitor(accumulator, abiOnly));
+            }
+        }
+    }
+
+    private void addClass(FileTreeElement classFile, HashCode classFileHash, ClassDependentsAccumulator accumulator, boolean abiOnly) {
+        try {
+            ClassAnalysis analysis = maybeStripToAbi(analyzer.getClassAnalysis(classFileHash, classFile), abiOnly);
+            accumulator.addClass(analysis, classFileHash);
+        } catch (Exception e) {
+            accumulator.fullRebuildNeeded(classFile.getName() + " could not be analyzed for incremental compilation. See the debug log for more details");
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Could not analyze " + classFile.getName() + " for incremental compilation", e);
+            }
+        }
+    }
+
+    private static ClassAnalysis maybeStripToAbi(ClassAnalysis analysis, boolean abiOnly) {
+        if (abiOnly) {
+            return new ClassAnalysis(analysis.getClassName(), ImmutableSet.of(), analysis.getAccessibleClassDependencies(), analysis.getDependencyToAllReason(), analysis.getConstants());
+        } else {
+            return analysis;
         }
     }
 
@@ -101,25 +149,7 @@ public void visitFile(FileVisitDetails fileDetails) {
                 return;
             }
 
-            HashCode classFileHash = getHashCode(fileDetails);
-
-            try {
-                ClassAnalysis analysis = maybeStripToAbi(analyzer.getClassAnalysis(classFileHash, fileDetails));
-                accumulator.addClass(analysis, classFileHash);
-            } catch (Exception e) {
-                accumulator.fullRebuildNeeded(fileDetails.getName() + " could not be analyzed for incremental compilation. See the debug log for more details");
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Could not analyze " + fileDetails.getName() + " for incremental compilation", e);
-                }
-            }
-        }
-
-        private ClassAnalysis maybeStripToAbi(ClassAnalysis analysis) {
-            if (abiOnly) {
-                return new ClassAnalysis(analysis.getClassName(), ImmutableSet.of(), analysis.getAccessibleClassDependencies(), analysis.getDependencyToAllReason(), analysis.getConstants());
-            } else {
-                return analysis;
-            }
+            addClass(fileDetails, getHashCode(fileDetails), accumulator, abiOnly);
         }
 
         protected abstract HashCode getHashCode(FileVisitDetails fileDetails);
@@ -154,4 +184,54 @@ protected HashCode getHashCode(FileVisitDetails fileDetails) {
         }
     }
 
+    private class DirectorySnapshotVisitor implements RelativePathTrackingFileSystemSnapshotHierarchyVisitor {
+        private final ClassDependentsAccumulator accumulator;
+        private final boolean abiOnly;
+
+        public DirectorySnapshotVisitor(ClassDependentsAccumulator accumulator, boolean abiOnly) {
+            this.accumulator = accumulator;
+            this.abiOnly = abiOnly;
+        }
+
+        @Override
+        public SnapshotVisitResult visitEntry(FileSystemLocationSnapshot snapshot, RelativePathSupplier relativePath) {
+            if (!relativePath.isRoot() && snapshot.getName().endsWith(".class")) {
+                snapshot.accept(new FileSystemLocationSnapshot.FileSystemLocationSnapshotVisitor() {
+                    @Override
+                    public void visitRegularFile(RegularFileSnapshot fileSnapshot) {
+                        RelativePath classFilePath = new RelativePath(true, relativePath.getSegments().toArray(new String[0]));
+                        addClass(new SnapshotBackedFileTreeElement(fileSnapshot, classFilePath, chmod, stat), fileSnapshot.getHash(), accumulator, abiOnly);
+                    }
+                });
+            }
+            return SnapshotVisitResult.CONTINUE;
+        }
+    }
+
+    /**
+     * A class file of a classpath directory, which takes its size and timestamp from its snapshot.
+     */
+    private static class SnapshotBackedFileTreeElement extends DefaultFileTreeElement {
+        private final RegularFileSnapshot snapshot;
+
+        public SnapshotBackedFileTreeElement(RegularFileSnapshot snapshot, RelativePath relativePath, Chmod chmod, Stat stat) {
+            super(new File(snapshot.getAbsolutePath()), relativePath, chmod, stat);
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public long getLastModified() {
+            return snapshot.getMetadata().getLastModified();
+        }
+
+        @Override
+        public long getSize() {
+            return snapshot.getMetadata().getLength();
+        }
+
+        @Override
+        public String getName() {
+            return snapshot.getName();
+        }
+    }
 }
@@ -43,4 +43,11 @@ public void addPrivateDependent(String constantOrigin, String constantDependent)
         }
     }
 
+    public void addAll(ConstantsAnalysisResult other) {
+        other.constantToDependentsMappingBuilder.build().getConstantDependents().forEach((constantOrigin, dependents) -> {
+            constantToDependentsMappingBuilder.addAccessibleDependents(constantOrigin, dependents.getAccessibleDependentClasses());
+            constantToDependentsMappingBuilder.addPrivateDependents(constantOrigin, dependents.getPrivateDependentClasses());
+        });
+    }
+
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.api.tasks.compile.CompileOptions
+import org.gradle.internal.Factory
+import org.gradle.internal.classloader.ClasspathUtil
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.TestUtil
+import org.junit.Rule
+import spock.lang.Specification
+
+import javax.tools.JavaCompiler
+import java.util.concurrent.atomic.AtomicInteger
+
+class JdkJavaCompilerTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider(getClass())
+
+    def compilerPlugin = ClasspathUtil.getClasspathForResource(getClass().classLoader, "org/gradle/internal/compiler/java/IncrementalCompileTask.class")
+    def compilerFactory = new JavaHomeBasedJavaCompilerFactory([compilerPlugin])
+    def compilerInvocations = new AtomicInteger()
+    def compilerOutput = new StringWriter()
+    def compiler = new JdkJavaCompiler({ compilerInvocations.incrementAndGet(); compilerFactory.create() } as Factory<JavaCompiler>, new DefaultExecutorFactory(), compilerOutput)
+    def sourceDir = tempDir.createDir("src")
+    def base = source("Base", "public class Base { public static final int VALUE = 1; }")
+    def a = source("A", "public class A extends Base { public static final int A_VALUE = Base.VALUE + 1; }")
+    def b = source("B", "public class B { private int b = Base.VALUE; static class Inner { } }")
+    def c = source("C", "public class C { public Base base; public int c() { return A.A_VALUE; } }")
+
+    def "compiles partitions to the same classes and mappings as a single invocation"() {
+        def singleSpec = spec("single")
+        def partitionedSpec = spec("partitioned")
+        partitionedSpec.sourcePartitions = new SourcePartitions([[[base]], [[a], [b]], [[c]]])
+
+        when:
+        ApiCompilerResult singleResult = compiler.execute(singleSpec)
+        ApiCompilerResult partitionedResult = compiler.execute(partitionedSpec)
+
+        then:
+        classFiles(partitionedSpec) == classFiles(singleSpec)
+        partitionedResult.sourceClassesMapping == singleResult.sourceClassesMapping
+        partitionedResult.sourceClassesMapping["B.java"] == ["B", "B\$Inner"] as Set
+        constantDependents(partitionedResult) == constantDependents(singleResult)
+        constantDependents(partitionedResult)["Base"].flatten().containsAll(["A", "B"])
+        constantDependents(partitionedResult)["A"].flatten().contains("C")
+    }
+
+    def "compiles all sources at once when a partition refers to classes of a later stage"() {
+        def singleSpec = spec("single")
+        def partitionedSpec = spec("partitioned")
+        // C depends on A and Base, which are compiled in a later stage
+        partitionedSpec.sourcePartitions = new SourcePartitions([[[c], [b]], [[base, a]]])
+
+        when:
+        ApiCompilerResult singleResult = compiler.execute(singleSpec)
+        ApiCompilerResult partitionedResult = compiler.execute(partitionedSpec)
+
+        then:
+        classFiles(partitionedSpec) == classFiles(singleSpec)
+        partitionedResult.sourceClassesMapping == singleResult.sourceClassesMapping
+        constantDependents(partitionedResult) == constantDependents(singleResult)
+        // The single compilation, the two partitions of the first stage and the fallback
+        compilerInvocations.get() == 4
+        compilerOutput.toString().isEmpty()
+    }
+
+    def "compiles all sources at once when a partition refers to classes of another partition of the same stage"() {
+        def partitionedSpec = spec("partitioned", [base, a, c])
+        // C depends on A, which is compiled at the same time
+        partitionedSpec.sourcePartitions = new SourcePartitions([[[base]], [[a], [c]]])
+
+        when:
+        ApiCompilerResult result = compiler.execute(partitionedSpec)
+
+        then:
+        result.sourceClassesMapping.keySet() == ["Base.java", "A.java", "C.java"] as Set
+        compilerInvocations.get() == 4
+    }
+
+    def "fails without compiling all sources at once when a partition has an error of its own"() {
+        def broken = source("Broken", "public class Broken extends Base { int broken = \"not a number\"; }")
+        def partitionedSpec = spec("partitioned", [base, a, b, c, broken])
+        partitionedSpec.sourcePartitions = new SourcePartitions([[[base]], [[a, b], [c, broken]]])
+
+        when:
+        compiler.execute(partitionedSpec)
+
+        then:
+        thrown(CompilationFailedException)
+        compilerInvocations.get() == 3
+        compilerOutput.toString().contains("Broken.java")
+        compilerOutput.toString().contains("error")
+    }
+
+    def "fails when a partition refers to a class which no partition declares"() {
+        def broken = source("Broken", "public class Broken extends Missing { }")
+        def partitionedSpec = spec("partitioned", [base, a, b, c, broken])
+        partitionedSpec.sourcePartitions = new SourcePartitions([[[base]], [[a, b], [c, broken]]])
+
+        when:
+        compiler.execute(partitionedSpec)
+
+        then:
+        thrown(CompilationFailedException)
+        compilerInvocations.get() == 3
+        compilerOutput.toString().contains("Missing")
+    }
+
+    def "writes the warnings of the partitions to the compiler output"() {
+        def raw = source("Raw", "public class Raw extends Base { java.util.List<?> list = new java.util.ArrayList(); }")
+        def partitionedSpec = spec("partitioned", [base, a, b, raw])
+        partitionedSpec.compileOptions.compilerArgs = ["-Xlint:rawtypes"]
+        partitionedSpec.sourcePartitions = new SourcePartitions([[[base]], [[a, b], [raw]]])
+
+        when:
+        compiler.execute(partitionedSpec)
+
+        then:
+        compilerInvocations.get() == 3
+        compilerOutput.toString().contains("Raw.java")
+        compilerOutput.toString().contains("[rawtypes]")
+    }
+
+    private TestFile source(String className, String text) {
+        def file = sourceDir.file("${className}.java")
+        file.text = text
+        file
+    }
+
+    private DefaultJavaCompileSpec spec(String name, List<File> sourceFiles = [base, a, b, c]) {
+        def spec = new DefaultJavaCompileSpec()
+        spec.tempDir = tempDir.file("${name}-tmp")
+        spec.destinationDir = tempDir.createDir("${name}-classes")
+        spec.compileOptions = new CompileOptions(TestUtil.objectFactory())
+        spec.compileClasspath = []
+        spec.annotationProcessorPath = []
+        spec.effectiveAnnotationProcessors = [] as Set
+        spec.classes = [] as Set
+        spec.sourcesRoots = [sourceDir]
+        spec.sourceFiles = sourceFiles
+        spec
+    }
+
+    private static Map<String, List<Byte>> classFiles(JavaCompileSpec spec) {
+        def destinationDir = new TestFile(spec.destinationDir)
+        destinationDir.allDescendants().collectEntries { [(it): destinationDir.file(it).bytes as List] }
+    }
+
+    private static Map<String, List<Set<String>>> constantDependents(ApiCompilerResult result) {
+        result.constantsAnalysisResult.constantToDependentsMapping.get().constantDependents.collectEntries { origin, dependents ->
+            [(origin): [dependents.privateDependentClasses, dependents.accessibleDependentClasses]]
+        }
+    }
+}
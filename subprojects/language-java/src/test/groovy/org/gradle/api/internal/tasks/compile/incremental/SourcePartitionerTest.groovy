@@ -0,0 +1,180 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental
+
+import org.gradle.api.internal.tasks.compile.JavaCompileSpec
+import org.gradle.api.internal.tasks.compile.MinimalJavaCompileOptions
+import org.gradle.api.internal.tasks.compile.incremental.compilerapi.CompilerApiData
+import org.gradle.api.internal.tasks.compile.incremental.compilerapi.constants.ConstantToDependentsMapping
+import org.gradle.api.internal.tasks.compile.incremental.compilerapi.deps.DependentsSet
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData
+import org.gradle.api.internal.tasks.compile.incremental.processing.AnnotationProcessingData
+import org.gradle.api.internal.tasks.compile.incremental.recomp.PreviousCompilationAccess
+import org.gradle.api.internal.tasks.compile.incremental.recomp.PreviousCompilationData
+import org.gradle.internal.hash.HashCode
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.internal.tasks.compile.incremental.compilerapi.deps.DependentsSet.dependentClasses
+
+class SourcePartitionerTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider(getClass())
+
+    def previousCompilationAccess = Mock(PreviousCompilationAccess)
+    def partitioner = new SourcePartitioner(previousCompilationAccess, 1)
+    def sourceDir = tempDir.file("src")
+    def previousCompilationDataFile = tempDir.createFile("previous-compilation-data.bin")
+    def sourcepath = null
+    def compileOptions = Stub(MinimalJavaCompileOptions) {
+        supportsConstantAnalysis() >> true
+        getPreviousCompilationDataFile() >> previousCompilationDataFile
+        getSourcepath() >> { sourcepath }
+    }
+    def annotationProcessingConfigured = false
+    def sources = ["Base", "A", "B", "C", "D", "E"]
+    def spec = Stub(JavaCompileSpec) {
+        getCompileOptions() >> compileOptions
+        getSourceRoots() >> [sourceDir]
+        getSourceFiles() >> { sources.collect { source(it) } }
+        annotationProcessingConfigured() >> { annotationProcessingConfigured }
+    }
+
+    def "groups independent sources into partitions of dependency ordered stages"() {
+        when:
+        def partitions = partitioner.partition(spec, 2)
+
+        then:
+        1 * previousCompilationAccess.readPreviousCompilationData(previousCompilationDataFile) >> previousCompilation(
+            Base: dependentClasses([] as Set, ["A", "B", "C", "D"] as Set),
+            C: dependentClasses(["D"] as Set, [] as Set),
+            D: dependentClasses([] as Set, ["C"] as Set)
+        )
+        partitions.stages.collect { stage -> stage.collect { partition -> partition.collect { it.name } as Set } as Set } == [
+            [["Base.java"] as Set] as Set,
+            [["C.java", "D.java"] as Set, ["A.java", "B.java"] as Set] as Set,
+            [["E.java"] as Set] as Set
+        ]
+        partitions.partitionCount == 4
+    }
+
+    def "folds consecutive stages with a single partition"() {
+        sources = ["Base", "A", "B", "E", "F"]
+
+        when:
+        def partitions = partitioner.partition(spec, 2)
+
+        then:
+        1 * previousCompilationAccess.readPreviousCompilationData(previousCompilationDataFile) >> previousCompilation(
+            Base: dependentClasses([] as Set, ["A"] as Set),
+            A: dependentClasses([] as Set, ["B", "E"] as Set),
+            B: dependentClasses([] as Set, ["F"] as Set)
+        )
+        partitions.stages.collect { stage -> stage.collect { partition -> partition.collect { it.name } as Set } as Set } == [
+            [["Base.java", "A.java"] as Set] as Set,
+            [["B.java"] as Set, ["E.java"] as Set] as Set,
+            [["F.java"] as Set] as Set
+        ]
+    }
+
+    def "compiles all sources at once when the sources cannot be split"() {
+        sources = ["Base", "A"]
+
+        when:
+        def partitions = partitioner.partition(spec, 2)
+
+        then:
+        1 * previousCompilationAccess.readPreviousCompilationData(previousCompilationDataFile) >> previousCompilation(
+            Base: dependentClasses([] as Set, ["A"] as Set)
+        )
+        partitions == null
+    }
+
+    def "compiles all sources at once when a source was not part of the previous compilation"() {
+        sources = ["Base", "A", "B", "New"]
+
+        when:
+        def partitions = partitioner.partition(spec, 2)
+
+        then:
+        1 * previousCompilationAccess.readPreviousCompilationData(previousCompilationDataFile) >> previousCompilation([:])
+        partitions == null
+    }
+
+    def "compiles all sources at once when a class is a dependency to all others"() {
+        when:
+        def partitions = partitioner.partition(spec, 2)
+
+        then:
+        1 * previousCompilationAccess.readPreviousCompilationData(previousCompilationDataFile) >> previousCompilation(
+            Base: DependentsSet.dependencyToAll("reason")
+        )
+        partitions == null
+    }
+
+    def "compiles all sources at once when annotation processors are configured"() {
+        annotationProcessingConfigured = true
+
+        when:
+        def partitions = partitioner.partition(spec, 2)
+
+        then:
+        0 * previousCompilationAccess._
+        partitions == null
+    }
+
+    def "compiles all sources at once when a source path is configured"() {
+        sourcepath = [tempDir.createDir("other-src")]
+
+        when:
+        def partitions = partitioner.partition(spec, 2)
+
+        then:
+        0 * previousCompilationAccess._
+        partitions == null
+    }
+
+    def "compiles all sources at once when no further workers are available"() {
+        when:
+        def partitions = partitioner.partition(spec, 1)
+
+        then:
+        0 * previousCompilationAccess._
+        partitions == null
+    }
+
+    private File source(String className) {
+        new File(sourceDir, "${className}.java")
+    }
+
+    /**
+     * E depends on an inlined constant of A, so it is only known from the constants mapping.
+     */
+    private PreviousCompilationData previousCompilation(Map<String, DependentsSet> dependents) {
+        def classNames = ["Base", "A", "B", "C", "D", "E", "F"]
+        def sourceToClassMapping = classNames.collectEntries { [("${it}.java".toString()): [it] as Set] }
+        def classHashes = classNames.collectEntries { [(it): HashCode.fromInt(it.hashCode())] }
+        def constants = new ConstantToDependentsMapping([A: dependentClasses([] as Set, ["E"] as Set)])
+        new PreviousCompilationData(
+            new ClassSetAnalysisData(classHashes, dependents, [:], null),
+            new AnnotationProcessingData(),
+            new ClassSetAnalysisData(),
+            CompilerApiData.withConstantsMapping(sourceToClassMapping, constants)
+        )
+    }
+}
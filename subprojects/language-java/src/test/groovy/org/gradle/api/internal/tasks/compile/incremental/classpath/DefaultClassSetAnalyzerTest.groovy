@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.classpath
+
+import it.unimi.dsi.fastutil.ints.IntSets
+import org.gradle.api.file.ConfigurableFileTree
+import org.gradle.api.internal.file.FileOperations
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis
+import org.gradle.api.file.FileTreeElement
+import org.gradle.internal.file.Chmod
+import org.gradle.internal.file.Stat
+import org.gradle.internal.hash.FileHasher
+import org.gradle.internal.hash.StreamHasher
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.vfs.FileSystemAccess
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.function.Function
+
+import static org.gradle.internal.file.FileMetadata.AccessType.DIRECT
+import static org.gradle.internal.file.impl.DefaultFileMetadata.file
+import static org.gradle.internal.hash.HashCode.fromInt
+
+class DefaultClassSetAnalyzerTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider(getClass())
+
+    def fileHasher = Mock(FileHasher)
+    def classAnalyzer = Mock(ClassDependenciesAnalyzer)
+    def fileOperations = Mock(FileOperations)
+    def fileSystemAccess = Mock(FileSystemAccess)
+    def chmod = Mock(Chmod)
+    def stat = Stub(Stat)
+    def analyzer = new DefaultClassSetAnalyzer(fileHasher, Stub(StreamHasher), classAnalyzer, fileOperations, fileSystemAccess, chmod, stat)
+
+    def "analyzes classpath directory from its snapshot"() {
+        def classes = tempDir.createDir("classes")
+        def snapshot = new DirectorySnapshot(classes.absolutePath, "classes", DIRECT, fromInt(1), [
+            new DirectorySnapshot("${classes}/org".toString(), "org", DIRECT, fromInt(2), [
+                new RegularFileSnapshot("${classes}/org/A.class".toString(), "A.class", fromInt(3), file(1, 1, DIRECT)),
+                new RegularFileSnapshot("${classes}/org/resource.txt".toString(), "resource.txt", fromInt(4), file(1, 1, DIRECT))
+            ])
+        ])
+
+        when:
+        def data = analyzer.analyzeClasspathEntry(classes)
+
+        then:
+        1 * fileSystemAccess.read(classes.absolutePath, _ as Function) >> { String location, Function visitor -> visitor.apply(snapshot) }
+        1 * classAnalyzer.getClassAnalysis(fromInt(3), { it.path == "org/A.class" && it.file == new File(classes, "org/A.class") }) >>
+            new ClassAnalysis("org.A", [] as Set, [] as Set, null, IntSets.EMPTY_SET)
+        0 * classAnalyzer._
+        0 * fileOperations._
+        0 * fileHasher._
+        data.classHashes == ["org.A": fromInt(3)]
+        data.fullRebuildCause == null
+    }
+
+    def "class files from a snapshot can be copied"() {
+        def classes = tempDir.createDir("classes")
+        def classFile = classes.createFile("A.class")
+        classFile.text = "class file"
+        def target = tempDir.file("target/A.class")
+        def snapshot = new DirectorySnapshot(classes.absolutePath, "classes", DIRECT, fromInt(1), [
+            new RegularFileSnapshot(classFile.absolutePath, "A.class", fromInt(2), file(10, classFile.length(), DIRECT))
+        ])
+        FileTreeElement element = null
+        stat.getUnixMode(classFile) >> 0640
+
+        when:
+        analyzer.analyzeClasspathEntry(classes)
+
+        then:
+        1 * fileSystemAccess.read(classes.absolutePath, _ as Function) >> { String location, Function visitor -> visitor.apply(snapshot) }
+        1 * classAnalyzer.getClassAnalysis(fromInt(2), _) >> { hash, FileTreeElement classFileElement ->
+            element = classFileElement
+            new ClassAnalysis("A", [] as Set, [] as Set, null, IntSets.EMPTY_SET)
+        }
+
+        when:
+        def output = new ByteArrayOutputStream()
+        element.copyTo(output)
+
+        then:
+        output.toString() == "class file"
+        element.lastModified == 10
+        element.size == classFile.length()
+        element.mode == 0640
+
+        when:
+        def copied = element.copyTo(target)
+
+        then:
+        copied
+        target.text == "class file"
+        1 * chmod.chmod(target, 0640)
+    }
+
+    def "does not read output folder from the virtual file system"() {
+        def classes = tempDir.createDir("classes")
+
+        when:
+        analyzer.analyzeOutputFolder(classes)
+
+        then:
+        1 * fileOperations.fileTree(classes) >> Stub(ConfigurableFileTree)
+        0 * fileSystemAccess._
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.serialize;
+
+import org.gradle.internal.io.BufferCaster;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A decoder that reads from a channel through a pooled direct buffer, or directly from a given buffer such as a mapped file.
+ * Reads data written by {@link ChannelBackedEncoder} or {@link org.gradle.internal.serialize.kryo.KryoBackedEncoder}.
+ *
+ * <p>Note that when reading from a channel, this decoder uses buffering, so will attempt to read beyond the end of the encoded data.
+ * This means you should use this type only when this decoder will be used to decode the entire channel.</p>
+ */
+public class ChannelBackedDecoder extends AbstractDecoder implements Decoder, Closeable {
+    @Nullable
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private long consumed;
+    private ChannelBackedDecoder nested;
+    private int nestedChunkRemaining;
+    private byte[] scratch;
+
+    public ChannelBackedDecoder(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = DirectBufferPool.take();
+        BufferCaster.cast(buffer).limit(0);
+    }
+
+    /**
+     * Decodes the remaining content of the given buffer, without copying it.
+     */
+    public ChannelBackedDecoder(ByteBuffer content) {
+        this.channel = null;
+        this.buffer = content.slice();
+    }
+
+    @Override
+    protected int maybeReadBytes(byte[] bytes, int offset, int count) throws IOException {
+        if (!fill(1)) {
+            return -1;
+        }
+        int length = Math.min(count, buffer.remaining());
+        buffer.get(bytes, offset, length);
+        return length;
+    }
+
+    @Override
+    protected long maybeSkip(long count) throws IOException {
+        int remaining = buffer.remaining();
+        if (remaining == 0 && channel instanceof SeekableByteChannel) {
+            SeekableByteChannel seekableChannel = (SeekableByteChannel) channel;
+            long position = seekableChannel.position();
+            long skipped = Math.min(count, seekableChannel.size() - position);
+            seekableChannel.position(position + skipped);
+            consumed += skipped;
+            return skipped;
+        }
+        if (remaining == 0 && !fill(1)) {
+            return 0;
+        }
+        int skipped = (int) Math.min(count, buffer.remaining());
+        BufferCaster.cast(buffer).position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    @Override
+    public void readBytes(byte[] bytes, int offset, int count) throws IOException {
+        while (count > 0) {
+            require(1);
+            int length = Math.min(count, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            offset += length;
+            count -= length;
+        }
+    }
+
+    private void readBytes(ByteBuffer bytes, int count) throws IOException {
+        while (count > 0) {
+            require(1);
+            int length = Math.min(count, buffer.remaining());
+            ByteBuffer slice = buffer.duplicate();
+            BufferCaster.cast(slice).limit(slice.position() + length);
+            bytes.put(slice);
+            BufferCaster.cast(buffer).position(slice.position());
+            count -= length;
+        }
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    @Override
+    public long readSmallLong() throws IOException {
+        // Avoid checking the buffer for every byte when the value is known to be buffered
+        boolean buffered = buffer.remaining() >= 9;
+        long result = 0;
+        for (int shift = 0; shift < 56; shift += 7) {
+            byte b = buffered ? buffer.get() : readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        return result | (long) (buffered ? buffer.get() : readByte()) << 56;
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    @Override
+    public int readSmallInt() throws IOException {
+        boolean buffered = buffer.remaining() >= 5;
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffered ? buffer.get() : readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() == 1;
+    }
+
+    @Override
+    public String readString() throws IOException {
+        return readNullableString();
+    }
+
+    @Override
+    public String readNullableString() throws IOException {
+        byte b = readByte();
+        if ((b & 0x80) == 0) {
+            return readAscii(b);
+        }
+        int charCount = readLengthMarker(b);
+        if (charCount == 0) {
+            return null;
+        }
+        if (charCount == 1) {
+            return "";
+        }
+        charCount--;
+        char[] chars = new char[charCount];
+        int index = 0;
+        if (buffer.remaining() >= charCount) {
+            // Most strings are ASCII, read them in bulk and only decode the rest char by char
+            int position = buffer.position();
+            byte[] bytes = scratch(charCount);
+            buffer.get(bytes, 0, charCount);
+            while (index < charCount && bytes[index] >= 0) {
+                index++;
+            }
+            if (index == charCount) {
+                return new String(bytes, 0, charCount, StandardCharsets.ISO_8859_1);
+            }
+            BufferCaster.cast(buffer).position(position + index);
+            for (int i = 0; i < index; i++) {
+                chars[i] = (char) bytes[i];
+            }
+        }
+        for (; index < charCount; index++) {
+            int c = readByte() & 0xFF;
+            switch (c >> 4) {
+                case 12:
+                case 13:
+                    chars[index] = (char) ((c & 0x1F) << 6 | readByte() & 0x3F);
+                    break;
+                case 14:
+                    chars[index] = (char) ((c & 0x0F) << 12 | (readByte() & 0x3F) << 6 | readByte() & 0x3F);
+                    break;
+                default:
+                    chars[index] = (char) c;
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Reads a string where each char is stored in a single byte, and the last char has the high bit set.
+     */
+    private String readAscii(byte first) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        byte b = first;
+        while ((b & 0x80) == 0) {
+            builder.append((char) b);
+            b = readByte();
+        }
+        return builder.append((char) (b & 0x7F)).toString();
+    }
+
+    private byte[] scratch(int size) {
+        if (scratch == null || scratch.length < size) {
+            scratch = new byte[Math.max(size, 256)];
+        }
+        return scratch;
+    }
+
+    private int readLengthMarker(byte first) throws IOException {
+        int result = first & 0x3F;
+        if ((first & 0x40) != 0) {
+            for (int shift = 6; shift < 34; shift += 7) {
+                byte b = readByte();
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void skipChunked() throws IOException {
+        while (true) {
+            int count = readSmallInt();
+            if (count == 0) {
+                break;
+            }
+            skipBytes(count);
+        }
+    }
+
+    @Override
+    public <T> T decodeChunked(DecodeAction<Decoder, T> decodeAction) throws Exception {
+        if (nested == null) {
+            nested = new ChannelBackedDecoder(new ReadableByteChannel() {
+                @Override
+                public int read(ByteBuffer dst) throws IOException {
+                    if (nestedChunkRemaining == 0) {
+                        nestedChunkRemaining = readSmallInt();
+                        if (nestedChunkRemaining == 0) {
+                            // End of stream has been reached
+                            return -1;
+                        }
+                    }
+                    int count = Math.min(nestedChunkRemaining, dst.remaining());
+                    readBytes(dst, count);
+                    nestedChunkRemaining -= count;
+                    return count;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+        }
+        nestedChunkRemaining = 0;
+        BufferCaster.cast(nested.buffer).limit(0);
+        T value = decodeAction.read(nested);
+        if (nestedChunkRemaining != 0 || readSmallInt() != 0) {
+            throw new IllegalStateException("Expecting the end of nested stream.");
+        }
+        return value;
+    }
+
+    /**
+     * Returns the total number of bytes consumed by this decoder. Some additional bytes may also be buffered by this decoder but have not been consumed.
+     */
+    public long getReadPosition() {
+        return buffer == null ? consumed : consumed + buffer.position();
+    }
+
+    private void require(int count) throws IOException {
+        if (!fill(count)) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Makes sure that at least the given number of bytes are buffered, reading from the channel only as much as needed.
+     *
+     * @return {@code false} when the end of the data has been reached first.
+     */
+    private boolean fill(int count) throws IOException {
+        if (buffer.remaining() >= count) {
+            return true;
+        }
+        if (channel == null) {
+            return false;
+        }
+        consumed += buffer.position();
+        buffer.compact();
+        try {
+            while (buffer.position() < count) {
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            BufferCaster.cast(buffer).flip();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null || buffer == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } finally {
+            consumed += buffer.position();
+            DirectBufferPool.release(buffer);
+            buffer = null;
+            if (nested != null) {
+                DirectBufferPool.release(nested.buffer);
+                nested.buffer = null;
+            }
+        }
+    }
+}
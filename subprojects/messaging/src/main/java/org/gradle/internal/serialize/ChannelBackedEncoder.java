@@ -0,0 +1,275 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.serialize;
+
+import org.gradle.internal.io.BufferCaster;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An encoder that writes to a channel through a pooled direct buffer, so that the encoded data is handed to the channel without being copied into an intermediate byte array first.
+ *
+ * <p>Uses the same encoding as {@link org.gradle.internal.serialize.kryo.KryoBackedEncoder}, so that the data can be read by either {@link ChannelBackedDecoder}
+ * or {@link org.gradle.internal.serialize.kryo.KryoBackedDecoder}.</p>
+ */
+public class ChannelBackedEncoder extends AbstractEncoder implements FlushableEncoder, Closeable {
+    // Chunks need to fit into the buffer of a nested KryoBackedDecoder
+    private static final int CHUNK_SIZE = 4096;
+
+    private final WritableByteChannel channel;
+    private final int bufferSize;
+    private ByteBuffer buffer;
+    private long flushed;
+    private ChannelBackedEncoder nested;
+
+    public ChannelBackedEncoder(WritableByteChannel channel) {
+        this(channel, DirectBufferPool.BUFFER_SIZE);
+    }
+
+    private ChannelBackedEncoder(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.bufferSize = bufferSize;
+        this.buffer = DirectBufferPool.take();
+        BufferCaster.cast(buffer).limit(bufferSize);
+    }
+
+    @Override
+    public void writeByte(byte value) throws IOException {
+        require(1);
+        buffer.put(value);
+    }
+
+    @Override
+    public void writeBytes(byte[] bytes, int offset, int count) throws IOException {
+        while (count > 0) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int length = Math.min(count, buffer.remaining());
+            buffer.put(bytes, offset, length);
+            offset += length;
+            count -= length;
+        }
+    }
+
+    private void writeBytes(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            if (bytes.remaining() <= buffer.remaining()) {
+                buffer.put(bytes);
+            } else {
+                ByteBuffer slice = bytes.duplicate();
+                BufferCaster.cast(slice).limit(slice.position() + buffer.remaining());
+                buffer.put(slice);
+                BufferCaster.cast(bytes).position(slice.position());
+            }
+        }
+    }
+
+    @Override
+    public void writeLong(long value) throws IOException {
+        require(8);
+        buffer.putLong(value);
+    }
+
+    @Override
+    public void writeSmallLong(long value) throws IOException {
+        require(9);
+        // Variable length, 7 bits per byte with the high bit marking that more bytes follow. The ninth byte holds the remaining 8 bits.
+        for (int i = 0; i < 8; i++) {
+            if (value >>> 7 == 0) {
+                buffer.put((byte) value);
+                return;
+            }
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    @Override
+    public void writeInt(int value) throws IOException {
+        require(4);
+        buffer.putInt(value);
+    }
+
+    @Override
+    public void writeSmallInt(int value) throws IOException {
+        require(5);
+        while (value >>> 7 != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    @Override
+    public void writeBoolean(boolean value) throws IOException {
+        require(1);
+        buffer.put(value ? (byte) 1 : (byte) 0);
+    }
+
+    @Override
+    public void writeString(CharSequence value) throws IOException {
+        if (value == null) {
+            throw new IllegalArgumentException("Cannot encode a null string.");
+        }
+        writeChars(value);
+    }
+
+    @Override
+    public void writeNullableString(@Nullable CharSequence value) throws IOException {
+        if (value == null) {
+            writeByte((byte) 0x80);
+        } else {
+            writeChars(value);
+        }
+    }
+
+    private void writeChars(CharSequence value) throws IOException {
+        int charCount = value.length();
+        writeLengthMarker(charCount + 1);
+        int index = 0;
+        if (buffer.remaining() >= charCount) {
+            // Most strings are ASCII, write them without checking the buffer for every char
+            int position = buffer.position();
+            while (index < charCount) {
+                char c = value.charAt(index);
+                if (c > 0x7F) {
+                    break;
+                }
+                buffer.put(position + index++, (byte) c);
+            }
+            BufferCaster.cast(buffer).position(position + index);
+        }
+        for (; index < charCount; index++) {
+            char c = value.charAt(index);
+            if (c <= 0x7F) {
+                require(1);
+                buffer.put((byte) c);
+            } else if (c > 0x7FF) {
+                require(3);
+                buffer.put((byte) (0xE0 | c >> 12 & 0x0F));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else {
+                require(2);
+                buffer.put((byte) (0xC0 | c >> 6 & 0x1F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Writes the number of chars plus one, where zero means {@code null}.
+     * The first byte has the high bit set, to tell it apart from a string with ASCII encoding, and holds 6 bits of the length.
+     */
+    private void writeLengthMarker(int value) throws IOException {
+        require(5);
+        if (value >>> 6 == 0) {
+            buffer.put((byte) (value | 0x80));
+            return;
+        }
+        buffer.put((byte) (value | 0x40 | 0x80));
+        value >>>= 6;
+        while (value >>> 7 != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    @Override
+    public void encodeChunked(EncodeAction<Encoder> writeAction) throws Exception {
+        if (nested == null) {
+            nested = new ChannelBackedEncoder(new WritableByteChannel() {
+                @Override
+                public int write(ByteBuffer src) throws IOException {
+                    int length = src.remaining();
+                    if (length > 0) {
+                        writeSmallInt(length);
+                        writeBytes(src);
+                    }
+                    return length;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            }, CHUNK_SIZE);
+        }
+        writeAction.write(nested);
+        nested.flush();
+        writeSmallInt(0);
+    }
+
+    /**
+     * Returns the total number of bytes written by this encoder, some of which may still be buffered.
+     */
+    public long getWritePosition() {
+        return buffer == null ? flushed : flushed + buffer.position();
+    }
+
+    private void require(int count) throws IOException {
+        if (buffer.remaining() < count) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        BufferCaster.cast(buffer).flip();
+        while (buffer.hasRemaining()) {
+            flushed += channel.write(buffer);
+        }
+        BufferCaster.cast(buffer).clear();
+        BufferCaster.cast(buffer).limit(bufferSize);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flush();
+            channel.close();
+        } finally {
+            DirectBufferPool.release(buffer);
+            buffer = null;
+            if (nested != null) {
+                DirectBufferPool.release(nested.buffer);
+                nested.buffer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.serialize;
+
+import org.gradle.internal.io.BufferCaster;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Hands out the direct buffers used by {@link ChannelBackedEncoder} and {@link ChannelBackedDecoder}.
+ * Direct buffers are expensive to allocate and are only freed by the garbage collector, so a few of them are kept for reuse.
+ */
+class DirectBufferPool {
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final Queue<ByteBuffer> BUFFERS = new ArrayBlockingQueue<ByteBuffer>(16);
+
+    private DirectBufferPool() {
+    }
+
+    static ByteBuffer take() {
+        ByteBuffer buffer = BUFFERS.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        return buffer;
+    }
+
+    static void release(ByteBuffer buffer) {
+        BufferCaster.cast(buffer).clear();
+        // Retain buffer if there is capacity in the queue, otherwise discard
+        BUFFERS.offer(buffer);
+    }
+}
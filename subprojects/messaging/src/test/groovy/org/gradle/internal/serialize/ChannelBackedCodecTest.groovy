@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.serialize
+
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
+
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+
+class ChannelBackedCodecTest extends AbstractCodecTest {
+    @Override
+    void encodeTo(OutputStream outputStream, Closure<Encoder> closure) {
+        def encoder = new ChannelBackedEncoder(Channels.newChannel(outputStream))
+        closure.call(encoder)
+        encoder.flush()
+    }
+
+    @Override
+    void decodeFrom(InputStream inputStream, Closure<Decoder> closure) {
+        def decoder = new ChannelBackedDecoder(Channels.newChannel(inputStream))
+        closure.call(decoder)
+    }
+
+    def "uses the same encoding as the Kryo backed encoder"() {
+        def kryoBytes = new ByteArrayOutputStream()
+        def kryoEncoder = new KryoBackedEncoder(kryoBytes)
+        writeValues(kryoEncoder)
+        kryoEncoder.flush()
+
+        expect:
+        encode { Encoder encoder -> writeValues(encoder) } == kryoBytes.toByteArray()
+    }
+
+    def "can decode data written by the Kryo backed encoder"() {
+        def bytes = new ByteArrayOutputStream()
+        def encoder = new KryoBackedEncoder(bytes)
+        writeValues(encoder)
+        encoder.flush()
+
+        expect:
+        decode(bytes.toByteArray()) { Decoder decoder -> readValues(decoder) }
+    }
+
+    def "Kryo backed decoder can decode data written by this encoder"() {
+        def bytes = encode { Encoder encoder -> writeValues(encoder) }
+
+        expect:
+        readValues(new KryoBackedDecoder(new ByteArrayInputStream(bytes)))
+    }
+
+    def "can decode the content of a buffer"() {
+        def bytes = encode { Encoder encoder -> writeValues(encoder) }
+        def buffer = ByteBuffer.allocateDirect(bytes.length + 2)
+        buffer.put(0 as byte).put(bytes).put(0 as byte)
+        buffer.position(1)
+
+        when:
+        def decoder = new ChannelBackedDecoder(buffer)
+
+        then:
+        readValues(decoder)
+        decoder.readPosition == bytes.length
+        decoder.readByte() == 0 as byte
+    }
+
+    def "can encode and decode chunked streams larger than the chunk size"() {
+        def content = (0..<10000).collect { it as byte } as byte[]
+
+        when:
+        def bytes = encode { Encoder encoder ->
+            encoder.encodeChunked { Encoder nested ->
+                nested.writeBinary(content)
+            }
+            encoder.encodeChunked { Encoder nested ->
+                nested.writeString("chunked")
+            }
+            encoder.writeString("done")
+        }
+
+        then:
+        decode(bytes) { Decoder decoder ->
+            assert decoder.decodeChunked { Decoder nested -> nested.readBinary() } == content
+            decoder.skipChunked()
+            assert decoder.readString() == "done"
+        }
+
+        when:
+        def kryoDecoder = new KryoBackedDecoder(new ByteArrayInputStream(bytes))
+
+        then:
+        kryoDecoder.decodeChunked { Decoder nested -> nested.readBinary() } == content
+        kryoDecoder.decodeChunked { Decoder nested -> nested.readString() } == "chunked"
+        kryoDecoder.readString() == "done"
+    }
+
+    def "can query write and read positions"() {
+        def outstr = new ByteArrayOutputStream()
+        def encoder = new ChannelBackedEncoder(Channels.newChannel(outstr))
+
+        when:
+        encoder.writeBoolean(true)
+        encoder.writeByte(12 as byte)
+        encoder.writeLong(1234)
+
+        then:
+        encoder.writePosition == 10
+        outstr.size() == 0
+
+        when:
+        encoder.writeBytes(new byte[100000])
+        encoder.close()
+
+        then:
+        encoder.writePosition == 100010
+        outstr.size() == 100010
+
+        when:
+        def decoder = new ChannelBackedDecoder(Channels.newChannel(new ByteArrayInputStream(outstr.toByteArray())))
+        decoder.readBoolean()
+        decoder.readByte()
+        decoder.readLong()
+
+        then:
+        decoder.readPosition == 10
+
+        when:
+        decoder.skipBytes(100000)
+
+        then:
+        decoder.readPosition == 100010
+    }
+
+    private static void writeValues(Encoder encoder) {
+        encoder.writeBoolean(true)
+        encoder.writeByte(-7 as byte)
+        [0, 1, -1, 127, 128, 16384, Integer.MAX_VALUE, Integer.MIN_VALUE].each {
+            encoder.writeInt(it)
+            encoder.writeSmallInt(it)
+        }
+        [0L, 1L, -1L, 127L, 1L << 35, 1L << 56, Long.MAX_VALUE, Long.MIN_VALUE].each {
+            encoder.writeLong(it)
+            encoder.writeSmallLong(it)
+        }
+        ["", "a", "ascii", "été", "中文", "x" * 100, "y" * 10000].each {
+            encoder.writeString(it)
+        }
+        encoder.writeNullableString(null)
+        encoder.writeNullableString("not null")
+        encoder.writeBinary([1, 2, 3] as byte[])
+    }
+
+    private static boolean readValues(Decoder decoder) {
+        assert decoder.readBoolean()
+        assert decoder.readByte() == -7 as byte
+        [0, 1, -1, 127, 128, 16384, Integer.MAX_VALUE, Integer.MIN_VALUE].each {
+            assert decoder.readInt() == it
+            assert decoder.readSmallInt() == it
+        }
+        [0L, 1L, -1L, 127L, 1L << 35, 1L << 56, Long.MAX_VALUE, Long.MIN_VALUE].each {
+            assert decoder.readLong() == it
+            assert decoder.readSmallLong() == it
+        }
+        ["", "a", "ascii", "été", "中文", "x" * 100, "y" * 10000].each {
+            assert decoder.readString() == it
+        }
+        assert decoder.readNullableString() == null
+        assert decoder.readNullableString() == "not null"
+        assert decoder.readBinary() == [1, 2, 3] as byte[]
+        return true
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Compares random get throughput of the file backed and the memory mapped block stores.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class BTreePersistentIndexedCacheBenchmark {
+    private static final Serializer<String> KEY_SERIALIZER = BaseSerializerFactory.STRING_SERIALIZER;
+    private static final Serializer<byte[]> VALUE_SERIALIZER = BaseSerializerFactory.BYTE_ARRAY_SERIALIZER;
+
+    @Param({"100000"})
+    int entryCount;
+
+    @Param({"64", "4096"})
+    int valueSize;
+
+    @Param({"false", "true"})
+    boolean memoryMapped;
+
+    private File cacheDir;
+    private BTreePersistentIndexedCache<String, byte[]> cache;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void createCache() throws IOException {
+        cacheDir = Files.createTempDirectory("btree-benchmark").toFile();
+        File cacheFile = new File(cacheDir, "cache.bin");
+        Random values = new Random(1234L);
+        BTreePersistentIndexedCache<String, byte[]> writer = new BTreePersistentIndexedCache<>(cacheFile, KEY_SERIALIZER, VALUE_SERIALIZER);
+        for (int i = 0; i < entryCount; i++) {
+            byte[] value = new byte[valueSize];
+            values.nextBytes(value);
+            writer.put(key(i), value);
+        }
+        writer.close();
+        cache = new BTreePersistentIndexedCache<>(cacheFile, KEY_SERIALIZER, VALUE_SERIALIZER, (short) 512, 512, memoryMapped);
+        random = new Random(5678L);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeCache() {
+        cache.close();
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        cacheDir.delete();
+    }
+
+    @Benchmark
+    public void randomGet(Blackhole blackhole) {
+        blackhole.consume(cache.get(key(random.nextInt(entryCount))));
+    }
+
+    private static String key(int index) {
+        return "entry-" + index;
+    }
+}
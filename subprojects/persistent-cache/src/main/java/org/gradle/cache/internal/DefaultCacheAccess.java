@@ -282,7 +282,9 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = parameters.isMemoryMapped()
+                    ? () -> doCreateMemoryMappedCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer())
+                    : () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
 
                 MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
@@ -319,6 +321,10 @@ <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serialize
         return new BTreePersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer);
     }
 
+    <K, V> BTreePersistentIndexedCache<K, V> doCreateMemoryMappedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        return new BTreePersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer, BTreePersistentIndexedCache.DEFAULT_MAX_CHILD_INDEX_ENTRIES, BTreePersistentIndexedCache.DEFAULT_MAX_FREE_LIST_ENTRIES, true);
+    }
+
     /**
      * Called just after the file lock has been acquired.
      */
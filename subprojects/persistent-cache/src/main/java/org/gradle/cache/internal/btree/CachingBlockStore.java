@@ -28,12 +28,28 @@
 public class CachingBlockStore implements BlockStore {
     private final BlockStore store;
     private final Map<BlockPointer, BlockPayload> dirty = new LinkedHashMap<BlockPointer, BlockPayload>();
-    private final Cache<BlockPointer, BlockPayload> indexBlockCache = CacheBuilder.newBuilder().maximumSize(100).concurrencyLevel(1).build();
+    private final Cache<BlockPointer, BlockPayload> indexBlockCache;
     private final ImmutableSet<Class<? extends BlockPayload>> cacheableBlockTypes;
 
     public CachingBlockStore(BlockStore store, Collection<Class<? extends BlockPayload>> cacheableBlockTypes) {
+        this(store, cacheableBlockTypes, CacheBuilder.newBuilder().maximumSize(100).concurrencyLevel(1).build());
+    }
+
+    /**
+     * Creates a store which caches blocks up to a total size, for blocks whose size varies widely, like data blocks.
+     */
+    public CachingBlockStore(BlockStore store, Collection<Class<? extends BlockPayload>> cacheableBlockTypes, long maxCachedBytes) {
+        this(store, cacheableBlockTypes, CacheBuilder.newBuilder()
+            .maximumWeight(maxCachedBytes)
+            .weigher((BlockPointer pos, BlockPayload block) -> block.getSize())
+            .concurrencyLevel(1)
+            .build());
+    }
+
+    private CachingBlockStore(BlockStore store, Collection<Class<? extends BlockPayload>> cacheableBlockTypes, Cache<BlockPointer, BlockPayload> indexBlockCache) {
         this.store = store;
         this.cacheableBlockTypes = ImmutableSet.copyOf(cacheableBlockTypes);
+        this.indexBlockCache = indexBlockCache;
     }
 
     @Override
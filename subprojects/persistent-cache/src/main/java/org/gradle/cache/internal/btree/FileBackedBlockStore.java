@@ -147,58 +147,22 @@ private long alloc(long length) {
         return pos;
     }
 
-    private final class BlockImpl extends Block {
-        private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
-        private static final int TAIL_SIZE = INT_SIZE;
-
-        private BlockPointer pos;
-        private int payloadSize;
-
+    private final class BlockImpl extends FileBlock {
         private BlockImpl(BlockPayload payload, BlockPointer pos) {
             this(payload);
             setPos(pos);
         }
 
         public BlockImpl(BlockPayload payload) {
-            super(payload);
-            pos = null;
-            payloadSize = -1;
-        }
-
-        @Override
-        public boolean hasPos() {
-            return pos != null;
+            super(payload, FileBackedBlockStore.this);
         }
 
         @Override
-        public BlockPointer getPos() {
-            if (pos == null) {
-                pos = BlockPointer.pos(alloc(getSize()));
-            }
-            return pos;
+        protected long allocate(long length) {
+            return alloc(length);
         }
 
         @Override
-        public void setPos(BlockPointer pos) {
-            assert this.pos == null && !pos.isNull();
-            this.pos = pos;
-        }
-
-        @Override
-        public int getSize() {
-            if (payloadSize < 0) {
-                payloadSize = getPayload().getSize();
-            }
-            return payloadSize + HEADER_SIZE + TAIL_SIZE;
-        }
-
-        @Override
-        public void setSize(int size) {
-            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
-            assert newPayloadSize >= payloadSize;
-            payloadSize = newPayloadSize;
-        }
-
         public void write() throws Exception {
             long pos = getPos().getPos();
 
@@ -229,6 +193,7 @@ public void write() throws Exception {
             }
         }
 
+        @Override
         public void read() throws Exception {
             long pos = getPos().getPos();
             assert pos >= 0;
@@ -261,12 +226,6 @@ public void read() throws Exception {
             }
             input.done();
         }
-
-        @Override
-        public RuntimeException blockCorruptedException() {
-            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
-                    FileBackedBlockStore.this));
-        }
     }
 
 }
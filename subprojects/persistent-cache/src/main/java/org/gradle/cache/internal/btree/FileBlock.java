@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+/**
+ * A block of the file format shared by {@link FileBackedBlockStore} and {@link MemoryMappedBlockStore}.
+ * A block consists of a header with the payload type and size, the payload, and a tail with the number of bytes written before it.
+ * The stores only differ in how they read and write the bytes of a block.
+ */
+abstract class FileBlock extends Block {
+    static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
+    static final int TAIL_SIZE = INT_SIZE;
+
+    private final BlockStore store;
+    private BlockPointer pos;
+    protected int payloadSize;
+
+    protected FileBlock(BlockPayload payload, BlockStore store) {
+        super(payload);
+        this.store = store;
+        pos = null;
+        payloadSize = -1;
+    }
+
+    /**
+     * Allocates the given number of bytes at the end of the file, returning their position.
+     */
+    protected abstract long allocate(long length);
+
+    public abstract void write() throws Exception;
+
+    public abstract void read() throws Exception;
+
+    @Override
+    public boolean hasPos() {
+        return pos != null;
+    }
+
+    @Override
+    public BlockPointer getPos() {
+        if (pos == null) {
+            pos = BlockPointer.pos(allocate(getSize()));
+        }
+        return pos;
+    }
+
+    @Override
+    public void setPos(BlockPointer pos) {
+        assert this.pos == null && !pos.isNull();
+        this.pos = pos;
+    }
+
+    @Override
+    public int getSize() {
+        if (payloadSize < 0) {
+            payloadSize = getPayload().getSize();
+        }
+        return payloadSize + HEADER_SIZE + TAIL_SIZE;
+    }
+
+    @Override
+    public void setSize(int size) {
+        int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+        assert newPayloadSize >= payloadSize;
+        payloadSize = newPayloadSize;
+    }
+
+    @Override
+    public RuntimeException blockCorruptedException() {
+        return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this, store));
+    }
+}
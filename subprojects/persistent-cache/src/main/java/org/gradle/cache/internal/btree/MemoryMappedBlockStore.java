@@ -0,0 +1,351 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link BlockStore} which reads blocks from memory mapped regions of the backing file, instead of seeking and reading through a buffered stream.
+ * Writes go through the file channel, and are visible through the mapped regions.
+ *
+ * Uses the same file format as {@link FileBackedBlockStore}, so a cache file can be opened by either store.
+ * At most {@code maxMappedRegions} regions are kept mapped at a time, the least recently used region being unmapped first.
+ * All regions are unmapped when the store is closed or cleared, so that the mappings don't outlive the file.
+ * Buffers handed out for a region are only used while reading a single block, so no buffer of an unmapped region is accessed afterwards.
+ */
+public class MemoryMappedBlockStore implements BlockStore {
+    static final int DEFAULT_REGION_SIZE = 4 * 1024 * 1024;
+    static final int DEFAULT_MAX_MAPPED_REGIONS = 64;
+
+    private final File cacheFile;
+    private final int regionSize;
+    private final Map<Long, MappedByteBuffer> regions;
+    private final BlockOutputStream outputBuffer = new BlockOutputStream();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long nextBlock;
+    private Factory factory;
+    private long currentFileSize;
+
+    public MemoryMappedBlockStore(File cacheFile) {
+        this(cacheFile, DEFAULT_REGION_SIZE, DEFAULT_MAX_MAPPED_REGIONS);
+    }
+
+    public MemoryMappedBlockStore(File cacheFile, int regionSize, final int maxMappedRegions) {
+        this.cacheFile = cacheFile;
+        this.regionSize = regionSize;
+        this.regions = new LinkedHashMap<Long, MappedByteBuffer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest) {
+                if (size() > maxMappedRegions) {
+                    MappedBuffers.unmap(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    @Override
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = openRandomAccessFile();
+            channel = file.getChannel();
+            currentFileSize = file.length();
+            nextBlock = currentFileSize;
+            if (currentFileSize == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RandomAccessFile openRandomAccessFile() throws FileNotFoundException {
+        try {
+            return new RandomAccessFile(cacheFile, "rw");
+        } catch (FileNotFoundException e) {
+            return new RandomAccessFile(cacheFile, "r");
+        }
+    }
+
+    @Override
+    public void close() {
+        unmapRegions();
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        unmapRegions();
+        try {
+            file.setLength(0);
+            currentFileSize = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextBlock = 0;
+    }
+
+    private void unmapRegions() {
+        regions.values().forEach(MappedBuffers::unmap);
+        regions.clear();
+    }
+
+    @Override
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    @Override
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(BlockPointer.pos(0), payloadType);
+    }
+
+    @Override
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    /**
+     * Returns a buffer containing the given range of the file. Uses a mapped region when the range fits into a single region,
+     * and otherwise reads the range from the file.
+     */
+    private ByteBuffer buffer(long pos, int length) throws IOException {
+        long regionStart = pos - pos % regionSize;
+        long end = pos + length;
+        if (end > regionStart + regionSize) {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, pos + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file reading " + cacheFile);
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+        MappedByteBuffer region = regions.get(regionStart);
+        if (region == null || regionStart + region.capacity() < end) {
+            // Map the whole region, or as much of it as the file currently contains
+            long mappedSize = Math.min(regionSize, currentFileSize - regionStart);
+            MappedByteBuffer previousRegion = region;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, mappedSize);
+            regions.put(regionStart, region);
+            if (previousRegion != null) {
+                MappedBuffers.unmap(previousRegion);
+            }
+        }
+        ByteBuffer buffer = region.duplicate();
+        buffer.position((int) (pos - regionStart));
+        buffer.limit((int) (end - regionStart));
+        return buffer.slice();
+    }
+
+    private final class BlockImpl extends FileBlock {
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload, MemoryMappedBlockStore.this);
+        }
+
+        @Override
+        protected long allocate(long length) {
+            return alloc(length);
+        }
+
+        @Override
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+
+            outputBuffer.reset();
+            DataOutputStream outputStream = new DataOutputStream(outputBuffer);
+
+            BlockPayload payload = getPayload();
+
+            // Write header
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write count
+            long bytesWritten = outputBuffer.size();
+            if (bytesWritten > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Block payload exceeds maximum size");
+            }
+            outputStream.writeInt((int) bytesWritten);
+            outputStream.flush();
+
+            ByteBuffer contents = outputBuffer.toByteBuffer();
+            while (contents.hasRemaining()) {
+                channel.write(contents, pos + contents.position());
+            }
+
+            // Pad
+            if (currentFileSize < finalSize) {
+                file.setLength(finalSize);
+                currentFileSize = finalSize;
+            }
+        }
+
+        @Override
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= currentFileSize) {
+                throw blockCorruptedException();
+            }
+
+            ByteBuffer header = buffer(pos, HEADER_SIZE);
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte type = header.get();
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+            payloadSize = header.getInt();
+            if (payloadSize < 0 || pos + HEADER_SIZE + TAIL_SIZE + payloadSize > currentFileSize) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            ByteBuffer body = buffer(pos + HEADER_SIZE, payloadSize + TAIL_SIZE);
+            payload.read(new DataInputStream(new ByteBufferInputStream(body)));
+
+            // Read and verify count
+            int actualCount = HEADER_SIZE + body.position();
+            if (body.remaining() < INT_SIZE) {
+                throw blockCorruptedException();
+            }
+            int count = body.getInt();
+            if (actualCount != count) {
+                throw blockCorruptedException();
+            }
+        }
+    }
+
+    private static class BlockOutputStream extends ByteArrayOutputStream {
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
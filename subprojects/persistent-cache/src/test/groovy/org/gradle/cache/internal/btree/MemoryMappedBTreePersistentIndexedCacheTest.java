@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.internal.os.OperatingSystem;
+import org.gradle.internal.serialize.DefaultSerializer;
+import org.gradle.internal.serialize.Serializer;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class MemoryMappedBTreePersistentIndexedCacheTest extends BTreePersistentIndexedCacheTest {
+    @Override
+    protected <K, V> BTreePersistentIndexedCache<K, V> newCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, short maxChildIndexEntries, int maxFreeListEntries) {
+        return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries, true);
+    }
+
+    @Test
+    public void readsEntriesWrittenWithoutMemoryMapping() {
+        File cacheFile = tmpDir.file("shared.bin");
+        Serializer<String> serializer = new DefaultSerializer<String>();
+
+        BTreePersistentIndexedCache<String, String> fileBacked = new BTreePersistentIndexedCache<String, String>(cacheFile, serializer, serializer, (short) 4, 100);
+        for (int i = 0; i < 100; i++) {
+            fileBacked.put("key" + i, "value" + i);
+        }
+        fileBacked.close();
+
+        BTreePersistentIndexedCache<String, String> memoryMapped = newCache(cacheFile, serializer, serializer, (short) 4, 100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(memoryMapped.get("key" + i), equalTo("value" + i));
+        }
+        memoryMapped.verify();
+        memoryMapped.close();
+    }
+
+    @Test
+    public void unmapsRegionsWhenClosed() throws IOException {
+        assumeTrue(OperatingSystem.current().isLinux());
+        File cacheFile = tmpDir.file("mapped.bin");
+        Serializer<String> serializer = new DefaultSerializer<String>();
+
+        BTreePersistentIndexedCache<String, String> writer = newCache(cacheFile, serializer, serializer, (short) 4, 100);
+        for (int i = 0; i < 100; i++) {
+            writer.put("key" + i, "value" + i);
+        }
+        writer.close();
+
+        BTreePersistentIndexedCache<String, String> cache = newCache(cacheFile, serializer, serializer, (short) 4, 100);
+        assertThat(cache.get("key50"), equalTo("value50"));
+        assertTrue(isMapped(cacheFile));
+        cache.close();
+        assertFalse(isMapped(cacheFile));
+
+        cache = newCache(cacheFile, serializer, serializer, (short) 4, 100);
+        assertThat(cache.get("key50"), equalTo("value50"));
+        cache.clear();
+        assertThat(cache.get("key50"), nullValue());
+        cache.put("key", "value");
+        cache.close();
+        assertFalse(isMapped(cacheFile));
+
+        cache = newCache(cacheFile, serializer, serializer, (short) 4, 100);
+        assertThat(cache.get("key"), equalTo("value"));
+        cache.close();
+        assertFalse(isMapped(cacheFile));
+    }
+
+    private static boolean isMapped(File file) throws IOException {
+        String path = file.getCanonicalPath();
+        return Files.readAllLines(Paths.get("/proc/self/maps")).stream().anyMatch(line -> line.endsWith(path));
+    }
+}
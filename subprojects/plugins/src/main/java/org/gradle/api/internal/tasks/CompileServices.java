@@ -30,12 +30,16 @@
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.scopes.GlobalScopedCache;
 import org.gradle.initialization.JdkToolsInitializer;
+import org.gradle.internal.file.Chmod;
+import org.gradle.internal.file.Stat;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.scopes.AbstractPluginServiceRegistry;
 import org.gradle.internal.vfs.FileSystemAccess;
+import org.gradle.internal.work.WorkerLeaseService;
 
 public class CompileServices extends AbstractPluginServiceRegistry {
 
@@ -55,8 +59,14 @@ void configure(ServiceRegistration registration, JdkToolsInitializer initializer
             initializer.initializeJdkTools();
         }
 
-        public IncrementalCompilerFactory createIncrementalCompilerFactory(BuildOperationExecutor buildOperationExecutor, StringInterner interner, ClassSetAnalyzer classSetAnalyzer) {
-            return new IncrementalCompilerFactory(buildOperationExecutor, interner, classSetAnalyzer);
+        public IncrementalCompilerFactory createIncrementalCompilerFactory(
+            BuildOperationExecutor buildOperationExecutor,
+            StringInterner interner,
+            ClassSetAnalyzer classSetAnalyzer,
+            WorkerLeaseService workerLeaseService,
+            ResourceLockCoordinationService coordinationService
+        ) {
+            return new IncrementalCompilerFactory(buildOperationExecutor, interner, classSetAnalyzer, workerLeaseService, coordinationService);
         }
 
         CachingClassDependenciesAnalyzer createClassAnalyzer(StringInterner interner, GeneralCompileCaches cache) {
@@ -64,9 +74,9 @@ CachingClassDependenciesAnalyzer createClassAnalyzer(StringInterner interner, Ge
         }
 
         CachingClassSetAnalyzer createClassSetAnalyzer(FileHasher fileHasher, StreamHasher streamHasher, ClassDependenciesAnalyzer classAnalyzer,
-                                                       FileOperations fileOperations, FileSystemAccess fileSystemAccess, GeneralCompileCaches cache) {
+                                                       FileOperations fileOperations, FileSystemAccess fileSystemAccess, Chmod chmod, Stat stat, GeneralCompileCaches cache) {
             return new CachingClassSetAnalyzer(
-                new DefaultClassSetAnalyzer(fileHasher, streamHasher, classAnalyzer, fileOperations),
+                new DefaultClassSetAnalyzer(fileHasher, streamHasher, classAnalyzer, fileOperations, fileSystemAccess, chmod, stat),
                 fileSystemAccess,
                 cache.getClassSetAnalysisCache()
             );
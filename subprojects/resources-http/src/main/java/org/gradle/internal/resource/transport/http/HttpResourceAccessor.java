@@ -17,6 +17,7 @@
 package org.gradle.internal.resource.transport.http;
 
 import org.gradle.internal.IoActions;
+import org.gradle.internal.resource.ExternalResource;
 import org.gradle.internal.resource.ExternalResourceName;
 import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
 import org.gradle.internal.resource.transfer.AbstractExternalResourceAccessor;
@@ -26,6 +27,7 @@
 
 import javax.annotation.Nullable;
 import java.net.URI;
+import java.util.Date;
 
 public class HttpResourceAccessor extends AbstractExternalResourceAccessor implements ExternalResourceAccessor {
 
@@ -50,6 +52,33 @@ public HttpResponseResource openResource(final ExternalResourceName location, bo
         return null;
     }
 
+    /**
+     * Revalidates the cached copy of the resource with a conditional GET request, rather than a HEAD request followed by a GET request when the resource has changed.
+     */
+    @Nullable
+    @Override
+    public <T> T withContentIfModified(ExternalResourceName location, ExternalResourceMetaData cached, T unchanged, ExternalResource.ContentAndMetadataAction<T> action) {
+        String etag = cached.getEtag();
+        // As for ExternalResourceMetaDataCompare, the last modified date is only trusted along with the content length
+        Date lastModified = cached.getContentLength() > 0 ? cached.getLastModified() : null;
+        if (etag == null && lastModified == null) {
+            // Nothing to revalidate against, the resource needs to be downloaded again
+            return withContent(location, true, action);
+        }
+
+        String uri = location.getUri().toString();
+        LOGGER.debug("Revalidating external resource: {}", location);
+        HttpClientResponse response = http.performConditionalGet(uri, etag, lastModified);
+        if (response == null) {
+            return null;
+        }
+        if (response.wasNotModified()) {
+            response.close();
+            return unchanged;
+        }
+        return withContent(location, wrapResponse(location.getUri(), response), action);
+    }
+
     /**
      * Same as #getResource except that it always gives access to the response body,
      * irrespective of the returned HTTP status code. Never returns {@code null}.
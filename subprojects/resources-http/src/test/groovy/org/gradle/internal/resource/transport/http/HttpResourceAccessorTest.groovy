@@ -17,12 +17,25 @@
 package org.gradle.internal.resource.transport.http
 
 import org.apache.http.client.methods.CloseableHttpResponse
+import org.apache.http.client.utils.DateUtils
+import org.apache.http.ssl.SSLContexts
+import org.gradle.api.internal.DocumentationRegistry
+import org.gradle.internal.resource.ExternalResource
 import org.gradle.internal.resource.ExternalResourceName
+import org.gradle.internal.resource.metadata.DefaultExternalResourceMetaData
+import org.gradle.test.fixtures.server.http.HttpServer
+import org.junit.Rule
 import spock.lang.Specification
 
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+
 class HttpResourceAccessorTest extends Specification {
+    @Rule HttpServer httpServer = new HttpServer()
     def uri = new URI("http://somewhere")
     def name = new ExternalResourceName(uri)
+    def lastModified = new Date(1_600_000_000_000L)
+    def unchanged = "unchanged"
 
     def "should call close() on CloseableHttpResource when getMetaData is called"() {
         def response = Mock(CloseableHttpResponse)
@@ -36,4 +49,95 @@ class HttpResourceAccessorTest extends Specification {
         then:
         1 * response.close()
     }
+
+    def "revalidates cached resource with its etag"() {
+        given:
+        expectGet { HttpServletRequest request, HttpServletResponse response ->
+            assert request.getHeader("If-None-Match") == '"1234"'
+            assert request.getHeader("If-Modified-Since") == null
+            assert request.getHeader("Cache-Control") == "max-age=0"
+            response.status = 304
+        }
+        httpServer.start()
+
+        expect:
+        withContentIfModified(cachedMetaData('"1234"')) == unchanged
+    }
+
+    def "revalidates cached resource with its last modified date when it has no etag"() {
+        given:
+        expectGet { HttpServletRequest request, HttpServletResponse response ->
+            assert request.getHeader("If-None-Match") == null
+            assert request.getHeader("If-Modified-Since") == DateUtils.formatDate(lastModified)
+            response.status = 304
+        }
+        httpServer.start()
+
+        expect:
+        withContentIfModified(cachedMetaData(null)) == unchanged
+    }
+
+    def "downloads resource when it has changed"() {
+        given:
+        expectGet { HttpServletRequest request, HttpServletResponse response ->
+            assert request.getHeader("If-None-Match") == '"1234"'
+            response.setHeader("ETag", '"5678"')
+            response.outputStream.write("changed".bytes)
+        }
+        httpServer.start()
+
+        expect:
+        withContentIfModified(cachedMetaData('"1234"')) == 'changed with etag "5678"'
+    }
+
+    def "downloads resource without revalidating when the cached copy has nothing to revalidate against"() {
+        given:
+        expectGet { HttpServletRequest request, HttpServletResponse response ->
+            assert request.getHeader("If-None-Match") == null
+            assert request.getHeader("If-Modified-Since") == null
+            response.outputStream.write("changed".bytes)
+        }
+        httpServer.start()
+
+        expect:
+        withContentIfModified(new DefaultExternalResourceMetaData(httpServer.uri("/resource"), 0, -1, null, null, null)) == "changed with etag null"
+    }
+
+    def "returns null when revalidated resource is missing"() {
+        given:
+        httpServer.expectGetMissing("/resource")
+        httpServer.start()
+
+        expect:
+        withContentIfModified(cachedMetaData('"1234"')) == null
+    }
+
+    private String withContentIfModified(DefaultExternalResourceMetaData cached) {
+        def accessor = new HttpResourceAccessor(new HttpClientHelper(new DocumentationRegistry(), httpSettings))
+        def action = { InputStream inputStream, metaData -> "${inputStream.text} with etag ${metaData.etag}".toString() } as ExternalResource.ContentAndMetadataAction
+        return accessor.withContentIfModified(new ExternalResourceName(httpServer.uri("/resource")), cached, unchanged, action)
+    }
+
+    private DefaultExternalResourceMetaData cachedMetaData(String etag) {
+        new DefaultExternalResourceMetaData(httpServer.uri("/resource"), lastModified.time, 12, null, etag, null)
+    }
+
+    private void expectGet(Closure handler) {
+        httpServer.expect("/resource", ["GET"], [
+            getDisplayName: { "revalidate /resource" },
+            getInteraction: { null },
+            handle: handler
+        ] as HttpServer.Action)
+    }
+
+    private HttpSettings getHttpSettings() {
+        Stub(HttpSettings) {
+            getProxySettings() >> Mock(HttpProxySettings)
+            getSecureProxySettings() >> Mock(HttpProxySettings)
+            getTimeoutSettings() >> { new JavaSystemPropertiesHttpTimeoutSettings() }
+            getSslContextFactory() >> Mock(SslContextFactory) {
+                createSslContext() >> SSLContexts.createDefault()
+            }
+        }
+    }
 }
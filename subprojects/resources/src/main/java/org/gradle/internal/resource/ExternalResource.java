@@ -18,6 +18,7 @@
 import org.gradle.api.Action;
 import org.gradle.api.resources.ResourceException;
 import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
+import org.gradle.internal.resource.metadata.ExternalResourceMetaDataCompare;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -109,6 +110,27 @@ public interface ExternalResource extends Resource {
     @Nullable
     <T> ExternalResourceReadResult<T> withContentIfPresent(ContentAndMetadataAction<? extends T> readAction) throws ResourceException;
 
+    /**
+     * Executes the given action against the binary contents and meta-data of this resource, unless the resource has not changed
+     * since the given meta-data was obtained. The action is not executed when the resource has not changed.
+     *
+     * @param cached The meta-data of the copy of this resource that is cached locally.
+     * @param unchanged The value of the result when the resource has not changed.
+     * @return null if the resource does not exist.
+     * @throws ResourceException on failure to read the content.
+     */
+    @Nullable
+    default <T> ExternalResourceReadResult<T> withContentIfModified(ExternalResourceMetaData cached, @Nullable T unchanged, ContentAndMetadataAction<? extends T> readAction) throws ResourceException {
+        ExternalResourceMetaData remoteMetaData = getMetaData();
+        if (remoteMetaData == null) {
+            return null;
+        }
+        if (ExternalResourceMetaDataCompare.isDefinitelyUnchanged(cached, () -> remoteMetaData)) {
+            return ExternalResourceReadResult.of(0, unchanged);
+        }
+        return withContentIfPresent(readAction);
+    }
+
     /**
      * Copies the given content to this resource.
      *
@@ -33,6 +33,13 @@ public <T> T withContent(ExternalResourceName location, boolean revalidate, Exte
         if (response == null) {
             return null;
         }
+        return withContent(location, response, action);
+    }
+
+    /**
+     * Applies the given action to the content of a resource that has been opened, and closes the resource.
+     */
+    protected <T> T withContent(ExternalResourceName location, ExternalResourceReadResponse response, ExternalResource.ContentAndMetadataAction<T> action) throws ResourceException {
         try {
             try {
                 try (InputStream inputStream = response.openStream()) {
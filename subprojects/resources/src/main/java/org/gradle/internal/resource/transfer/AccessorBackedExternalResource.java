@@ -104,6 +104,17 @@ public <T> ExternalResourceReadResult<T> withContentIfPresent(ContentAndMetadata
         });
     }
 
+    @Nullable
+    @Override
+    public <T> ExternalResourceReadResult<T> withContentIfModified(ExternalResourceMetaData cached, @Nullable T unchanged, ContentAndMetadataAction<? extends T> readAction) throws ResourceException {
+        return accessor.withContentIfModified(name, cached, ExternalResourceReadResult.of(0, unchanged), (inputStream, metadata) -> {
+            try (CountingInputStream stream = new CountingInputStream(new BufferedInputStream(inputStream))) {
+                T value = readAction.execute(stream, metadata);
+                return ExternalResourceReadResult.of(stream.getCount(), value);
+            }
+        });
+    }
+
     @Override
     public ExternalResourceReadResult<Void> withContent(Action<? super InputStream> readAction) throws ResourceException {
         ExternalResourceReadResult<Void> result = accessor.withContent(name, revalidate, inputStream -> {
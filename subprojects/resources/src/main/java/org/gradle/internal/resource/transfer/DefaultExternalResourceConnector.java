@@ -59,6 +59,13 @@ public <T> T withContent(ExternalResourceName location, boolean revalidate, Exte
         return accessor.withContent(location, revalidate, action);
     }
 
+    @Nullable
+    @Override
+    public <T> T withContentIfModified(ExternalResourceName location, ExternalResourceMetaData cached, T unchanged, ExternalResource.ContentAndMetadataAction<T> action) throws ResourceException {
+        STATS.resource(location.getUri());
+        return accessor.withContentIfModified(location, cached, unchanged, action);
+    }
+
     @Nullable
     @Override
     public ExternalResourceMetaData getMetaData(ExternalResourceName location, boolean revalidate) {
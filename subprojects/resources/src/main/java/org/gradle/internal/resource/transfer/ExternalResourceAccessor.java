@@ -20,6 +20,7 @@
 import org.gradle.internal.resource.ExternalResource;
 import org.gradle.internal.resource.ExternalResourceName;
 import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
+import org.gradle.internal.resource.metadata.ExternalResourceMetaDataCompare;
 
 import javax.annotation.Nullable;
 
@@ -63,6 +64,33 @@ default <T> T withContent(ExternalResourceName location, boolean revalidate, Ext
         return withContent(location, revalidate, (inputStream, metaData) -> action.execute(inputStream));
     }
 
+    /**
+     * Reads the resource at the given location, unless it has not changed since the given metadata was obtained.
+     *
+     * By default, this fetches the metadata of the resource first, and reads the resource when the metadata differs.
+     * Implementations that can ask the server to only send the resource when it has changed should do so instead.
+     *
+     * If the resource does not exist, this method should return null.
+     *
+     * @param location The address of the resource to obtain
+     * @param cached The metadata of the copy of the resource that is cached locally
+     * @param unchanged The value to return when the resource has not changed
+     * @param action The action to apply to the content of the resource, when it has changed.
+     * @return The result of the action if the resource has changed, {@code unchanged} if it has not, or null if the resource does not exist.
+     * @throws ResourceException If the resource may exist, but not could be obtained for some reason.
+     */
+    @Nullable
+    default <T> T withContentIfModified(ExternalResourceName location, ExternalResourceMetaData cached, T unchanged, ExternalResource.ContentAndMetadataAction<T> action) throws ResourceException {
+        ExternalResourceMetaData remoteMetaData = getMetaData(location, true);
+        if (remoteMetaData == null) {
+            return null;
+        }
+        if (ExternalResourceMetaDataCompare.isDefinitelyUnchanged(cached, () -> remoteMetaData)) {
+            return unchanged;
+        }
+        return withContent(location, true, action);
+    }
+
     /**
      * Obtains only the metadata about the resource.
      *
@@ -1,6 +1,7 @@
 plugins {
     id("gradlebuild.distribution.implementation-java")
     id("gradlebuild.publish-public-libraries")
+    id("gradlebuild.jmh")
 }
 
 description = "Tools to take immutable, comparable snapshots of files and other things"
@@ -33,3 +34,7 @@ dependencies {
 
     integTestDistributionRuntimeOnly(project(":distributions-core"))
 }
+
+jmh {
+    fork.set(1)
+}
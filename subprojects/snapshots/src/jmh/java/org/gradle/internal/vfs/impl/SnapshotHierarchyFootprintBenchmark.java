@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl;
+
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Measures the heap retained by the virtual file system for a large number of file snapshots.
+ *
+ * The result of interest is the {@code retainedBytesPerFile} counter, the time is only reported for completeness.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class SnapshotHierarchyFootprintBenchmark {
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final String ROOT = "/root/project";
+
+    @Param({"10000", "100000"})
+    int fileCount;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytesPerFile;
+    }
+
+    @Benchmark
+    public SnapshotHierarchy storeSnapshots(Footprint footprint) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long usedBefore = usedHeapAfterGc(memory);
+
+        SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE);
+        int directoryCount = fileCount / FILES_PER_DIRECTORY;
+        for (int dir = 0; dir < directoryCount; dir++) {
+            FileSystemLocationSnapshot snapshot = directorySnapshot(ROOT + "/dir" + dir, "dir" + dir, dir);
+            root = root.store(snapshot.getAbsolutePath(), snapshot, SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+
+        long usedAfter = usedHeapAfterGc(memory);
+        footprint.retainedBytesPerFile = (usedAfter - usedBefore) / fileCount;
+        return root;
+    }
+
+    private static FileSystemLocationSnapshot directorySnapshot(String absolutePath, String name, int seed) {
+        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        builder.enterDirectory(AccessType.DIRECT, absolutePath, name, MerkleDirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS);
+        for (int file = 0; file < FILES_PER_DIRECTORY; file++) {
+            // Zero padded, so that the children are sorted
+            String fileName = String.format("file%03d.txt", file);
+            builder.visitLeafElement(new RegularFileSnapshot(
+                absolutePath + "/" + fileName,
+                fileName,
+                Hashing.hashString(absolutePath + fileName),
+                DefaultFileMetadata.file(seed * 1000L + file, file, AccessType.DIRECT)
+            ));
+        }
+        builder.leaveDirectory();
+        return builder.getResult();
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -17,6 +17,7 @@
 package org.gradle.internal.snapshot.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Iterables;
@@ -50,16 +51,28 @@
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 
 import static org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS;
 
 public class DirectorySnapshotter {
+    /**
+     * When set to {@code true}, sibling subtrees close to the root of a snapshot are walked concurrently on the common fork/join pool.
+     */
+    public static final String CONCURRENT_WALK_PROPERTY = "org.gradle.internal.vfs.concurrent-directory-walk";
+    /**
+     * How many levels below the root subtrees are handed off to other threads. Deeper subtrees are walked by the thread handling their ancestor.
+     */
+    @VisibleForTesting
+    static final int CONCURRENT_WALK_DEPTH = 3;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(DirectorySnapshotter.class);
     private static final EnumSet<FileVisitOption> DONT_FOLLOW_SYMLINKS = EnumSet.noneOf(FileVisitOption.class);
     private static final SymbolicLinkMapping EMPTY_SYMBOLIC_LINK_MAPPING = new SymbolicLinkMapping() {
@@ -71,7 +84,7 @@ public String remapAbsolutePath(Path path) {
 
         @Override
         public SymbolicLinkMapping withNewMapping(String source, String target, RelativePathTracker currentPathTracker) {
-            return new DefaultSymbolicLinkMapping(source, target, currentPathTracker.getSegments());
+            return new DefaultSymbolicLinkMapping(source, target, ImmutableList.copyOf(currentPathTracker.getSegments()));
         }
 
         @Override
@@ -84,18 +97,24 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    private final int concurrentWalkDepth;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, Boolean.getBoolean(CONCURRENT_WALK_PROPERTY));
+    }
+
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector, boolean concurrentWalk) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.concurrentWalkDepth = concurrentWalk ? CONCURRENT_WALK_DEPTH : 0;
     }
 
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, final AtomicBoolean hasBeenFiltered) {
         try {
             Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING);
+            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, concurrentWalkDepth);
             Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
             return visitor.getResult();
         } catch (IOException e) {
@@ -138,7 +157,7 @@ public String remapAbsolutePath(String absolutePath) {
 
         @Override
         public SymbolicLinkMapping withNewMapping(String source, String target, RelativePathTracker currentPathTracker) {
-            return new DefaultSymbolicLinkMapping(remapAbsolutePath(source), target, getRemappedSegments(currentPathTracker.getSegments()));
+            return new DefaultSymbolicLinkMapping(remapAbsolutePath(source), target, ImmutableList.copyOf(getRemappedSegments(currentPathTracker.getSegments())));
         }
 
         @Override
@@ -229,7 +248,11 @@ private static class PathVisitor extends DirectorySnapshotterStatistics.Collecti
         private final Interner<String> stringInterner;
         private final DefaultExcludes defaultExcludes;
         private final SymbolicLinkMapping symbolicLinkMapping;
-        private final Deque<String> parentDirectories = new ArrayDeque<>();
+        private final Deque<String> parentDirectories;
+        private final int rootDepth;
+        private final int concurrentWalkDepth;
+        private final List<SubtreeVisit> concurrentSubtreeVisits = new ArrayList<>();
+        private long joinTime;
 
         public PathVisitor(
             @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
@@ -238,9 +261,25 @@ public PathVisitor(
             Interner<String> stringInterner,
             DefaultExcludes defaultExcludes,
             DirectorySnapshotterStatistics.Collector statisticsCollector,
-            SymbolicLinkMapping symbolicLinkMapping
+            SymbolicLinkMapping symbolicLinkMapping,
+            int concurrentWalkDepth
+        ) {
+            this(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, statisticsCollector, symbolicLinkMapping, concurrentWalkDepth, new ArrayDeque<>(), false);
+        }
+
+        private PathVisitor(
+            @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
+            AtomicBoolean hasBeenFiltered,
+            FileHasher hasher,
+            Interner<String> stringInterner,
+            DefaultExcludes defaultExcludes,
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            SymbolicLinkMapping symbolicLinkMapping,
+            int concurrentWalkDepth,
+            Deque<String> parentDirectories,
+            boolean visitingSubtree
         ) {
-            super(statisticsCollector);
+            super(statisticsCollector, visitingSubtree);
             this.builder = MerkleDirectorySnapshotBuilder.sortingRequired();
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
@@ -248,6 +287,9 @@ public PathVisitor(
             this.stringInterner = stringInterner;
             this.defaultExcludes = defaultExcludes;
             this.symbolicLinkMapping = symbolicLinkMapping;
+            this.concurrentWalkDepth = concurrentWalkDepth;
+            this.parentDirectories = parentDirectories;
+            this.rootDepth = parentDirectories.size();
         }
 
         @Override
@@ -255,6 +297,12 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
             String fileName = getInternedFileName(dir);
             pathTracker.enter(fileName);
             if (pathTracker.isRoot() || shouldVisit(dir, fileName, true, pathTracker.getSegments())) {
+                if (concurrentWalkDepth > 0 && parentDirectories.size() == rootDepth + 1) {
+                    // A child of the root directory: let another thread walk it, and collect the result when leaving the root directory
+                    visitSubtreeConcurrently(dir);
+                    pathTracker.leave();
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
                 builder.enterDirectory(AccessType.DIRECT, intern(symbolicLinkMapping.remapAbsolutePath(dir)), fileName, INCLUDE_EMPTY_DIRS);
                 parentDirectories.addFirst(dir.toString());
                 return FileVisitResult.CONTINUE;
@@ -286,7 +334,8 @@ protected FileVisitResult doVisitFile(Path file, BasicFileAttributes attrs) {
                                     stringInterner,
                                     defaultExcludes,
                                     collector,
-                                    symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker)
+                                    symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker),
+                                    concurrentWalkDepth
                                 );
                                 Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
                                 DirectorySnapshot result = (DirectorySnapshot) subtreeVisitor.getResult();
@@ -313,6 +362,49 @@ protected FileVisitResult doVisitFile(Path file, BasicFileAttributes attrs) {
             }
         }
 
+        /**
+         * Walks the given directory with a new visitor on the fork/join pool.
+         * The new visitor sees the same relative paths and parent directories as this visitor would, so the resulting snapshot is the same.
+         */
+        private void visitSubtreeConcurrently(Path dir) {
+            String dirString = dir.toString();
+            PathVisitor subtreeVisitor = new PathVisitor(
+                predicate,
+                hasBeenFiltered,
+                hasher,
+                stringInterner,
+                defaultExcludes,
+                collector,
+                symbolicLinkMapping.withNewMapping(dirString, dirString, pathTracker),
+                concurrentWalkDepth - 1,
+                new ArrayDeque<>(parentDirectories),
+                true
+            );
+            SubtreeVisit subtreeVisit = new SubtreeVisit(dir, subtreeVisitor);
+            concurrentSubtreeVisits.add(subtreeVisit);
+            subtreeVisit.fork();
+        }
+
+        private void collectConcurrentSubtreeVisits() {
+            long startTime = System.nanoTime();
+            try {
+                // The builder sorts the children of each directory, so the order of joining does not matter
+                for (SubtreeVisit subtreeVisit : concurrentSubtreeVisits) {
+                    builder.visitDirectory(subtreeVisit.join());
+                }
+            } finally {
+                concurrentSubtreeVisits.clear();
+                joinTime += System.nanoTime() - startTime;
+            }
+        }
+
+        private void cancelConcurrentSubtreeVisits() {
+            for (SubtreeVisit subtreeVisit : concurrentSubtreeVisits) {
+                subtreeVisit.cancel(false);
+            }
+            concurrentSubtreeVisits.clear();
+        }
+
         private boolean introducesCycle(String targetDirString) {
             return parentDirectories.contains(targetDirString);
         }
@@ -376,8 +468,12 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             // so we include all the other files apart from the loop.
             // This way, we include each file only once.
             if (isNotFileSystemLoopException(exc)) {
+                cancelConcurrentSubtreeVisits();
                 throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
             }
+            if (!concurrentSubtreeVisits.isEmpty() && parentDirectories.size() == rootDepth + 1) {
+                collectConcurrentSubtreeVisits();
+            }
             builder.leaveDirectory();
             parentDirectories.removeFirst();
             return FileVisitResult.CONTINUE;
@@ -424,4 +520,27 @@ public FileSystemLocationSnapshot getResult() {
             return builder.getResult();
         }
     }
+
+    private static class SubtreeVisit extends RecursiveTask<DirectorySnapshot> {
+        private final Path dir;
+        private final PathVisitor visitor;
+
+        public SubtreeVisit(Path dir, PathVisitor visitor) {
+            this.dir = dir;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected DirectorySnapshot compute() {
+            long startTime = System.nanoTime();
+            try {
+                Files.walkFileTree(dir, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", dir), e);
+            }
+            // Time spent waiting for nested subtrees is recorded by those subtrees
+            visitor.collector.recordVisitSubtreeConcurrently(System.nanoTime() - startTime - visitor.joinTime);
+            return (DirectorySnapshot) visitor.getResult();
+        }
+    }
 }
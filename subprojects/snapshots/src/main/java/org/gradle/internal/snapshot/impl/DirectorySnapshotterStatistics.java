@@ -22,6 +22,7 @@
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 public interface DirectorySnapshotterStatistics {
@@ -45,11 +46,23 @@ public interface DirectorySnapshotterStatistics {
      */
     long getFailedFiles();
 
+    /**
+     * The number of subtrees visited concurrently with their parent directory.
+     */
+    long getVisitedSubtreesConcurrently();
+
+    /**
+     * The time in milliseconds spent visiting subtrees concurrently with their parent directory, summed over all threads.
+     */
+    long getConcurrentSubtreeVisitTime();
+
     class Collector {
         private final AtomicLong hierarchyCount = new AtomicLong();
         private final AtomicLong directoryCount = new AtomicLong();
         private final AtomicLong fileCount = new AtomicLong();
         private final AtomicLong failedFileCount = new AtomicLong();
+        private final AtomicLong concurrentSubtreeCount = new AtomicLong();
+        private final AtomicLong concurrentSubtreeVisitTime = new AtomicLong();
 
         public void recordVisitHierarchy() {
             hierarchyCount.incrementAndGet();
@@ -67,11 +80,18 @@ public void recordVisitFileFailed() {
             failedFileCount.incrementAndGet();
         }
 
+        public void recordVisitSubtreeConcurrently(long durationNanos) {
+            concurrentSubtreeCount.incrementAndGet();
+            concurrentSubtreeVisitTime.addAndGet(durationNanos);
+        }
+
         public DirectorySnapshotterStatistics collect() {
             long hierarchyCount = this.hierarchyCount.getAndSet(0);
             long directoryCount = this.directoryCount.getAndSet(0);
             long fileCount = this.fileCount.getAndSet(0);
             long failedFileCount = this.failedFileCount.getAndSet(0);
+            long concurrentSubtreeCount = this.concurrentSubtreeCount.getAndSet(0);
+            long concurrentSubtreeVisitTime = TimeUnit.NANOSECONDS.toMillis(this.concurrentSubtreeVisitTime.getAndSet(0));
 
             return new DirectorySnapshotterStatistics() {
                 @Override
@@ -94,10 +114,25 @@ public long getFailedFiles() {
                     return failedFileCount;
                 }
 
+                @Override
+                public long getVisitedSubtreesConcurrently() {
+                    return concurrentSubtreeCount;
+                }
+
+                @Override
+                public long getConcurrentSubtreeVisitTime() {
+                    return concurrentSubtreeVisitTime;
+                }
+
                 @Override
                 public String toString() {
-                    return MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files)",
+                    String statistics = MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files)",
                         hierarchyCount, directoryCount, fileCount, failedFileCount);
+                    if (concurrentSubtreeCount == 0) {
+                        return statistics;
+                    }
+                    return statistics + MessageFormat.format(", visited {0,number,integer} subtrees concurrently in {1,number,integer}ms",
+                        concurrentSubtreeCount, concurrentSubtreeVisitTime);
                 }
             };
         }
@@ -105,15 +140,30 @@ public String toString() {
 
     abstract class CollectingFileVisitor implements FileVisitor<Path> {
         protected final Collector collector;
+        private boolean recordRootDirectory;
 
         public CollectingFileVisitor(Collector collector) {
+            this(collector, false);
+        }
+
+        /**
+         * Creates a visitor for a subtree of a hierarchy visited by another visitor.
+         * The hierarchy and the root of the subtree have already been recorded by that visitor, so they are not recorded again.
+         */
+        protected CollectingFileVisitor(Collector collector, boolean visitingSubtree) {
             this.collector = collector;
-            collector.recordVisitHierarchy();
+            this.recordRootDirectory = !visitingSubtree;
+            if (!visitingSubtree) {
+                collector.recordVisitHierarchy();
+            }
         }
 
         @Override
         public final FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-            collector.recordVisitDirectory();
+            if (recordRootDirectory) {
+                collector.recordVisitDirectory();
+            }
+            recordRootDirectory = true;
             return doPreVisitDirectory(dir, attrs);
         }
 
@@ -377,6 +377,41 @@ class DirectorySnapshotterTest extends Specification {
         pipe.delete()
     }
 
+    @Requires(TestPrecondition.SYMLINKS)
+    def "concurrent walk produces the same snapshot as walking on a single thread (filtered: #filtered)"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        ["a", "b", "c"].each { first ->
+            ["x", "y"].each { second ->
+                rootDir.file("${first}/${second}/file.txt").text = "${first}${second}"
+                rootDir.file("${first}/${second}/deep/deeper/file.html").text = "deep"
+            }
+            rootDir.file("${first}/top.txt").text = first
+        }
+        rootDir.file("empty").createDir()
+        rootDir.file("root.txt").text = "root"
+        rootDir.file("linkToA").createLink(rootDir.file("a"))
+        rootDir.file("b/x/cycle").createLink(rootDir)
+        def predicate = filtered ? directoryWalkerPredicate(new PatternSet().include("**/*.txt")) : null
+        def concurrentlyFiltered = new AtomicBoolean(false)
+        def concurrentSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector, true)
+
+        when:
+        def snapshot = directorySnapshotter.snapshot(rootDir.absolutePath, predicate, actuallyFiltered)
+        def concurrentSnapshot = concurrentSnapshotter.snapshot(rootDir.absolutePath, predicate, concurrentlyFiltered)
+
+        then:
+        concurrentSnapshot.hash == snapshot.hash
+        SnapshotVisitorUtil.getAbsolutePaths(concurrentSnapshot, true) == SnapshotVisitorUtil.getAbsolutePaths(snapshot, true)
+        SnapshotVisitorUtil.getRelativePaths(concurrentSnapshot, true) == SnapshotVisitorUtil.getRelativePaths(snapshot, true)
+        concurrentSnapshot.children*.accessType == snapshot.children*.accessType
+        concurrentlyFiltered.get() == filtered
+        actuallyFiltered.get() == filtered
+
+        where:
+        filtered << [false, true]
+    }
+
     def "default excludes are correctly parsed"() {
         def defaultExcludes = new DirectorySnapshotter.DefaultExcludes(DirectoryScanner.getDefaultExcludes() as List)
 